@@ -71,6 +71,11 @@ public class FView implements IFView, Drawable.Callback{
     protected int oldHeightMeasureSpec;
 
     protected final Rect bounds = new Rect();
+    /**
+     * 向上传递刷新区域时使用，每层原地转换坐标，不创建新的Rect
+     * 只能在主线程中使用
+     */
+    private static final Rect sInvalidateRect = new Rect();
     protected final Rect padding = new Rect();
 
     private Drawable mBackground;
@@ -414,7 +419,8 @@ public class FView implements IFView, Drawable.Callback{
 
     @Override
     public void invalidate() {
-        Rect dirty = new Rect(0, 0, bounds.width(), bounds.height());
+        final Rect dirty = sInvalidateRect;
+        dirty.set(0, 0, bounds.width(), bounds.height());
         invalidate(dirty);
     }
 
@@ -428,11 +434,16 @@ public class FView implements IFView, Drawable.Callback{
      * <b>WARNING:</b> In API 19 and below, this method may be destructive to
      * {@code dirty}.
      *
-     * @param dirty the rectangle representing the bounds of the dirty region
+     * @param dirty the rectangle representing the bounds of the dirty region,
+     *              not modified (copied before passed to parent)
      */
     protected void invalidate(Rect dirty) {
-        if (parent != null)
-            parent.invalidateChild(this, dirty);
+        if (parent == null)
+            return;
+        final Rect r = sInvalidateRect;
+        if (r != dirty)
+            r.set(dirty);
+        parent.invalidateChild(this, r);
     }
 
     @Override
@@ -59,14 +59,17 @@ public abstract class FViewGroup extends FView implements IFViewGroup {
     @Override
     public abstract void onLayout(boolean changed, int l, int t, int r, int b);
 
+    /**
+     * 将rect原地转换为此view坐标系后交给parent，会修改rect
+     * 超出此view的部分不会绘制，被裁剪掉
+     */
     @Override
     public void invalidateChild(FView child, Rect rect) {
-        int l = rect.left + child.getLeft();
-        int t = rect.top + child.getTop();
-        Rect childBound = new Rect(
-                l, t, l + rect.width(), t + rect.height());
+        rect.offset(child.getLeft(), child.getTop());
+        if (!rect.intersect(0, 0, bounds.width(), bounds.height()))
+            return;
         if (parent != null) {
-            parent.invalidateChild(this, childBound);
+            parent.invalidateChild(this, rect);
         }
     }
 
@@ -164,6 +167,10 @@ public abstract class FViewGroup extends FView implements IFViewGroup {
         final int childCount = getChildCount();
         for (int i = 0; i < childCount ; i ++) {
             FView view = mChildren.get(i);
+            //局部刷新时跳过不在刷新区域中的子view
+            final Rect b = view.bounds;
+            if (canvas.quickReject(b.left, b.top, b.right, b.bottom, Canvas.EdgeType.BW))
+                continue;
             canvas.save();
             canvas.translate(view.bounds.left, view.bounds.top);
             canvas.clipRect(0, 0, view.bounds.width(), view.bounds.height());
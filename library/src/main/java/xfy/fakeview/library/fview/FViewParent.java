@@ -11,7 +11,7 @@ public interface FViewParent {
     /**
      * invalidate child rect
      * @param child view for invalidate
-     * @param rect  rect for invalidate
+     * @param rect  rect for invalidate, in child's coordinate, may be modified
      */
     void invalidateChild(FView child, Rect rect);
 
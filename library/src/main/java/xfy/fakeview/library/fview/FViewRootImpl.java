@@ -34,6 +34,11 @@ public class FViewRootImpl extends View implements IFViewRoot {
      * or action done.
      */
     private Set<WrapperRunnable> runnables = new HashSet<>();
+    /**
+     * 一帧中需要刷新的区域(target view坐标)，绘制前清空
+     * 已包含在其中的区域不需要再次通知系统刷新
+     */
+    private final Rect dirtyRegion = new Rect();
 
     public FViewRootImpl(Context context) {
         this(context, null);
@@ -66,6 +71,7 @@ public class FViewRootImpl extends View implements IFViewRoot {
         if (mTargetView != null)
             mTargetView.onDetachedFromWindow();
         attached = false;
+        dirtyRegion.setEmpty();
     }
 
     @Override
@@ -138,7 +144,17 @@ public class FViewRootImpl extends View implements IFViewRoot {
 
     @Override
     public void invalidateChild(FView child, Rect rect) {
-        invalidate(rect);
+        if (rect.isEmpty() || dirtyRegion.contains(rect))
+            return;
+        dirtyRegion.union(rect);
+        invalidate(rect.left, rect.top, rect.right, rect.bottom);
+    }
+
+    /**
+     * @return 当前帧需要刷新的区域，绘制前清空，不能修改
+     */
+    public Rect getDirtyRegion() {
+        return dirtyRegion;
     }
 
     @Override
@@ -229,6 +245,8 @@ public class FViewRootImpl extends View implements IFViewRoot {
 
     @Override
     protected void onDraw(Canvas canvas) {
+        //绘制前清空，绘制中(如动画)的刷新需要重新通知系统
+        dirtyRegion.setEmpty();
         if (mTargetView != null) {
             long start = System.currentTimeMillis();
             mTargetView.draw(canvas);
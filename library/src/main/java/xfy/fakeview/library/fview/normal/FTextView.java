@@ -5,26 +5,50 @@ import android.content.res.Resources;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
-import android.text.DynamicLayout;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
 import android.text.Layout;
-import android.text.Spannable;
-import android.text.StaticLayout;
 import android.text.TextPaint;
 import android.text.TextUtils;
 import android.util.TypedValue;
 import android.view.Gravity;
+import android.view.MotionEvent;
+import android.view.View;
 
 import xfy.fakeview.library.fview.utils.FMeasureSpec;
 import xfy.fakeview.library.fview.FView;
 import xfy.fakeview.library.fview.IFViewGroup;
 import xfy.fakeview.library.fview.IFViewRoot;
+import xfy.fakeview.library.text.FTextDrawable;
+import xfy.fakeview.library.text.compiler.ClickSpanTextCompiler;
+import xfy.fakeview.library.text.compiler.ITextCompiler;
+import xfy.fakeview.library.text.compiler.SpannedTextCompiler;
+import xfy.fakeview.library.text.drawer.TextDrawableDrawer;
+import xfy.fakeview.library.text.utils.MeasureTextUtils;
 
 /**
  * Created by XiongFangyu on 2017/11/8.
  *
  * like {@link android.widget.TextView}
+ *
+ * 默认使用{@link Layout}绘制，{@link #setUseTextDrawable(boolean)}后使用{@link FTextDrawable}解析、计算和绘制，
+ * 支持{@link xfy.fakeview.library.text.utils.FClickableSpan}点击
  */
-public class FTextView extends FView {
+public class FTextView extends FView implements FTextDrawable.LayoutRequestListener {
+    private static volatile ITextCompiler defaultTextCompiler;
+
+    /**
+     * 解析{@link xfy.fakeview.library.text.utils.FClickableSpan}及{@link SpannedTextCompiler}支持的系统span
+     */
+    public static ITextCompiler getDefaultTextCompiler() {
+        if (defaultTextCompiler == null) {
+            synchronized (FTextView.class) {
+                if (defaultTextCompiler == null)
+                    defaultTextCompiler = new ClickSpanTextCompiler(SpannedTextCompiler.getCompiler());
+            }
+        }
+        return defaultTextCompiler;
+    }
 
     private int mTextColor = Color.BLACK;
 
@@ -39,6 +63,10 @@ public class FTextView extends FView {
 
     private int mGravity = Gravity.TOP | Gravity.START;
 
+    //不为空时使用FTextDrawable绘制
+    private FTextDrawable mTextDrawable;
+    private ITextCompiler mTextCompiler;
+
     public FTextView(Context context, IFViewRoot viewRoot) {
         super(context, viewRoot);
         mText = "";
@@ -50,6 +78,10 @@ public class FTextView extends FView {
     
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        if (mTextDrawable != null) {
+            onMeasureTextDrawable(widthMeasureSpec, heightMeasureSpec);
+            return;
+        }
         int widthMode = FMeasureSpec.getMode(widthMeasureSpec);
         int heightMode = FMeasureSpec.getMode(heightMeasureSpec);
         int widthSize = FMeasureSpec.getSize(widthMeasureSpec);
@@ -83,8 +115,9 @@ public class FTextView extends FView {
         } else {
             final boolean layoutChanged = (mLayout.getWidth() != want)
                     || (mLayout.getEllipsizedWidth() != want);
+            //layout可能被其他view共用，不可修改，重新获取
             if (layoutChanged)
-                mLayout.increaseWidthTo(want);
+                makeNewLayout(want, want);
         }
 
         if (heightMode == FMeasureSpec.EXACTLY) {
@@ -100,7 +133,162 @@ public class FTextView extends FView {
         setMeasuredDimension(width, height);
     }
 
+    private void onMeasureTextDrawable(int widthMeasureSpec, int heightMeasureSpec) {
+        int widthMode = FMeasureSpec.getMode(widthMeasureSpec);
+        int heightMode = FMeasureSpec.getMode(heightMeasureSpec);
+        int widthSize = FMeasureSpec.getSize(widthMeasureSpec);
+        int heightSize = FMeasureSpec.getSize(heightMeasureSpec);
+
+        final int ph = getPaddingLeft() + getPaddingRight();
+        final int pv = getPaddingTop() + getPaddingBottom();
+        int maxWidth = widthMode == FMeasureSpec.UNSPECIFIED ? MeasureTextUtils.WIDTH_MAX_SIZE : widthSize - ph;
+        int maxHeight = heightMode == FMeasureSpec.UNSPECIFIED ? MeasureTextUtils.HEIGHT_MAX_SIZE : heightSize - pv;
+        mTextDrawable.justSetMaxSize(Math.max(maxWidth, 0), Math.max(maxHeight, 0));
+        mTextDrawable.setFixedSize(widthMode == FMeasureSpec.EXACTLY && heightMode == FMeasureSpec.EXACTLY);
+        mTextDrawable.measure();
+
+        int width;
+        int height;
+        if (widthMode == FMeasureSpec.EXACTLY) {
+            width = widthSize;
+        } else {
+            width = Math.max(mTextDrawable.getIntrinsicWidth() + ph, getSuggestedMinimumWidth());
+            if (widthMode == FMeasureSpec.AT_MOST) {
+                width = Math.min(widthSize, width);
+            }
+        }
+        if (heightMode == FMeasureSpec.EXACTLY) {
+            height = heightSize;
+        } else {
+            height = Math.max(mTextDrawable.getIntrinsicHeight() + pv, getSuggestedMinimumHeight());
+            if (heightMode == FMeasureSpec.AT_MOST) {
+                height = Math.min(heightSize, height);
+            }
+        }
+        setMeasuredDimension(width, height);
+    }
+
+    @Override
+    public void onLayout(boolean changed, int l, int t, int r, int b) {
+        super.onLayout(changed, l, t, r, b);
+        if (mTextDrawable != null) {
+            mTextDrawable.setBounds(padding.left, padding.top,
+                    r - l - padding.right, b - t - padding.bottom);
+        }
+    }
+
+    /**
+     * 是否使用{@link FTextDrawable}解析、计算和绘制文字
+     * 文字中只能包含{@link #getDefaultTextCompiler()}或{@link #setTextCompiler(ITextCompiler)}支持的span
+     * @param use true: 使用FTextDrawable，false: 使用{@link Layout}
+     */
+    public void setUseTextDrawable(boolean use) {
+        if (use == (mTextDrawable != null))
+            return;
+        if (use) {
+            TextDrawableDrawer.init(getContext());
+            FTextDrawable drawable = new FTextDrawable();
+            drawable.setTextCompiler(mTextCompiler != null ? mTextCompiler : getDefaultTextCompiler());
+            drawable.setTextSize(mTextPaint.getTextSize());
+            drawable.setBoldText(mTextPaint.isFakeBoldText());
+            drawable.setTextColor(mTextColor);
+            drawable.setCallback(this);
+            drawable.setLayoutRequestListener(this);
+            mTextDrawable = drawable;
+            mLayout = null;
+            drawable.setText(mText);
+            if (isAttachedToWindow())
+                drawable.onAttachedToWindow();
+        } else {
+            mTextDrawable.release();
+            mTextDrawable.setCallback(null);
+            mTextDrawable = null;
+        }
+        requestFViewTreeLayout();
+        invalidate();
+    }
+
+    public boolean isUseTextDrawable() {
+        return mTextDrawable != null;
+    }
+
+    /**
+     * 使用{@link FTextDrawable}时的文字解析器，解析结果在解析器中缓存
+     * @param compiler 为空时使用{@link #getDefaultTextCompiler()}
+     */
+    public void setTextCompiler(ITextCompiler compiler) {
+        mTextCompiler = compiler;
+        if (mTextDrawable != null)
+            mTextDrawable.setTextCompiler(compiler != null ? compiler : getDefaultTextCompiler());
+    }
+
+    /**
+     * @return 未使用FTextDrawable时为空
+     */
+    public FTextDrawable getTextDrawable() {
+        return mTextDrawable;
+    }
+
+    @Override
+    public void needRequest(FTextDrawable drawable) {
+        requestFViewTreeLayout();
+    }
+
+    @Override
+    protected boolean verifyDrawable(@NonNull Drawable who) {
+        return super.verifyDrawable(who) || (mTextDrawable != null && who == mTextDrawable);
+    }
+
+    @Override
+    public void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (mTextDrawable != null)
+            mTextDrawable.onAttachedToWindow();
+    }
+
+    @Override
+    public void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (mTextDrawable != null)
+            mTextDrawable.onDetachedFromWindow();
+    }
+
+    /**
+     * 不可点击时也需要处理{@link xfy.fakeview.library.text.utils.FClickableSpan}的点击
+     * 在区域外抬起或事件被取消时清除按下状态
+     */
+    @Override
+    public boolean dispatchTouchEvent(MotionEvent event) {
+        if (mTextDrawable != null) {
+            if (isEnabled() && getVisibility() != GONE
+                    && bounds.contains((int) event.getX(), (int) event.getY())) {
+                if (dispatchTextDrawableTouchEvent(event))
+                    return true;
+            } else {
+                final int action = event.getActionMasked();
+                if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL)
+                    mTextDrawable.clearPressed();
+            }
+        }
+        return super.dispatchTouchEvent(event);
+    }
+
+    private boolean dispatchTextDrawableTouchEvent(MotionEvent event) {
+        if (!(viewRoot instanceof View))
+            return false;
+        final float dx = -bounds.left;
+        final float dy = -bounds.top;
+        event.offsetLocation(dx, dy);
+        try {
+            return mTextDrawable.onTouchEvent((View) viewRoot, event);
+        } finally {
+            event.offsetLocation(-dx, -dy);
+        }
+    }
+
     public void setBoldText(boolean bold) {
+        if (mTextDrawable != null)
+            mTextDrawable.setBoldText(bold);
         if (mTextPaint.isFakeBoldText() != bold) {
             mTextPaint.setFakeBoldText(bold);
             if (mLayout != null) {
@@ -114,6 +302,8 @@ public class FTextView extends FView {
     public void setTextColor(int color) {
         if (mTextColor != color) {
             mTextColor = color;
+            if (mTextDrawable != null)
+                mTextDrawable.setTextColor(color);
             invalidate();
         }
     }
@@ -130,6 +320,14 @@ public class FTextView extends FView {
         }
     }
 
+    /**
+     * 可能被其他FTextView共用，不可修改
+     * @see TextLayoutCache
+     */
+    public Layout getLayout() {
+        return mLayout;
+    }
+
     public float getTextSize() {
         return mTextPaint.getTextSize();
     }
@@ -151,6 +349,8 @@ public class FTextView extends FView {
         float px = TypedValue.applyDimension(unit, size, r.getDisplayMetrics());
         if (px != mTextPaint.getTextSize()) {
             mTextPaint.setTextSize(px);
+            if (mTextDrawable != null)
+                mTextDrawable.setTextSize(px);
             if (mLayout != null) {
                 mLayout = null;
                 requestFViewTreeLayout();
@@ -166,6 +366,10 @@ public class FTextView extends FView {
     private void setTextInnternal(CharSequence text) {
         text = TextUtils.stringOrSpannedString(text);
         mText = text;
+        if (mTextDrawable != null) {
+            mTextDrawable.setText(text);
+            return;
+        }
         if (mLayout != null) {
             checkForRelayout();
         }
@@ -175,10 +379,17 @@ public class FTextView extends FView {
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
 
+        if (mTextDrawable != null) {
+            mTextDrawable.draw(canvas);
+            return;
+        }
         if (mLayout == null) {
             assumeLayout();
         }
-        mTextPaint.setColor(mTextColor);
+        //缓存中的layout被多个view共用，绘制后恢复paint颜色
+        final TextPaint layoutPaint = mLayout.getPaint();
+        final int oldColor = layoutPaint.getColor();
+        layoutPaint.setColor(mTextColor);
         if (padding.left == 0 && padding.top == 0) {
             mLayout.draw(canvas);
         } else {
@@ -187,6 +398,7 @@ public class FTextView extends FView {
             mLayout.draw(canvas);
             canvas.restore();
         }
+        layoutPaint.setColor(oldColor);
     }
 
     private void assumeLayout() {
@@ -280,27 +492,16 @@ public class FTextView extends FView {
                 mEllipsize, mSpacingMult, mSpacingAdd, mIncludePad);
     }
 
+    /**
+     * setText时文字已转换为不可变的String或SpannedString，不需要DynamicLayout
+     * 使用{@link TextLayoutCache}共用相同配置的StaticLayout
+     */
     private Layout makeSingleLayout(int wantWidth, int ellipsisWidth,
                                     Layout.Alignment alignment, boolean shouldEllipsize,
                                     TextUtils.TruncateAt effectiveEllipsize,
                                     float spacingMult, float spacingAdd, boolean includePad) {
-        Layout result = null;
-        if (mText instanceof Spannable) {
-            result = new DynamicLayout(mText, mText, mTextPaint, wantWidth,
-                    alignment, spacingMult, spacingAdd, includePad,
-                    effectiveEllipsize, ellipsisWidth);
-        }
-        if (result == null) {
-            if (shouldEllipsize) {
-                result = new StaticLayout(mText, 0, mText.length(),
-                        mTextPaint, wantWidth, alignment, spacingMult, spacingAdd, includePad,
-                        effectiveEllipsize, ellipsisWidth);
-            } else {
-                result = new StaticLayout(mText, 0, mText.length(),
-                        mTextPaint, wantWidth, alignment, spacingMult, spacingAdd, includePad);
-            }
-        }
-        return result;
+        return TextLayoutCache.obtain(mText, mTextPaint, wantWidth, ellipsisWidth, alignment,
+                spacingMult, spacingAdd, includePad, shouldEllipsize ? effectiveEllipsize : null);
     }
 
     private static int desired(Layout layout) {
@@ -0,0 +1,184 @@
+package xfy.fakeview.library.fview.normal;
+
+import android.graphics.Typeface;
+import android.support.annotation.NonNull;
+import android.text.Layout;
+import android.text.Spannable;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.util.LruCache;
+
+import xfy.fakeview.library.text.metrics.TextMetrics;
+
+/**
+ * Created by XiongFangyu on 2018/4/20.
+ *
+ * 进程内共用的{@link StaticLayout}缓存，{@link FTextView}相同文字、宽度、paint配置的layout只创建一次
+ * key包括文字，宽度，省略宽度，对齐方式，行间距，includePad，省略方式，以及paint的文字大小、字体、flags等
+ * 文字颜色不在key中，绘制前设置到{@link Layout#getPaint()}，绘制后需恢复
+ *
+ * 缓存中的layout使用自己的paint副本，不会被某个view修改paint影响
+ * 缓存中的layout会被多个view共用，不可调用{@link Layout#increaseWidthTo(int)}等修改layout的方法
+ * 只缓存不可变的文字({@link String}或{@link android.text.SpannedString})
+ */
+public final class TextLayoutCache {
+    private static final int CACHE_SIZE = 200;
+    //超过此长度的文字基本不会重复，不缓存
+    private static final int MAX_CACHE_TEXT_LENGTH = 1000;
+
+    private static final LruCache<Key, Layout> cache = new LruCache<>(CACHE_SIZE);
+
+    private TextLayoutCache() {}
+
+    /**
+     * 获取或创建layout
+     * @param text          文字
+     * @param paint         view的paint，只读取配置，不会被layout引用
+     * @param ellipsize     为空时不省略
+     */
+    public static Layout obtain(@NonNull CharSequence text, @NonNull TextPaint paint, int wantWidth, int ellipsisWidth,
+                                @NonNull Layout.Alignment alignment, float spacingMult, float spacingAdd,
+                                boolean includePad, TextUtils.TruncateAt ellipsize) {
+        if (ellipsize == null)
+            ellipsisWidth = wantWidth;
+        if (!canCache(text)) {
+            return create(text, copyPaint(paint), wantWidth, ellipsisWidth, alignment, spacingMult, spacingAdd, includePad, ellipsize);
+        }
+        Key key = new Key(text, paint, wantWidth, ellipsisWidth, alignment, spacingMult, spacingAdd, includePad, ellipsize);
+        synchronized (cache) {
+            Layout result = cache.get(key);
+            if (result != null) {
+                TextMetrics.layoutCache(true);
+                return result;
+            }
+        }
+        TextMetrics.layoutCache(false);
+        Layout result = create(text, copyPaint(paint), wantWidth, ellipsisWidth, alignment, spacingMult, spacingAdd, includePad, ellipsize);
+        synchronized (cache) {
+            Layout old = cache.get(key);
+            if (old != null)
+                return old;
+            cache.put(key, result);
+        }
+        return result;
+    }
+
+    public static void clear() {
+        synchronized (cache) {
+            cache.evictAll();
+        }
+    }
+
+    public static int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    private static boolean canCache(CharSequence text) {
+        return !(text instanceof Spannable) && text.length() <= MAX_CACHE_TEXT_LENGTH;
+    }
+
+    private static TextPaint copyPaint(TextPaint paint) {
+        TextPaint p = new TextPaint();
+        p.set(paint);
+        return p;
+    }
+
+    private static Layout create(CharSequence text, TextPaint paint, int wantWidth, int ellipsisWidth,
+                                 Layout.Alignment alignment, float spacingMult, float spacingAdd,
+                                 boolean includePad, TextUtils.TruncateAt ellipsize) {
+        if (ellipsize != null) {
+            return new StaticLayout(text, 0, text.length(),
+                    paint, wantWidth, alignment, spacingMult, spacingAdd, includePad,
+                    ellipsize, ellipsisWidth);
+        }
+        return new StaticLayout(text, 0, text.length(),
+                paint, wantWidth, alignment, spacingMult, spacingAdd, includePad);
+    }
+
+    private static final class Key {
+        private final CharSequence text;
+        private final int wantWidth;
+        private final int ellipsisWidth;
+        private final Layout.Alignment alignment;
+        private final float spacingMult;
+        private final float spacingAdd;
+        private final boolean includePad;
+        private final TextUtils.TruncateAt ellipsize;
+        //paint配置
+        private final float textSize;
+        private final float textScaleX;
+        private final float textSkewX;
+        private final int flags;
+        private final Typeface typeface;
+        private final float density;
+        private final int hash;
+
+        Key(CharSequence text, TextPaint paint, int wantWidth, int ellipsisWidth,
+            Layout.Alignment alignment, float spacingMult, float spacingAdd,
+            boolean includePad, TextUtils.TruncateAt ellipsize) {
+            this.text = text;
+            this.wantWidth = wantWidth;
+            this.ellipsisWidth = ellipsisWidth;
+            this.alignment = alignment;
+            this.spacingMult = spacingMult;
+            this.spacingAdd = spacingAdd;
+            this.includePad = includePad;
+            this.ellipsize = ellipsize;
+            this.textSize = paint.getTextSize();
+            this.textScaleX = paint.getTextScaleX();
+            this.textSkewX = paint.getTextSkewX();
+            this.flags = paint.getFlags();
+            this.typeface = paint.getTypeface();
+            this.density = paint.density;
+            this.hash = computeHash();
+        }
+
+        private int computeHash() {
+            int result = text.hashCode();
+            result = 31 * result + wantWidth;
+            result = 31 * result + ellipsisWidth;
+            result = 31 * result + alignment.hashCode();
+            result = 31 * result + Float.floatToIntBits(spacingMult);
+            result = 31 * result + Float.floatToIntBits(spacingAdd);
+            result = 31 * result + (includePad ? 1 : 0);
+            result = 31 * result + (ellipsize != null ? ellipsize.hashCode() : 0);
+            result = 31 * result + Float.floatToIntBits(textSize);
+            result = 31 * result + Float.floatToIntBits(textScaleX);
+            result = 31 * result + Float.floatToIntBits(textSkewX);
+            result = 31 * result + flags;
+            result = 31 * result + (typeface != null ? typeface.hashCode() : 0);
+            result = 31 * result + Float.floatToIntBits(density);
+            return result;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return hash == k.hash
+                    && wantWidth == k.wantWidth
+                    && ellipsisWidth == k.ellipsisWidth
+                    && alignment == k.alignment
+                    && spacingMult == k.spacingMult
+                    && spacingAdd == k.spacingAdd
+                    && includePad == k.includePad
+                    && ellipsize == k.ellipsize
+                    && textSize == k.textSize
+                    && textScaleX == k.textScaleX
+                    && textSkewX == k.textSkewX
+                    && flags == k.flags
+                    && density == k.density
+                    && (typeface == null ? k.typeface == null : typeface.equals(k.typeface))
+                    && text.equals(k.text);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package xfy.fakeview.library.text;
+
+import android.support.annotation.NonNull;
+import android.text.TextPaint;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import xfy.fakeview.library.text.block.DefaultDrawableBlockList;
+import xfy.fakeview.library.text.compiler.DefaultTextCompiler;
+import xfy.fakeview.library.text.compiler.ITextCompiler;
+import xfy.fakeview.library.text.drawer.TextDrawer;
+import xfy.fakeview.library.text.metrics.TextMetrics;
+import xfy.fakeview.library.text.param.ImmutableParams;
+import xfy.fakeview.library.text.param.TextStyle;
+import xfy.fakeview.library.text.utils.LineUtils;
+import xfy.fakeview.library.text.utils.MeasureTextUtils;
+
+/**
+ * Created by XiongFangyu on 2018/4/20.
+ *
+ * 不依赖view的批量计算，在绑定前预先获取大量文字(如列表中即将显示的消息)的高度及行数
+ * 文字按顺序平均分为cpu核数份，在线程池中同时解析并计算
+ *
+ * 每段文字解析到自己的list中计算，不会修改被view共用的缓存中的list；
+ * 若compiler为{@link DefaultTextCompiler}且缓存中没有此文字，计算完成后放入缓存，
+ * 之后以相同宽度绑定时解析和计算都可直接命中（只保留最近放入的，数量为compiler的缓存大小）
+ */
+public final class BatchTextMeasurer {
+    private static final int THREAD_COUNT = Math.max(1, Runtime.getRuntime().availableProcessors());
+    private static volatile ExecutorService executor;
+
+    private BatchTextMeasurer() {}
+
+    private static ExecutorService getExecutor() {
+        if (executor == null) {
+            synchronized (BatchTextMeasurer.class) {
+                if (executor == null) {
+                    executor = Executors.newFixedThreadPool(THREAD_COUNT, new ThreadFactory() {
+                        private final AtomicInteger count = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(@NonNull Runnable r) {
+                            Thread t = new Thread(r, "FText-Measure-" + count.incrementAndGet());
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * 批量计算，阻塞直到全部完成，可在任意线程调用(建议在子线程)
+     * @param entries  需要计算的文字
+     * @param compiler 解析器
+     * @return 长度为entries.size() * 2，第i段文字的高度为[2 * i]，行数为[2 * i + 1]，
+     *          可使用{@link #getHeight(int[], int)}，{@link #getLines(int[], int)}获取
+     */
+    public static int[] measure(@NonNull final List<Entry> entries, @NonNull final ITextCompiler<DefaultDrawableBlockList> compiler) {
+        final int size = entries.size();
+        final int[] result = new int[size << 1];
+        if (size == 0)
+            return result;
+        final int parts = Math.min(THREAD_COUNT, size);
+        if (parts == 1) {
+            measureRange(entries, compiler, result, 0, size);
+            return result;
+        }
+        final int step = (size + parts - 1) / parts;
+        List<Future<?>> futures = new ArrayList<>(parts);
+        final ExecutorService executor = getExecutor();
+        for (int from = 0; from < size; from += step) {
+            final int start = from;
+            final int end = Math.min(size, from + step);
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    measureRange(entries, compiler, result, start, end);
+                    return null;
+                }
+            }));
+        }
+        try {
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            for (Future<?> f : futures) {
+                f.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        return result;
+    }
+
+    public static int getHeight(@NonNull int[] result, int index) {
+        return result[index << 1];
+    }
+
+    public static int getLines(@NonNull int[] result, int index) {
+        return result[(index << 1) + 1];
+    }
+
+    private static void measureRange(List<Entry> entries, ITextCompiler<DefaultDrawableBlockList> compiler,
+                                     int[] result, int start, int end) {
+        //TextStyle中的paint被所有view共用，主线程计算和绘制时会临时修改文字大小等，
+        //每个线程按样式的不可变属性新建paint，不读取共用的paint
+        final HashMap<TextStyle, TextPaint> paints = new HashMap<>();
+        for (int i = start; i < end; i ++) {
+            Entry entry = entries.get(i);
+            TextPaint paint = paints.get(entry.style);
+            if (paint == null) {
+                paint = entry.style.newPaint();
+                paints.put(entry.style, paint);
+            }
+            measureEntry(entry, compiler, paint, result, i << 1);
+        }
+    }
+
+    private static void measureEntry(Entry entry, ITextCompiler<DefaultDrawableBlockList> compiler,
+                                     TextPaint paint, int[] result, int index) {
+        final CharSequence text = entry.text;
+        if (TextUtils.isEmpty(text) || entry.width <= 0)
+            return;
+        final DefaultTextCompiler cacheCompiler = compiler instanceof DefaultTextCompiler
+                ? (DefaultTextCompiler) compiler : null;
+        final boolean cached = cacheCompiler != null && cacheCompiler.isCached(text);
+        final int len = text.length();
+        final long metricsStart = TextMetrics.start();
+        DefaultDrawableBlockList list = DefaultDrawableBlockList.obtain(true, 0, len);
+        compiler.compileInternal(list, text, 0, len, null);
+        TextMetrics.recordCompile(metricsStart);
+        TextMetrics.recordBlockCount(list.size());
+        list.use();
+
+        final TextStyle style = entry.style;
+        final int drawableSize = entry.drawableSize <= 0 ? (int) style.textSize : entry.drawableSize;
+        ImmutableParams params = new ImmutableParams();
+        params.paint = paint;
+        params.ellipsizeText = style.ellipsizeText;
+        params.ellipsizeLength = style.getEllipsizeLength();
+        params.drawableHeight = drawableSize;
+        params.lineSpace = entry.lineSpace;
+
+        final int ds = list.hasDrawable() ? drawableSize : 0;
+        final long measureStart = TextMetrics.start();
+        long flag = TextDrawer.measureText(params, list, style.getLineInfo(ds, entry.includePad),
+                ds, 0, 0, entry.width, entry.includePad, true, entry.maxLines);
+        TextMetrics.recordMeasure(measureStart);
+        int lines = 0;
+        if (MeasureTextUtils.getState(flag) == MeasureTextUtils.STATE_SUCCESS) {
+            lines = Math.min(MeasureTextUtils.getLines(flag), entry.maxLines);
+        }
+        int[] linesHeight = list.getLinesHeight();
+        result[index] = linesHeight != null && lines > 0
+                ? LineUtils.getAllLineHeight(linesHeight, lines) + entry.lineSpace * (lines - 1) : 0;
+        result[index + 1] = lines;
+
+        if (!cached && cacheCompiler != null) {
+            cacheCompiler.putCache(text, list);
+        }
+        list.notUse();
+    }
+
+    /**
+     * 需要计算的一段文字
+     */
+    public static final class Entry {
+        public final CharSequence text;
+        //最大宽度，不包含padding
+        public final int width;
+        public final TextStyle style;
+        //最大行数
+        public final int maxLines;
+        //图片大小，小于等于0时使用文字大小
+        public final int drawableSize;
+        //行间距
+        public final int lineSpace;
+        public final boolean includePad;
+
+        public Entry(@NonNull CharSequence text, int width, @NonNull TextStyle style) {
+            this(text, width, style, 0, 0, 0, true);
+        }
+
+        /**
+         * @param maxLines 小于等于0不限制
+         */
+        public Entry(@NonNull CharSequence text, int width, @NonNull TextStyle style, int maxLines,
+                     int drawableSize, int lineSpace, boolean includePad) {
+            this.text = text;
+            this.width = width;
+            this.style = style;
+            this.maxLines = maxLines <= 0 ? Integer.MAX_VALUE : maxLines;
+            this.drawableSize = drawableSize;
+            this.lineSpace = lineSpace;
+            this.includePad = includePad;
+        }
+    }
+}
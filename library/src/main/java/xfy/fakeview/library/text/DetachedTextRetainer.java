@@ -0,0 +1,83 @@
+package xfy.fakeview.library.text;
+
+import java.util.ArrayList;
+
+/**
+ * Created by XiongFangyu on 2018/4/20.
+ *
+ * 列表滑动时view会频繁detach和attach，默认detach时释放block list，attach时重新解析和计算
+ * 设置保留数量后，detach的{@link FTextDrawable}保留已解析并计算好的block list及布局，
+ * 再次attach时直接绘制；detach时只移除动态图片的callback，attach时重新设置
+ *
+ * 所有drawable共用一个LRU，超出数量时最早detach的drawable释放block list，
+ * 之后attach时和原来一样重新解析和计算
+ * 只能在主线程调用
+ */
+public final class DetachedTextRetainer {
+    //最多保留的drawable数量，0不保留
+    private static int maxSize = 0;
+    //按detach顺序，数量较少，使用==比较
+    private static final ArrayList<FTextDrawable> retained = new ArrayList<>();
+
+    private DetachedTextRetainer() {}
+
+    /**
+     * 设置最多保留的drawable数量，一般为列表一屏item数的2~3倍
+     * @param size 小于等于0时不保留，并释放已保留的
+     */
+    public static void setMaxSize(int size) {
+        maxSize = size < 0 ? 0 : size;
+        trimToSize(maxSize);
+    }
+
+    public static int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return 当前保留的drawable数量
+     */
+    public static int size() {
+        return retained.size();
+    }
+
+    /**
+     * 释放所有保留的drawable，如内存不足时
+     */
+    public static void clear() {
+        trimToSize(0);
+    }
+
+    /**
+     * detach时调用
+     * @return false表示不保留，需释放
+     */
+    static boolean retain(FTextDrawable drawable) {
+        if (maxSize <= 0)
+            return false;
+        remove(drawable);
+        retained.add(drawable);
+        trimToSize(maxSize);
+        return true;
+    }
+
+    /**
+     * attach或释放时调用
+     * @return 是否被保留
+     */
+    static boolean remove(FTextDrawable drawable) {
+        for (int i = retained.size() - 1; i >= 0; i --) {
+            if (retained.get(i) == drawable) {
+                retained.remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void trimToSize(int size) {
+        while (retained.size() > size) {
+            retained.remove(0).releaseBlockList();
+        }
+    }
+}
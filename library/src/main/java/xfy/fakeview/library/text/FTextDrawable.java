@@ -7,30 +7,42 @@ import android.graphics.PixelFormat;
 import android.graphics.Rect;
 import android.graphics.Typeface;
 import android.graphics.drawable.Drawable;
+import android.os.SystemClock;
+import android.support.annotation.ColorInt;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.text.TextPaint;
 import android.text.TextUtils;
-import android.util.Log;
 import android.view.MotionEvent;
 import android.view.View;
 
 import java.lang.ref.WeakReference;
 
+import xfy.fakeview.library.text.block.DefaultDrawableBlock;
+import xfy.fakeview.library.text.block.DefaultDrawableBlockList;
 import xfy.fakeview.library.text.block.IDrawableBlock;
 import xfy.fakeview.library.text.block.IDrawableBlockList;
+import xfy.fakeview.library.text.block.MeasureProgress;
+import xfy.fakeview.library.text.compiler.DefaultTextCompiler;
 import xfy.fakeview.library.text.compiler.ITextCompiler;
+import xfy.fakeview.library.text.compiler.ParagraphTextCompiler;
 import xfy.fakeview.library.text.drawer.TextDrawer;
+import xfy.fakeview.library.text.metrics.TextMetrics;
+import xfy.fakeview.library.text.param.ClickSpanBlockInfo;
+import xfy.fakeview.library.text.param.DrawableRects;
 import xfy.fakeview.library.text.param.ImmutableParams;
+import xfy.fakeview.library.text.param.TextStyle;
 import xfy.fakeview.library.text.param.VariableParams;
+import xfy.fakeview.library.text.utils.BaseSpan;
+import xfy.fakeview.library.text.utils.FClickableSpan;
 import xfy.fakeview.library.text.utils.LineUtils;
 import xfy.fakeview.library.text.utils.MeasureTextUtils;
+import xfy.fakeview.library.text.utils.SimpleGravity;
 
 /**
  * Created by XiongFangyu on 2018/3/1.
  */
 public class FTextDrawable extends Drawable implements Drawable.Callback{
-    private static final String TAG = "Fake--TextDrawable";
 
     private int lineSpace = 0;
     private int maxWidth;
@@ -40,6 +52,11 @@ public class FTextDrawable extends Drawable implements Drawable.Callback{
     private TextUtils.TruncateAt ellipsize = TextUtils.TruncateAt.END;
     private WeakReference<LayoutRequestListener> listenerRef;
     private boolean autoMeasure = false;
+    private boolean fixedSize = false;
+    //独立使用，需要时才计算，不回调LayoutRequestListener
+    private boolean selfMeasure = false;
+    private int measuredWidth;
+    private int measuredHeight;
 
     protected int textWidth;
     protected int lines;
@@ -53,38 +70,64 @@ public class FTextDrawable extends Drawable implements Drawable.Callback{
     protected final VariableParams variableParams;
     protected final ImmutableParams immutableParams;
 
-    protected final TextPaint mTextPaint;
+    protected TextPaint mTextPaint;
+    protected TextStyle textStyle;
 
     protected boolean needMeasureText = false;
     protected boolean needMeasureTextLines = true;
     protected boolean forceMeasureBlockList = false;
 
     protected IDrawableBlockList<IDrawableBlock> blockList;
+    //不为空时直接绘制共用的布局，不再解析和计算
+    private TextLayoutSnapshot layoutSnapshot;
     private ITextCompiler compiler;
+    private ParagraphTextCompiler paragraphCompiler;
+    private boolean editMode = false;
+    //限制行数时只解析了文本前面部分，为解析的结束位置；解析了全部文本时为-1
+    private int compiledEnd = -1;
+    //前面部分解析时，已计算的文本需距离解析结束位置的字符数，避免截断处的标记影响结果
+    private static final int PREFIX_SAFE_MARGIN = 64;
+    //每次计算最大耗时，单位纳秒，0不限制
+    private long measureBudget = 0;
+    //计算超时，等待下一帧继续计算
+    private boolean measurePending = false;
+    //限时计算的进度，block list可能被多个view共用，进度保存在各自的drawable中
+    private final MeasureProgress measureProgress = new MeasureProgress();
+    private final Runnable resumeMeasureTask = new Runnable() {
+        @Override
+        public void run() {
+            resumeMeasure();
+        }
+    };
+    //局部刷新区域，在invalidateSelf时由getDirtyBounds返回
+    private final Rect dirtyBounds = new Rect();
+    private boolean invalidatingDirty = false;
+    private final Rect tempRect = new Rect();
+    private Paint pressedPaint;
 
     public FTextDrawable() {
-        mTextPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
         variableParams = new VariableParams();
+        variableParams.drawableRects = new DrawableRects();
         immutableParams = new ImmutableParams();
-        immutableParams.paint = mTextPaint;
+        applyTextStyle(TextStyle.getDefault());
     }
 
     public FTextDrawable(StyleHelper helper) {
-        mTextPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
         variableParams = new VariableParams();
+        variableParams.drawableRects = new DrawableRects();
         immutableParams = new ImmutableParams();
-        immutableParams.paint = mTextPaint;
-        if (helper == null)
+        if (helper == null) {
+            applyTextStyle(TextStyle.getDefault());
             return;
+        }
+        applyTextStyle(helper.getTextStyle());
+        if (helper.textSize > 0)
+            drawableSize = helper.textSize;
         if (helper.textCompiler != null)
             setTextCompiler(helper.textCompiler);
         setAutoMeasure(helper.measureWhenSetText);
         setMaxLines(helper.maxLines);
-        if (helper.textSize > 0) {
-            setTextSize(helper.textSize);
-        }
         setLineSpace(helper.lineSpace);
-        setTextColor(helper.textColor);
         if (helper.drawableScale != 1) {
             setDrawableScale(helper.drawableScale);
         }
@@ -95,7 +138,6 @@ public class FTextDrawable extends Drawable implements Drawable.Callback{
             setText(helper.text);
         }
         setGravity(helper.gravity);
-        setEllipsizeText(helper.ellipsizeText);
         setMaxWidth(helper.maxWidth);
         setMaxHeight(helper.maxHeight);
     }
@@ -109,8 +151,24 @@ public class FTextDrawable extends Drawable implements Drawable.Callback{
         return autoMeasure;
     }
 
+    /**
+     * 不在{@link NewTextView}中，独立作为drawable使用时(如View背景、ImageView的src、FImageView中)设置为true
+     * 设置文字、样式后只标记需要计算，在{@link #getIntrinsicWidth()}、{@link #getIntrinsicHeight()}或绘制时才计算，
+     * 不回调{@link LayoutRequestListener}，文字改变后需由使用者重新获取大小
+     * 最大宽度未设置时按不换行的宽度计算，最大高度未设置时不限制；
+     * 解析结果在compiler中缓存，相同文字的label只需绘制
+     */
+    public void setSelfMeasure(boolean selfMeasure) {
+        this.selfMeasure = selfMeasure;
+    }
+
+    public boolean isSelfMeasure() {
+        return selfMeasure;
+    }
+
     public void setTextCompiler(ITextCompiler compiler) {
         this.compiler = compiler;
+        paragraphCompiler = null;
     }
 
     public ITextCompiler getCompiler() {
@@ -130,7 +188,7 @@ public class FTextDrawable extends Drawable implements Drawable.Callback{
         if (this.includePad != includePad) {
             this.includePad = includePad;
             if (mText != null) {
-                needMeasureTextLines = true;
+                requestMeasureTextLines();
                 if (autoMeasure)
                     measure();
                 requestLayout();
@@ -146,58 +204,193 @@ public class FTextDrawable extends Drawable implements Drawable.Callback{
     public void setText(CharSequence text) {
         if (TextUtils.isEmpty(text))
             text = null;
-        if (mText == null && text == null)
+        if (layoutSnapshot != null)
+            clearLayoutSnapshot();
+        else if (mText == null && text == null)
             return;
-        if (mText != null && mText.equals(text))
+        else if (mText != null && mText.equals(text))
             return;
         mText = text;
+        editMode = false;
+        variableParams.highlights = null;
         onTextSetted();
     }
 
-    public void setLayoutRequestListener(LayoutRequestListener listener) {
-        listenerRef = new WeakReference<LayoutRequestListener>(listener);
+    /**
+     * 编辑时设置文本，只重新解析和计算改变的段落
+     * 文本中不能含有{@link xfy.fakeview.library.text.utils.BaseSpan}，否则和{@link #setText(CharSequence)}相同
+     * @param text 编辑后的文本
+     */
+    public void setEditingText(CharSequence text) {
+        if (TextUtils.isEmpty(text))
+            text = null;
+        if (layoutSnapshot != null)
+            clearLayoutSnapshot();
+        if (text == null || !ParagraphTextCompiler.canCompileByParagraph(text)) {
+            setText(text);
+            return;
+        }
+        text = text.toString();
+        if (TextUtils.equals(mText, text))
+            return;
+        final CharSequence oldText = mText;
+        final IDrawableBlockList list = blockList;
+        mText = text;
+        variableParams.highlights = null;
+        if (editMode && oldText != null && list instanceof DefaultDrawableBlockList
+                && getParagraphCompiler().compileChanged((DefaultDrawableBlockList) list, oldText, text)) {
+            //被替换的block已回收，之后段落的行也可能改变，清除可点击block的位置，计算时重新添加
+            immutableParams.clearClickBlockInfo();
+            ((DefaultDrawableBlockList) list).remeasureSpanParagraphs();
+            blockList.addCallback(this);
+            onBlockListChanged();
+            return;
+        }
+        editMode = true;
+        onTextSetted();
     }
 
-    public void setUnderLineText(boolean underline) {
-        mTextPaint.setUnderlineText(underline);
-        needMeasureTextLines = true;
-        if (autoMeasure)
-            measure();
-        requestLayout();
+    /**
+     * 设置高亮范围，绘制时在对应文字下方绘制背景色，只会重新绘制，不会重新解析和计算
+     * 设置新文本后清除
+     * @param ranges 文本中的位置，[start0, end0, start1, end1...]，end不包含；为空时清除高亮
+     * @param color  高亮背景色
+     */
+    public void setHighlights(@Nullable int[] ranges, @ColorInt int color) {
+        if (ranges == null || ranges.length < 2) {
+            clearHighlights();
+            return;
+        }
+        int[] copy = new int[ranges.length & ~1];
+        System.arraycopy(ranges, 0, copy, 0, copy.length);
+        if (variableParams.highlightPaint == null)
+            variableParams.highlightPaint = new Paint();
+        variableParams.highlightPaint.setColor(color);
+        variableParams.highlights = copy;
         invalidateSelf();
     }
 
-    public void setBoldText(boolean bold) {
-        if (bold) {
-            TextDrawer.apply(mTextPaint, Typeface.BOLD);
-        } else {
-            TextDrawer.clear(mTextPaint, Typeface.BOLD);
+    public void clearHighlights() {
+        if (variableParams.highlights == null)
+            return;
+        variableParams.highlights = null;
+        invalidateSelf();
+    }
+
+    public int[] getHighlights() {
+        return variableParams.highlights;
+    }
+
+    /**
+     * 绘制共用的布局，不再解析和计算文本，宽高即为布局宽高
+     * 设置后文字样式、最大宽度、行数等设置不影响绘制，直到调用{@link #setText(CharSequence)}
+     * @param snapshot 为空时清除
+     * @see TextLayoutSnapshot#obtain
+     */
+    public void setLayoutSnapshot(TextLayoutSnapshot snapshot) {
+        if (layoutSnapshot == snapshot)
+            return;
+        if (snapshot == null) {
+            clearLayoutSnapshot();
+            mText = null;
+            lines = 0;
+            textWidth = 0;
+            requestLayout();
+            invalidateSelf();
+            return;
         }
-        needMeasureTextLines = true;
-        if (autoMeasure)
-            measure();
-        requestLayout();
+        final int oldWidth = getIntrinsicWidth();
+        final int oldHeight = getIntrinsicHeight();
+        release();
+        clearLayoutSnapshot();
+        layoutSnapshot = snapshot;
+        snapshot.addCallback(this);
+        mText = snapshot.getText();
+        editMode = false;
+        textWidth = snapshot.getWidth();
+        lines = snapshot.getLineCount();
+        needDrawLines = lines;
+        needMeasureText = false;
+        measuredWidth = textWidth;
+        measuredHeight = snapshot.getHeight();
+        if (!fixedSize && (oldWidth != measuredWidth || oldHeight != measuredHeight))
+            requestLayout();
         invalidateSelf();
     }
 
-    public void setItalicText(boolean italic) {
-        if (italic) {
-            TextDrawer.apply(mTextPaint, Typeface.ITALIC);
-        } else {
-            TextDrawer.clear(mTextPaint, Typeface.ITALIC);
+    public TextLayoutSnapshot getLayoutSnapshot() {
+        return layoutSnapshot;
+    }
+
+    private void clearLayoutSnapshot() {
+        if (layoutSnapshot == null)
+            return;
+        layoutSnapshot.removeCallback(this);
+        layoutSnapshot = null;
+        //按下的是共用布局中的block
+        immutableParams.pressedBlockInfo = null;
+        requestMeasureTextLines();
+    }
+
+    public void setLayoutRequestListener(LayoutRequestListener listener) {
+        listenerRef = new WeakReference<LayoutRequestListener>(listener);
+    }
+
+    public TextStyle getTextStyle() {
+        return textStyle;
+    }
+
+    /**
+     * 设置样式，相同样式的drawable可共用同一个{@link TextStyle}
+     * @param style 样式
+     */
+    public void setTextStyle(@NonNull TextStyle style) {
+        if (textStyle == style)
+            return;
+        final TextStyle old = textStyle;
+        applyTextStyle(style);
+        if (old.textSize != style.textSize && !drawableSizeSetted)
+            drawableSize = (int) style.textSize;
+        if (mText == null)
+            return;
+        if (old.textSize != style.textSize
+                || old.typefaceStyle != style.typefaceStyle
+                || old.underline != style.underline) {
+            requestMeasureTextLines();
+            if (autoMeasure)
+                measure();
+            requestLayout();
         }
-        needMeasureTextLines = true;
-        if (autoMeasure)
-            measure();
-        requestLayout();
         invalidateSelf();
     }
 
+    public void setUnderLineText(boolean underline) {
+        setTextStyle(textStyle.withUnderline(underline));
+    }
+
+    public void setBoldText(boolean bold) {
+        final int style = textStyle.typefaceStyle;
+        setTextStyle(textStyle.withTypefaceStyle(bold ? style | Typeface.BOLD : style & ~Typeface.BOLD));
+    }
+
+    public void setItalicText(boolean italic) {
+        final int style = textStyle.typefaceStyle;
+        setTextStyle(textStyle.withTypefaceStyle(italic ? style | Typeface.ITALIC : style & ~Typeface.ITALIC));
+    }
+
+    private void applyTextStyle(TextStyle style) {
+        textStyle = style;
+        mTextPaint = style.getPaint();
+        immutableParams.paint = mTextPaint;
+        immutableParams.ellipsizeText = style.ellipsizeText;
+        immutableParams.ellipsizeLength = style.getEllipsizeLength();
+    }
+
     public void setDrawableSize(int drawableSize) {
         drawableSizeSetted = true;
         if (this.drawableSize != drawableSize) {
             this.drawableSize = drawableSize;
-            needMeasureTextLines = true;
+            requestMeasureTextLines();
             if (mText != null) {
                 if (autoMeasure)
                     measure();
@@ -213,11 +406,7 @@ public class FTextDrawable extends Drawable implements Drawable.Callback{
     }
 
     public void setTextColor(int textColor) {
-        if (mTextPaint.getColor() != textColor) {
-            mTextPaint.setColor(textColor);
-            if (mText != null)
-                invalidateSelf();
-        }
+        setTextStyle(textStyle.withTextColor(textColor));
     }
 
     public void setLineSpace(int lineSpace) {
@@ -237,7 +426,7 @@ public class FTextDrawable extends Drawable implements Drawable.Callback{
         this.maxWidth = maxWidth;
         this.maxHeight = maxHeight;
         if (changed && mText != null) {
-            needMeasureTextLines = true;
+            requestMeasureTextLines();
             needMeasureText = true;
         }
     }
@@ -247,7 +436,7 @@ public class FTextDrawable extends Drawable implements Drawable.Callback{
         if (this.maxWidth != maxWidth) {
             this.maxWidth = maxWidth;
             if (mText != null) {
-                needMeasureTextLines = true;
+                requestMeasureTextLines();
                 needMeasureText = true;
                 if (autoMeasure)
                     measure();
@@ -262,7 +451,7 @@ public class FTextDrawable extends Drawable implements Drawable.Callback{
         if (this.maxHeight != maxHeight) {
             this.maxHeight = maxHeight;
             if (mText != null) {
-                needMeasureTextLines = true;
+                requestMeasureTextLines();
                 needMeasureText = true;
                 if (autoMeasure)
                     measure();
@@ -273,26 +462,11 @@ public class FTextDrawable extends Drawable implements Drawable.Callback{
     }
 
     public void setTextSize(float textSize) {
-        if (mTextPaint.getTextSize() != textSize) {
-            mTextPaint.setTextSize(textSize);
-            needMeasureTextLines = true;
-            if (!drawableSizeSetted)
-                drawableSize = (int) textSize;
-            immutableParams.ellipsizeLength = TextDrawer.getEllipsizeLength(mTextPaint, immutableParams.ellipsizeText);
-            if (mText != null) {
-                if (autoMeasure)
-                    measure();
-                requestLayout();
-                invalidateSelf();
-            }
-        }
+        setTextStyle(textStyle.withTextSize(textSize));
     }
 
     public void setEllipsizeText(String ellipsizeText) {
-        if (!TextUtils.equals(immutableParams.ellipsizeText, ellipsizeText)) {
-            immutableParams.ellipsizeText = ellipsizeText;
-            immutableParams.ellipsizeLength = TextDrawer.getEllipsizeLength(mTextPaint, immutableParams.ellipsizeText);
-        }
+        setTextStyle(textStyle.withEllipsizeText(ellipsizeText));
     }
 
     public void setMaxLines(int maxLines) {
@@ -300,6 +474,7 @@ public class FTextDrawable extends Drawable implements Drawable.Callback{
         if (this.maxLines != maxLines) {
             this.maxLines = maxLines;
             if (mText != null) {
+                requestMeasureTextLines();
                 if (autoMeasure)
                     measure();
                 requestLayout();
@@ -309,18 +484,87 @@ public class FTextDrawable extends Drawable implements Drawable.Callback{
     }
 
     public boolean onTouchEvent(@NonNull View v, MotionEvent event) {
-        if (blockList != null)
-            return blockList.onTouchEvent(v, event, immutableParams);
+        if (layoutSnapshot != null || blockList != null) {
+            final ClickSpanBlockInfo oldPressed = immutableParams.pressedBlockInfo;
+            final boolean result;
+            if (layoutSnapshot != null) {
+                final long position = getSnapshotPosition();
+                final float x = event.getX();
+                final float y = event.getY();
+                event.setLocation(x - SimpleGravity.getLeft(position), y - SimpleGravity.getTop(position));
+                try {
+                    result = layoutSnapshot.onTouchEvent(v, event, immutableParams);
+                } finally {
+                    event.setLocation(x, y);
+                }
+            } else {
+                result = blockList.onTouchEvent(v, event, immutableParams);
+            }
+            final ClickSpanBlockInfo pressed = immutableParams.pressedBlockInfo;
+            if (oldPressed != pressed) {
+                invalidateSpanBlock(oldPressed);
+                invalidateSpanBlock(pressed);
+            }
+            return result;
+        }
         return false;
     }
 
+    /**
+     * 清除可点击文字的按下状态，如在区域外抬起或事件被取消时
+     */
+    public void clearPressed() {
+        final ClickSpanBlockInfo pressed = immutableParams.pressedBlockInfo;
+        if (pressed == null)
+            return;
+        immutableParams.pressedBlockInfo = null;
+        invalidateSpanBlock(pressed);
+    }
+
     public void onAttachedToWindow() {
+        if (layoutSnapshot != null) {
+            layoutSnapshot.addCallback(this);
+            return;
+        }
+        if (DetachedTextRetainer.remove(this) && blockList != null) {
+            //detach时保留了block list，只需重新设置动态图片的callback
+            blockList.addCallback(this);
+            return;
+        }
         if (blockList == null && mText != null) {
             onTextSetted();
         }
     }
 
+    /**
+     * 默认释放block list，attach时重新解析和计算；
+     * 若{@link DetachedTextRetainer}有空间，只移除动态图片的callback，保留block list及布局
+     */
     public void onDetachedFromWindow() {
+        if (layoutSnapshot != null)
+            layoutSnapshot.removeCallback(this);
+        final boolean pending = measurePending;
+        cancelPendingMeasure();
+        if (blockList != null && !pending && DetachedTextRetainer.retain(this)) {
+            blockList.removeCallback(this);
+            immutableParams.pressedBlockInfo = null;
+            return;
+        }
+        releaseBlockList();
+    }
+
+    /**
+     * 不再使用此drawable时调用，释放block list，不会被{@link DetachedTextRetainer}保留
+     */
+    public void release() {
+        if (layoutSnapshot != null)
+            layoutSnapshot.removeCallback(this);
+        cancelPendingMeasure();
+        DetachedTextRetainer.remove(this);
+        releaseBlockList();
+    }
+
+    void releaseBlockList() {
         if (blockList != null) {
             blockList.notUse();
             blockList.removeCallback(this);
@@ -330,13 +574,85 @@ public class FTextDrawable extends Drawable implements Drawable.Callback{
     }
 
     public void measure() {
-        if (maxWidth == 0 || maxHeight == 0) {
+        if (layoutSnapshot != null)
+            return;
+        if (!selfMeasure && (maxWidth == 0 || maxHeight == 0)) {
             needMeasureText = true;
             return;
         }
         calTextLinesAndContentWidth();
         calNeedDrawLines();
         initImmutableParams();
+        measuredWidth = textWidth;
+        measuredHeight = getTextHeight();
+    }
+
+    /**
+     * 独立使用时，文字或计算参数改变后在获取大小或绘制前计算
+     */
+    private void measureIfNeeded() {
+        if (selfMeasure && layoutSnapshot == null && mText != null
+                && (needMeasureText || needMeasureTextLines))
+            measure();
+    }
+
+    /**
+     * 宽高都固定时，设置文本只需重新绘制，不需要requestLayout
+     * @param fixed 宽高是否固定，如{@link View.MeasureSpec#EXACTLY}
+     */
+    public void setFixedSize(boolean fixed) {
+        fixedSize = fixed;
+    }
+
+    /**
+     * 设置每次计算的最大耗时，超时后保存计算进度，先绘制已计算完成的行，在下一帧继续计算
+     * 适用于很长的文本，避免一次计算导致掉帧
+     * @param budgetNanos 单位纳秒，0表示不限制
+     */
+    public void setMeasureBudget(long budgetNanos) {
+        measureBudget = budgetNanos < 0 ? 0 : budgetNanos;
+    }
+
+    /**
+     * 最宽的不可换行单元(单词、中文字符或图片)宽度，宽度小于此值时单词会被截断
+     * 不需要计算，结果缓存在解析后的block list中
+     */
+    public int getMinContentWidth() {
+        return MeasureTextUtils.getMinContentWidth(getContentWidths());
+    }
+
+    /**
+     * 不限宽度时最长一行的宽度，宽度大于等于此值时不会自动换行
+     * 不需要计算，结果缓存在解析后的block list中
+     */
+    public int getMaxContentWidth() {
+        return MeasureTextUtils.getMaxContentWidth(getContentWidths());
+    }
+
+    private long getContentWidths() {
+        if (blockList == null)
+            return 0;
+        if (compiledEnd >= 0) {
+            //需要全部文本的宽度
+            compileFullText();
+            measure();
+        }
+        final int drawableSize = blockList.hasDrawable() ? this.drawableSize : 0;
+        return blockList.getContentWidths(mTextPaint, drawableSize);
+    }
+
+    /**
+     * @return 已计算的行数，计算未完成时为已完成的行数
+     */
+    public int getLineCount() {
+        return lines;
+    }
+
+    /**
+     * @return 是否还有未计算完成的文本
+     */
+    public boolean isMeasurePending() {
+        return measurePending;
     }
 
     public void setForceMeasureBlockList(boolean force) {
@@ -351,7 +667,14 @@ public class FTextDrawable extends Drawable implements Drawable.Callback{
     //<editor-folder desc="drawable method">
     @Override
     public void draw(@NonNull Canvas canvas) {
+        if (layoutSnapshot != null) {
+            drawLayoutSnapshot(canvas);
+            return;
+        }
+        measureIfNeeded();
         if (needMeasureText) {
+            if (selfMeasure)
+                return;
             requestLayout();
             invalidateSelf();
             return;
@@ -366,17 +689,124 @@ public class FTextDrawable extends Drawable implements Drawable.Callback{
         initParamsBeforeDraw();
         if (needDrawLines <= 0)
             return;
+        final long metricsStart = TextMetrics.start();
         blockList.draw(canvas, variableParams, immutableParams);
+        drawPressedSpan(canvas);
+        TextMetrics.recordDraw(metricsStart);
+    }
+
+    /**
+     * 在按下的可点击文字上方绘制{@link FClickableSpan#getPressedColor()}
+     */
+    private void drawPressedSpan(Canvas canvas) {
+        final ClickSpanBlockInfo pressed = immutableParams.pressedBlockInfo;
+        final FClickableSpan span = getPressedSpan(pressed);
+        if (span == null)
+            return;
+        if (pressedPaint == null)
+            pressedPaint = new Paint();
+        pressedPaint.setColor(span.getPressedColor());
+        final ImmutableParams params = getLayoutParams();
+        final int save = canvas.save();
+        canvas.translate(variableParams.translateX, variableParams.translateY);
+        for (int i = 0, l = pressed.getLines(); i < l; i ++) {
+            if (pressed.getLineRect(params, i, tempRect))
+                canvas.drawRect(tempRect, pressedPaint);
+        }
+        canvas.restoreToCount(save);
+    }
+
+    private static FClickableSpan getPressedSpan(ClickSpanBlockInfo info) {
+        if (info == null || !(info.block instanceof DefaultDrawableBlock))
+            return null;
+        final BaseSpan span = ((DefaultDrawableBlock) info.block).getSpan();
+        if (span instanceof FClickableSpan && ((FClickableSpan) span).isHasPressedColor())
+            return (FClickableSpan) span;
+        return null;
+    }
+
+    /**
+     * 只刷新可点击block所在区域，没有按下颜色时不需要刷新
+     */
+    private void invalidateSpanBlock(ClickSpanBlockInfo info) {
+        if (getPressedSpan(info) == null || !info.getBounds(getLayoutParams(), tempRect))
+            return;
+        if (layoutSnapshot != null) {
+            final long position = getSnapshotPosition();
+            tempRect.offset(SimpleGravity.getLeft(position), SimpleGravity.getTop(position));
+        } else {
+            tempRect.offset(variableParams.translateX, variableParams.translateY);
+        }
+        invalidateRect(tempRect);
+    }
+
+    /**
+     * 可点击block位置对应的参数，绘制共用布局时为布局的参数
+     */
+    private ImmutableParams getLayoutParams() {
+        return layoutSnapshot != null ? layoutSnapshot.getParams() : immutableParams;
+    }
+
+    /**
+     * 只刷新rect区域，view或FView在{@link Drawable.Callback#invalidateDrawable(Drawable)}中
+     * 通过{@link #getDirtyBounds()}获取刷新区域
+     */
+    private void invalidateRect(Rect rect) {
+        if (!rect.intersect(getBounds()))
+            return;
+        dirtyBounds.set(rect);
+        invalidatingDirty = true;
+        try {
+            invalidateSelf();
+        } finally {
+            invalidatingDirty = false;
+        }
+    }
+
+    @NonNull
+    @Override
+    public Rect getDirtyBounds() {
+        return invalidatingDirty ? dirtyBounds : super.getDirtyBounds();
+    }
+
+    private void drawLayoutSnapshot(Canvas canvas) {
+        final Rect bounds = getBounds();
+        if (bounds.width() == 0 || bounds.height() == 0)
+            return;
+        final long metricsStart = TextMetrics.start();
+        final long position = getSnapshotPosition();
+        final int left = SimpleGravity.getLeft(position);
+        final int top = SimpleGravity.getTop(position);
+        final int save = canvas.save();
+        canvas.translate(left, top);
+        variableParams.drawableRects.clear();
+        layoutSnapshot.draw(canvas, variableParams);
+        variableParams.translateX += left;
+        variableParams.translateY += top;
+        canvas.restoreToCount(save);
+        drawPressedSpan(canvas);
+        TextMetrics.recordDraw(metricsStart);
+    }
+
+    /**
+     * 共用布局按gravity在bounds中的位置
+     */
+    private long getSnapshotPosition() {
+        final Rect bounds = getBounds();
+        if (!immutableParams.translateByGravity)
+            return SimpleGravity.combine(bounds.left, bounds.top);
+        return SimpleGravity.apply(immutableParams.gravity, bounds.left, bounds.top, bounds.right, bounds.bottom,
+                layoutSnapshot.getWidth(), layoutSnapshot.getHeight());
     }
 
     @Override
     public void setAlpha(int alpha) {
-        mTextPaint.setAlpha(alpha);
+        setTextStyle(textStyle.withAlpha(alpha));
     }
 
     @Override
     public void setColorFilter(@Nullable ColorFilter colorFilter) {
-        mTextPaint.setColorFilter(colorFilter);
+        setTextStyle(textStyle.withColorFilter(colorFilter));
     }
 
     @Override
@@ -386,11 +816,19 @@ public class FTextDrawable extends Drawable implements Drawable.Callback{
 
     @Override
     public int getIntrinsicWidth() {
+        measureIfNeeded();
         return textWidth;
     }
 
     @Override
     public int getIntrinsicHeight() {
+        measureIfNeeded();
+        return getTextHeight();
+    }
+
+    private int getTextHeight() {
+        if (layoutSnapshot != null)
+            return layoutSnapshot.getHeight();
         int flags[] = blockList != null ? blockList.getLinesHeight() : null;
         return flags != null ? LineUtils.getAllLineHeight(flags, needDrawLines) + lineSpace * (needDrawLines - 1): 0;
     }
@@ -406,6 +844,7 @@ public class FTextDrawable extends Drawable implements Drawable.Callback{
 
     //<editor-folder desc="private method">
     private void onTextSetted() {
+        compiledEnd = -1;
         if (compiler != null) {
             if (blockList != null) {
                 blockList.removeCallback(this);
@@ -414,21 +853,100 @@ public class FTextDrawable extends Drawable implements Drawable.Callback{
             }
             if (mText == null) {
                 blockList = null;
+            } else if (editMode) {
+                blockList = (IDrawableBlockList) getParagraphCompiler().compile(mText);
+                blockList.addCallback(this);
             } else {
-                blockList = compiler.compile(mText);
+                final int end = getPrefixCompileEnd();
+                if (end > 0) {
+                    compiledEnd = end;
+                    blockList = (IDrawableBlockList) ((DefaultTextCompiler) compiler).compile(mText, 0, end);
+                } else {
+                    blockList = compiler.compile(mText);
+                }
                 blockList.addCallback(this);
                 blockList.setNeedSetCallbackCount(blockList.getNeedSetCallbackCount());
             }
         } else {
             throw new NullPointerException("compiler is null, please set compiler before set text!");
         }
-        needMeasureTextLines = true;
-        if (autoMeasure)
+        onBlockListChanged();
+    }
+
+    /**
+     * 限制了行数的长文本只解析可能显示的前面部分，按最窄字符(约文字大小的1/4)估算，
+     * 计算后确认超出最大行数才使用，否则解析全部文本
+     * @return 解析结束位置，-1表示解析全部文本
+     */
+    private int getPrefixCompileEnd() {
+        if (maxLines <= 0 || maxLines == Integer.MAX_VALUE || maxWidth <= 0
+                || !(compiler instanceof DefaultTextCompiler))
+            return -1;
+        final DefaultTextCompiler c = (DefaultTextCompiler) compiler;
+        if (!c.canCompilePrefix() || c.isCached(mText))
+            return -1;
+        final float minCharWidth = Math.max(1f, mTextPaint.getTextSize() / 4);
+        final long end = (maxLines + 1L) * ((long) (maxWidth / minCharWidth) + 1) * 2 + PREFIX_SAFE_MARGIN;
+        return end < mText.length() ? (int) end : -1;
+    }
+
+    /**
+     * 只解析了前面部分时，解析全部文本并替换block list，需重新计算
+     */
+    private void compileFullText() {
+        if (compiledEnd < 0 || blockList == null)
+            return;
+        compiledEnd = -1;
+        blockList.removeCallback(this);
+        blockList.notUse();
+        immutableParams.clearClickBlockInfo();
+        blockList = compiler.compile(mText);
+        blockList.addCallback(this);
+        blockList.setNeedSetCallbackCount(blockList.getNeedSetCallbackCount());
+        requestMeasureTextLines();
+    }
+
+    /**
+     * 前面部分的计算结果超出最大行数，且计算的文本不受截断位置影响
+     */
+    private boolean isPrefixEnough(long flag) {
+        final IDrawableBlockList list = blockList;
+        return MeasureTextUtils.getLines(flag) > maxLines
+                && list instanceof DefaultDrawableBlockList
+                && ((DefaultDrawableBlockList) list).getMeasuredTextEnd() <= compiledEnd - PREFIX_SAFE_MARGIN;
+    }
+
+    private void onBlockListChanged() {
+        requestMeasureTextLines();
+        if (selfMeasure) {
+            needMeasureText = true;
+            invalidateSelf();
+            return;
+        }
+        if (maxWidth > 0 && maxHeight > 0) {
+            final int oldWidth = measuredWidth;
+            final int oldHeight = measuredHeight;
+            measure();
+            if (!needMeasureText && (fixedSize || (oldWidth == measuredWidth && oldHeight == measuredHeight))) {
+                invalidateSelf();
+                return;
+            }
+        } else if (autoMeasure) {
             measure();
+        }
         requestLayout();
         invalidateSelf();
     }
 
+    private ParagraphTextCompiler getParagraphCompiler() {
+        if (paragraphCompiler == null) {
+            if (compiler == null)
+                throw new NullPointerException("compiler is null, please set compiler before set text!");
+            paragraphCompiler = new ParagraphTextCompiler(compiler);
+        }
+        return paragraphCompiler;
+    }
+
     private void initParamsBeforeDraw() {
         final Rect bounds = getBounds();
         final int left = bounds.left;
@@ -443,6 +961,8 @@ public class FTextDrawable extends Drawable implements Drawable.Callback{
         variableParams.currentTop = top;
         variableParams.currentDrawLine = 0;
         variableParams.isDrawEndEllipsize = false;
+        variableParams.currentCharIndex = 0;
+        variableParams.drawableRects.clear();
     }
 
     private void initImmutableParams() {
@@ -472,49 +992,106 @@ public class FTextDrawable extends Drawable implements Drawable.Callback{
         needMeasureTextLines = false;
         final Rect bounds = getBounds();
         final int left = bounds.left;
+        final int drawableSize = blockList.hasDrawable() ? this.drawableSize : 0;
         int maxWidth = this.maxWidth;
         if (maxWidth == 0) {
-            maxWidth = bounds.width();
+            //独立使用时按不换行的宽度
+            maxWidth = selfMeasure
+                    ? MeasureTextUtils.getMaxContentWidth(blockList.getContentWidths(mTextPaint, drawableSize))
+                    : bounds.width();
         }
-        long flag = TextDrawer.measureText(immutableParams, blockList, drawableSize, left, left, left + maxWidth, includePad, forceMeasureBlockList);
-        if (MeasureTextUtils.getState(flag) == MeasureTextUtils.STATE_SUCCESS) {
+        final boolean resume = measurePending;
+        if (!resume)
+            measureProgress.reset();
+        final long deadline = measureBudget > 0 ? System.nanoTime() + measureBudget : 0;
+        final long metricsStart = TextMetrics.start();
+        long flag = TextDrawer.measureText(immutableParams, blockList, textStyle.getLineInfo(drawableSize, includePad),
+                drawableSize, left, left, left + maxWidth, includePad, forceMeasureBlockList && !resume,
+                deadline, deadline > 0 ? measureProgress : null, maxLines);
+        TextMetrics.recordMeasure(metricsStart);
+        final int state = MeasureTextUtils.getState(flag);
+        if (state == MeasureTextUtils.STATE_SUCCESS && compiledEnd >= 0 && !isPrefixEnough(flag)) {
+            compileFullText();
+            calTextLinesAndContentWidth();
+            return;
+        }
+        if (state == MeasureTextUtils.STATE_SUCCESS) {
             textWidth = MeasureTextUtils.getMaxWidth(flag);
             lines = MeasureTextUtils.getLines(flag);
             needMeasureText = false;
+            cancelPendingMeasure();
+        } else if (state == MeasureTextUtils.STATE_TIMEOUT) {
+            //最后一行可能还未计算完成，只绘制之前的行
+            textWidth = MeasureTextUtils.getMaxWidth(flag);
+            lines = Math.min(MeasureTextUtils.getLines(flag) - 1, blockList.getLineHeightSize());
+            needMeasureText = false;
+            needMeasureTextLines = true;
+            measurePending = true;
+            unscheduleSelf(resumeMeasureTask);
+            scheduleSelf(resumeMeasureTask, SystemClock.uptimeMillis());
         } else {
             needMeasureText = true;
         }
     }
 
+    /**
+     * 下一帧继续上次超时的计算
+     */
+    private void resumeMeasure() {
+        if (!measurePending || blockList == null)
+            return;
+        final int oldWidth = measuredWidth;
+        final int oldHeight = measuredHeight;
+        measure();
+        if (!fixedSize && (oldWidth != measuredWidth || oldHeight != measuredHeight))
+            requestLayout();
+        invalidateSelf();
+    }
+
+    private void cancelPendingMeasure() {
+        if (!measurePending)
+            return;
+        measurePending = false;
+        measureProgress.reset();
+        unscheduleSelf(resumeMeasureTask);
+    }
+
+    /**
+     * 计算参数改变，需从头计算
+     */
+    private void requestMeasureTextLines() {
+        needMeasureTextLines = true;
+        cancelPendingMeasure();
+    }
+
     private void calNeedDrawLines() {
         needDrawLines = lines;
         if (maxLines < lines && maxLines > 0) {
             needDrawLines = maxLines;
         }
-        isNeedEllipsize = lines > needDrawLines;
+        isNeedEllipsize = !measurePending && lines > needDrawLines;
     }
 
     private void requestLayout() {
+        if (selfMeasure)
+            return;
         LayoutRequestListener listener = listenerRef != null ? listenerRef.get() : null;
         if (listener != null) {
             listener.needRequest(this);
         }
     }
 
-    private long now() {
-        return System.nanoTime();
-    }
-
-    private long logCast(String pre, long start) {
-        long now = now();
-        Log.d(TAG, pre + (now - start));
-        return now;
-    }
     //</editor-folder>
 
     //<editor-folder desc="Drawable.Callback">
     @Override
     public void invalidateDrawable(@NonNull Drawable who) {
+        //文字中的动态图片只刷新图片所在区域
+        if (who != this && variableParams.drawableRects.getBounds(who, tempRect)) {
+            tempRect.offset(variableParams.translateX, variableParams.translateY);
+            invalidateRect(tempRect);
+            return;
+        }
         invalidateSelf();
     }
 
@@ -9,7 +9,6 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.RequiresApi;
 import android.util.AttributeSet;
-import android.util.Log;
 import android.util.TypedValue;
 import android.view.MotionEvent;
 import android.view.View;
@@ -23,7 +22,6 @@ import xfy.fakeview.library.text.utils.MeasureTextUtils;
  * Created by XiongFangyu on 2018/3/1.
  */
 public class NewTextView extends View implements FTextDrawable.LayoutRequestListener {
-    private static final String TAG = "Fake--NewTextView";
     private final FTextDrawable textDrawable;
     private int maxWidth;
     private int maxHeight;
@@ -115,6 +113,29 @@ public class NewTextView extends View implements FTextDrawable.LayoutRequestList
         textDrawable.setText(text);
     }
 
+    /**
+     * 编辑文本时使用，只重新计算改变的段落
+     * @see FTextDrawable#setEditingText(CharSequence)
+     */
+    public void setEditingText(CharSequence text) {
+        textDrawable.setEditingText(text);
+    }
+
+    /**
+     * 绘制共用的布局，不需要再解析和计算
+     * @see FTextDrawable#setLayoutSnapshot(TextLayoutSnapshot)
+     */
+    public void setLayoutSnapshot(TextLayoutSnapshot snapshot) {
+        textDrawable.setLayoutSnapshot(snapshot);
+    }
+
+    /**
+     * @see FTextDrawable#setHighlights(int[], int)
+     */
+    public void setHighlights(int[] ranges, int color) {
+        textDrawable.setHighlights(ranges, color);
+    }
+
     public void setGravity(int gravity) {
         textDrawable.setGravity(gravity);
     }
@@ -127,6 +148,14 @@ public class NewTextView extends View implements FTextDrawable.LayoutRequestList
         textDrawable.setForceMeasureBlockList(force);
     }
 
+    /**
+     * 超长文本分帧计算
+     * @see FTextDrawable#setMeasureBudget(long)
+     */
+    public void setMeasureBudget(long budgetNanos) {
+        textDrawable.setMeasureBudget(budgetNanos);
+    }
+
     @Override
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
@@ -156,6 +185,7 @@ public class NewTextView extends View implements FTextDrawable.LayoutRequestList
         int maxHeight = (heightSize == 0 ? this.maxHeight : heightSize) - pl - pr;
         maxHeight = maxHeight == 0 ? MeasureTextUtils.HEIGHT_MAX_SIZE : maxHeight;
         textDrawable.justSetMaxSize(maxWidth, maxHeight);
+        textDrawable.setFixedSize(widthMode == MeasureSpec.EXACTLY && heightMode == MeasureSpec.EXACTLY);
 //        textDrawable.setMaxWidth(maxWidth);
 //        textDrawable.setMaxHeight(maxHeight);
         if (!textDrawable.isAutoMeasure()) {
@@ -217,14 +247,4 @@ public class NewTextView extends View implements FTextDrawable.LayoutRequestList
         Resources resources = getResources();
         return TypedValue.applyDimension(type, s, resources.getDisplayMetrics());
     }
-
-    private static long now() {
-        return System.nanoTime();
-    }
-
-    private static long logCast(String pre, long now) {
-        long end = now();
-        Log.d(TAG, pre + (end - now));
-        return end;
-    }
 }
@@ -4,6 +4,7 @@ import android.content.Context;
 import android.content.res.Resources;
 import android.content.res.TypedArray;
 import android.graphics.Color;
+import android.graphics.Typeface;
 import android.support.annotation.Nullable;
 import android.text.TextUtils;
 import android.util.AttributeSet;
@@ -15,9 +16,13 @@ import xfy.fakeview.library.R;
 import xfy.fakeview.library.text.compiler.ClickSpanTextCompiler;
 import xfy.fakeview.library.text.compiler.DefaultTextCompiler;
 import xfy.fakeview.library.text.compiler.DrawableTextCompiler;
+import xfy.fakeview.library.text.compiler.EntityTextCompiler;
+import xfy.fakeview.library.text.compiler.HtmlTextCompiler;
 import xfy.fakeview.library.text.compiler.ITextCompiler;
+import xfy.fakeview.library.text.compiler.SpannedTextCompiler;
 import xfy.fakeview.library.text.compiler.SpecialTextHelper;
 import xfy.fakeview.library.text.drawer.TextDrawer;
+import xfy.fakeview.library.text.param.TextStyle;
 
 /**
  * Created by XiongFangyu on 2018/3/20.
@@ -48,6 +53,24 @@ public class StyleHelper {
                 return SpecialTextHelper.getSpecialCompiler(context);
             }
         },
+        spanned {
+            @Override
+            ITextCompiler getCompiler(Context context) {
+                return SpannedTextCompiler.getCompiler();
+            }
+        },
+        html {
+            @Override
+            ITextCompiler getCompiler(Context context) {
+                return HtmlTextCompiler.getCompiler();
+            }
+        },
+        entity {
+            @Override
+            ITextCompiler getCompiler(Context context) {
+                return EntityTextCompiler.getCompiler();
+            }
+        },
         ;
         abstract ITextCompiler getCompiler(Context context);
     }
@@ -129,6 +152,13 @@ public class StyleHelper {
         }
     }
 
+    /**
+     * @return 共用的文字样式
+     */
+    public TextStyle getTextStyle() {
+        return TextStyle.obtain(textSize, textColor, Typeface.NORMAL, false, ellipsizeText);
+    }
+
     private void setTextCompiler(Context context, TypedArray a, int attr) {
         try {
             int e = a.getInt(attr, -1);
@@ -0,0 +1,269 @@
+package xfy.fakeview.library.text;
+
+import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+import android.text.TextUtils;
+import android.util.LruCache;
+import android.view.MotionEvent;
+import android.view.View;
+
+import xfy.fakeview.library.text.block.DefaultDrawableBlockList;
+import xfy.fakeview.library.text.compiler.ITextCompiler;
+import xfy.fakeview.library.text.drawer.TextDrawer;
+import xfy.fakeview.library.text.param.ImmutableParams;
+import xfy.fakeview.library.text.param.TextStyle;
+import xfy.fakeview.library.text.param.VariableParams;
+import xfy.fakeview.library.text.utils.LineUtils;
+import xfy.fakeview.library.text.utils.MeasureTextUtils;
+
+/**
+ * Created by XiongFangyu on 2018/4/20.
+ *
+ * 解析并计算完成后不可变的文字布局，包含block，行信息及宽高
+ * 相同文字、样式、宽度的布局只计算一次，可被任意多个{@link FTextDrawable}/{@link NewTextView}同时绘制，
+ * view只需保存引用及绘制位置，不需要再计算
+ *
+ * 使用{@link #obtain}获取共用的snapshot，适合列表中大量重复的短文本，如"回复"，"今天"，数字角标
+ * block list为此snapshot独有，不会被其他view重新计算
+ */
+public final class TextLayoutSnapshot {
+    private static final int CACHE_SIZE = 64;
+    private static final LruCache<Key, TextLayoutSnapshot> cache = new LruCache<>(CACHE_SIZE);
+
+    private final CharSequence text;
+    private final TextStyle textStyle;
+    private final DefaultDrawableBlockList blockList;
+    private final ImmutableParams immutableParams;
+    private final int width;
+    private final int height;
+    private final int lines;
+    private final int firstBaseline;
+
+    private TextLayoutSnapshot(CharSequence text, TextStyle textStyle, DefaultDrawableBlockList blockList,
+                               ImmutableParams immutableParams, int width, int height, int lines) {
+        this.text = text;
+        this.textStyle = textStyle;
+        this.blockList = blockList;
+        this.immutableParams = immutableParams;
+        this.width = width;
+        this.height = height;
+        this.lines = lines;
+        this.firstBaseline = immutableParams.lineInfos != null ? LineUtils.getBaseLine(immutableParams.lineInfos, 0) : 0;
+    }
+
+    /**
+     * 获取共用的布局，不存在时解析并计算
+     * 需在主线程调用
+     * @param text         文本，不可为空
+     * @param compiler     解析器
+     * @param style        文字样式
+     * @param maxWidth     最大宽度
+     * @param maxLines     最大行数，小于等于0不限制
+     * @param drawableSize 图片大小，小于等于0时使用文字大小
+     * @param lineSpace    行间距
+     * @param includePad   include font padding
+     */
+    public static TextLayoutSnapshot obtain(@NonNull CharSequence text, @NonNull ITextCompiler<DefaultDrawableBlockList> compiler,
+                                            @NonNull TextStyle style, int maxWidth, int maxLines, int drawableSize,
+                                            int lineSpace, boolean includePad) {
+        if (TextUtils.isEmpty(text))
+            throw new IllegalArgumentException("text must not be empty");
+        if (maxWidth <= 0)
+            throw new IllegalArgumentException("maxWidth must > 0");
+        maxLines = maxLines <= 0 ? Integer.MAX_VALUE : maxLines;
+        drawableSize = drawableSize <= 0 ? (int) style.textSize : drawableSize;
+        Key key = new Key(text, compiler, style, maxWidth, maxLines, drawableSize, lineSpace, includePad);
+        synchronized (cache) {
+            TextLayoutSnapshot result = cache.get(key);
+            if (result != null)
+                return result;
+        }
+        TextLayoutSnapshot result = create(text, compiler, style, maxWidth, maxLines, drawableSize, lineSpace, includePad);
+        synchronized (cache) {
+            TextLayoutSnapshot old = cache.get(key);
+            if (old != null)
+                return old;
+            cache.put(key, result);
+        }
+        return result;
+    }
+
+    public static void clearCache() {
+        synchronized (cache) {
+            cache.evictAll();
+        }
+    }
+
+    private static TextLayoutSnapshot create(CharSequence text, ITextCompiler<DefaultDrawableBlockList> compiler,
+                                             TextStyle style, int maxWidth, int maxLines, int drawableSize,
+                                             int lineSpace, boolean includePad) {
+        //不使用compiler缓存中的list，缓存中的list可能被其他view按其他宽度重新计算
+        final int len = text.length();
+        DefaultDrawableBlockList list = DefaultDrawableBlockList.obtain(true, 0, len);
+        compiler.compileInternal(list, text, 0, len, null);
+        //不回收，被移出缓存后可能仍有view在绘制
+        list.use();
+        list.doNotRecycle();
+
+        ImmutableParams params = new ImmutableParams();
+        params.paint = style.getPaint();
+        params.ellipsizeText = style.ellipsizeText;
+        params.ellipsizeLength = style.getEllipsizeLength();
+        params.drawableHeight = drawableSize;
+        params.lineSpace = lineSpace;
+
+        final int ds = list.hasDrawable() ? drawableSize : 0;
+        long flag = TextDrawer.measureText(params, list, style.getLineInfo(ds, includePad),
+                ds, 0, 0, maxWidth, includePad, true, maxLines);
+        int width = 0;
+        int lines = 0;
+        if (MeasureTextUtils.getState(flag) == MeasureTextUtils.STATE_SUCCESS) {
+            width = MeasureTextUtils.getMaxWidth(flag);
+            lines = MeasureTextUtils.getLines(flag);
+        }
+        final int needDrawLines = Math.min(lines, maxLines);
+        int[] flags = list.getLinesHeight();
+        if (flags != null) {
+            int[] clone = new int[flags.length];
+            System.arraycopy(flags, 0, clone, 0, flags.length);
+            flags = clone;
+        }
+        params.lines = lines;
+        params.needDrawLine = needDrawLines;
+        params.truncateAt = lines > needDrawLines ? TextUtils.TruncateAt.END : null;
+        params.lineInfos = flags;
+        params.blockFlag = list.getFlag();
+        final int height = flags != null && needDrawLines > 0
+                ? LineUtils.getAllLineHeight(flags, needDrawLines) + lineSpace * (needDrawLines - 1) : 0;
+        params.left = 0;
+        params.top = 0;
+        params.right = width;
+        params.bottom = height;
+        return new TextLayoutSnapshot(text, style, list, params, width, height, needDrawLines);
+    }
+
+    public CharSequence getText() {
+        return text;
+    }
+
+    public TextStyle getTextStyle() {
+        return textStyle;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return 需要绘制的行数
+     */
+    public int getLineCount() {
+        return lines;
+    }
+
+    /**
+     * 在(0, 0)位置绘制，调用者负责平移canvas
+     * @param variableParams 绘制时使用的可变参数，由调用者持有
+     */
+    public void draw(@NonNull Canvas canvas, @NonNull VariableParams variableParams) {
+        if (lines <= 0 || width <= 0)
+            return;
+        variableParams.currentBaseline = firstBaseline;
+        variableParams.currentLeft = 0;
+        variableParams.currentTop = 0;
+        variableParams.currentDrawLine = 0;
+        variableParams.isDrawEndEllipsize = false;
+        variableParams.currentCharIndex = 0;
+        blockList.draw(canvas, variableParams, immutableParams);
+    }
+
+    /**
+     * 按下状态保存在view自己的参数中，不影响其他绘制此布局的view
+     * 需在主线程调用
+     * @param event      坐标需相对于此布局的(0, 0)
+     * @param viewParams 调用者的参数，读取并更新{@link ImmutableParams#pressedBlockInfo}
+     */
+    public boolean onTouchEvent(@NonNull View v, MotionEvent event, @NonNull ImmutableParams viewParams) {
+        immutableParams.pressedBlockInfo = viewParams.pressedBlockInfo;
+        try {
+            return blockList.onTouchEvent(v, event, immutableParams);
+        } finally {
+            viewParams.pressedBlockInfo = immutableParams.pressedBlockInfo;
+            immutableParams.pressedBlockInfo = null;
+        }
+    }
+
+    /**
+     * 布局参数，可点击block的位置等，只读
+     */
+    ImmutableParams getParams() {
+        return immutableParams;
+    }
+
+    void addCallback(Drawable.Callback callback) {
+        blockList.addCallback(callback);
+    }
+
+    void removeCallback(Drawable.Callback callback) {
+        blockList.removeCallback(callback);
+    }
+
+    private static final class Key {
+        final CharSequence text;
+        final ITextCompiler compiler;
+        final TextStyle style;
+        final int maxWidth;
+        final int maxLines;
+        final int drawableSize;
+        final int lineSpace;
+        final boolean includePad;
+        final int hash;
+
+        Key(CharSequence text, ITextCompiler compiler, TextStyle style, int maxWidth, int maxLines,
+            int drawableSize, int lineSpace, boolean includePad) {
+            this.text = text;
+            this.compiler = compiler;
+            this.style = style;
+            this.maxWidth = maxWidth;
+            this.maxLines = maxLines;
+            this.drawableSize = drawableSize;
+            this.lineSpace = lineSpace;
+            this.includePad = includePad;
+            int h = text.hashCode();
+            h = 31 * h + System.identityHashCode(compiler);
+            h = 31 * h + style.hashCode();
+            h = 31 * h + maxWidth;
+            h = 31 * h + maxLines;
+            h = 31 * h + drawableSize;
+            h = 31 * h + lineSpace;
+            h = 31 * h + (includePad ? 1 : 0);
+            hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return hash == k.hash
+                    && compiler == k.compiler
+                    && maxWidth == k.maxWidth
+                    && maxLines == k.maxLines
+                    && drawableSize == k.drawableSize
+                    && lineSpace == k.lineSpace
+                    && includePad == k.includePad
+                    && style.equals(k.style)
+                    && text.equals(k.text);
+        }
+    }
+}
@@ -8,10 +8,20 @@ public class BlockMeasureParams {
     public int drawableSize;
     public int currentLeft;
     public int currentTop;
+    //当前计算的行(从0开始)，计算每个block前由list设置
+    public int currentLine;
     public int left;
     public int right;
     public boolean includePad;
     public boolean forceMeasure;
+    //System.nanoTime()截止时间，超过后保存进度到progress并返回STATE_TIMEOUT，0表示不限制
+    public long deadline;
+    //限时计算的进度，为null时不限时；有未完成的计算时从保存的位置继续
+    public MeasureProgress progress;
+    //从当前行开始最多计算的行数，达到后停止计算，0表示不限制
+    public int lineBudget;
+    //计算结果：因lineBudget停止时已计算的字符数(上限)，-1表示全部计算
+    public int measuredLength = -1;
 
     private BlockMeasureParams() {}
 
@@ -58,4 +68,19 @@ public class BlockMeasureParams {
         forceMeasure = force;
         return this;
     }
+
+    public BlockMeasureParams setDeadline(long deadline) {
+        this.deadline = deadline;
+        return this;
+    }
+
+    public BlockMeasureParams setProgress(MeasureProgress progress) {
+        this.progress = progress;
+        return this;
+    }
+
+    public BlockMeasureParams setLineBudget(int lineBudget) {
+        this.lineBudget = lineBudget;
+        return this;
+    }
 }
@@ -1,6 +1,7 @@
 package xfy.fakeview.library.text.block;
 
 import android.graphics.Canvas;
+import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
@@ -12,6 +13,8 @@ import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.List;
 
+import xfy.fakeview.library.text.drawer.ChipDrawer;
+import xfy.fakeview.library.text.drawer.GlyphDrawer;
 import xfy.fakeview.library.text.drawer.TextDrawableDrawer;
 import xfy.fakeview.library.text.drawer.TextDrawer;
 import xfy.fakeview.library.text.param.ClickSpanBlockInfo;
@@ -19,9 +22,11 @@ import xfy.fakeview.library.text.param.ImmutableParams;
 import xfy.fakeview.library.text.param.SpecialStyleParams;
 import xfy.fakeview.library.text.param.VariableParams;
 import xfy.fakeview.library.text.utils.BaseSpan;
+import xfy.fakeview.library.text.utils.Chip;
 import xfy.fakeview.library.text.utils.IDrawableStats;
 import xfy.fakeview.library.text.utils.FClickableSpan;
 import xfy.fakeview.library.text.utils.IllegalDrawableException;
+import xfy.fakeview.library.text.utils.LineBreakUtils;
 import xfy.fakeview.library.text.utils.LineUtils;
 import xfy.fakeview.library.text.utils.MeasureTextUtils;
 import xfy.fakeview.library.text.utils.NoCacheSpanRegister;
@@ -37,6 +42,12 @@ public class DefaultDrawableBlock implements IDrawableBlock<DefaultDrawableBlock
     private Drawable specialDrawable;
     private DefaultDrawableBlockList children;
     private BaseSpan span;
+    //文本可换行位置，解析时计算，null表示任意位置都可换行
+    private long[] lineBreaks;
+    //圆角标签，类型为CHIP时不为空
+    private Chip chip;
+    //文本排版结果，开启GlyphDrawer后第一次绘制时创建
+    private GlyphDrawer.GlyphCache glyphCache;
 
     private final ArrayList<WeakReference<Drawable.Callback>> callbacks;
     private boolean hasCreateNewDrawableForSpecialDrawable;
@@ -49,6 +60,8 @@ public class DefaultDrawableBlock implements IDrawableBlock<DefaultDrawableBlock
     }
 
     private static final int DEFAULT_SIZE = 20;
+    //点击判断时使用，只在主线程中
+    private static final Rect tempRect = new Rect();
     private static final List<DefaultDrawableBlock> cache;
     static {
         cache = new ArrayList<>(DEFAULT_SIZE);
@@ -75,6 +88,9 @@ public class DefaultDrawableBlock implements IDrawableBlock<DefaultDrawableBlock
         type = 0;
         baseLine = 0;
         mText = null;
+        lineBreaks = null;
+        chip = null;
+        glyphCache = null;
         if (textStyleParams != null)
             textStyleParams.recycle();
         textStyleParams = null;
@@ -124,6 +140,14 @@ public class DefaultDrawableBlock implements IDrawableBlock<DefaultDrawableBlock
         return mText;
     }
 
+    /**
+     * 文本block的可换行位置，null表示任意位置都可换行
+     * @see LineBreakUtils#computeBreaks(CharSequence)
+     */
+    public long[] getLineBreaks() {
+        return lineBreaks;
+    }
+
     @Override
     public int getDrawableRes() {
         return drawableRes;
@@ -134,6 +158,25 @@ public class DefaultDrawableBlock implements IDrawableBlock<DefaultDrawableBlock
         return specialDrawable;
     }
 
+    public Chip getChip() {
+        return chip;
+    }
+
+    /**
+     * 文本block的排版缓存，未开启{@link GlyphDrawer}时为null
+     */
+    public GlyphDrawer.GlyphCache getGlyphCache() {
+        return glyphCache;
+    }
+
+    public BaseSpan getSpan() {
+        return span;
+    }
+
+    public SpecialStyleParams getTextStyleParams() {
+        return textStyleParams;
+    }
+
     @Override
     public DefaultDrawableBlockList getChildren() {
         return children;
@@ -149,8 +192,10 @@ public class DefaultDrawableBlock implements IDrawableBlock<DefaultDrawableBlock
         final boolean includePad = measureParams.includePad;
         int lineInfo = measureParams.lineInfo;
         int top = measureParams.currentTop;
+        final int line = measureParams.currentLine;
         int fontHeight = LineUtils.getLineHeight(lineInfo);
         this.baseLine = LineUtils.getBaseLine(lineInfo);
+        DefaultDrawableBlockList children;
         switch (type) {
             case TEXT:
                 float oldTextSize = textPaint.getTextSize();
@@ -163,7 +208,7 @@ public class DefaultDrawableBlock implements IDrawableBlock<DefaultDrawableBlock
                         measureParams.lineInfo = LineUtils.combime(fontHeight, baseLine);
                     }
                 }
-                flag = TextDrawer.measureText(textPaint, mText, currentLeft, left, right, 0);
+                flag = TextDrawer.measureText(textPaint, mText, lineBreaks, currentLeft, left, right, measureParams);
                 flag = MeasureTextUtils.setMaxHeight(flag, fontHeight);
                 textPaint.setTextSize(oldTextSize);
                 break;
@@ -195,15 +240,23 @@ public class DefaultDrawableBlock implements IDrawableBlock<DefaultDrawableBlock
                 }
                 flag = TextDrawer.measureFixWidth(TextDrawableDrawer.measureDrawableWidth(specialDrawable, drawableSize), currentLeft, left, right);
                 break;
+            case CHIP:
+                flag = TextDrawer.measureFixWidth(ChipDrawer.measureChipWidth(textPaint, chip, drawableSize), currentLeft, left, right);
+                break;
+            case PARAGRAPH:
+                children = getChildren();
+                flag = children == null ? 0 : children.measure(measureParams, immutableParams);
+                break;
             case SPAN:
-                DefaultDrawableBlockList children = getChildren();
+                children = getChildren();
                 if (children == null) {
                     flag = 0;
                 } else {
                     flag = children.measure(measureParams, immutableParams);
                 }
-                if (span instanceof FClickableSpan) {
-                    immutableParams.addClickSpanBlockInfo(this, currentLeft, top, flag);
+                //超时时span还未计算完成，继续计算完成后再添加
+                if (span instanceof FClickableSpan && MeasureTextUtils.getState(flag) != MeasureTextUtils.STATE_TIMEOUT) {
+                    immutableParams.addClickSpanBlockInfo(this, currentLeft, top, line, flag);
                 }
                 break;
         }
@@ -216,13 +269,45 @@ public class DefaultDrawableBlock implements IDrawableBlock<DefaultDrawableBlock
         return flag;
     }
 
+    /**
+     * 图片类型block的宽度，其他类型返回0
+     */
+    public int measureDrawableWidth(int drawableSize) {
+        switch (type) {
+            case DRAWABLE:
+                //资源图片先加载再测量
+                if (specialDrawable == null && drawableRes > 0)
+                    specialDrawable = TextDrawableDrawer.getDrawableDrawer().getSpecialDrawable(drawableRes, drawableSize);
+                return measureSpecialDrawableWidth(drawableSize);
+            case SPECIAL_DRAWABLE:
+            case NEED_SET_CALLBACK_DRAWABLE:
+                return measureSpecialDrawableWidth(drawableSize);
+        }
+        return 0;
+    }
+
+    private int measureSpecialDrawableWidth(int drawableSize) {
+        return specialDrawable == null ? 0 : TextDrawableDrawer.measureDrawableWidth(specialDrawable, drawableSize);
+    }
+
+    /**
+     * 图片及标签类型block的宽度，其他类型返回0
+     */
+    public int measureDrawableWidth(@NonNull TextPaint paint, int drawableSize) {
+        if (type == CHIP)
+            return ChipDrawer.measureChipWidth(paint, chip, drawableSize);
+        return measureDrawableWidth(drawableSize);
+    }
+
     @Override
     public boolean draw(Canvas canvas, @NonNull VariableParams variableParams, @NonNull ImmutableParams immutableParams) {
         if (variableParams.isDrawEndEllipsize)
             return true;
         switch (type) {
             case TEXT:
-                TextDrawer.drawText(canvas, mText, variableParams, immutableParams, textStyleParams);
+                if (glyphCache == null && GlyphDrawer.isEnabled())
+                    glyphCache = new GlyphDrawer.GlyphCache();
+                TextDrawer.drawText(canvas, mText, lineBreaks, variableParams, immutableParams, textStyleParams, glyphCache);
                 break;
             case NEXTLINE:
                 TextDrawer.drawNextLine(canvas, variableParams, immutableParams);
@@ -252,6 +337,10 @@ public class DefaultDrawableBlock implements IDrawableBlock<DefaultDrawableBlock
                 }
                 TextDrawableDrawer.getDrawableDrawer().drawSpecialDrawable(canvas, specialDrawable, variableParams, immutableParams);
                 break;
+            case CHIP:
+                ChipDrawer.drawChip(canvas, chip, variableParams, immutableParams);
+                break;
+            case PARAGRAPH:
             case SPAN:
                 DefaultDrawableBlockList children = getChildren();
                 if (children == null)
@@ -266,6 +355,7 @@ public class DefaultDrawableBlock implements IDrawableBlock<DefaultDrawableBlock
             default:
                 return false;
         }
+        variableParams.currentCharIndex += mText != null ? mText.length() : 0;
         return true;
     }
 
@@ -338,47 +428,14 @@ public class DefaultDrawableBlock implements IDrawableBlock<DefaultDrawableBlock
     }
 
     private boolean isPointInThisBlock(float x, float y, @NonNull ImmutableParams immutableParams, @NonNull ClickSpanBlockInfo blockInfo) {
-        long flag = blockInfo.blockFlag;
-        final int h = MeasureTextUtils.getMaxHeight(flag);
-        if (h <= 0)
-            return false;
-        final int cl = MeasureTextUtils.getCurrentLeft(flag);
-        if (cl == 0)
-            return false;
-        final int lines = MeasureTextUtils.getLines(flag);
-        if (lines == 0)
-            return false;
-        x -= immutableParams.left;
-        y -= immutableParams.top;
-        if (x < 0 || y < 0)
-            return false;
-        final int left = blockInfo.blockLeft;
-        final int top = blockInfo.blockTop;
-        final int b = h + top;
-        if (lines == 1) {
-            return x >= left && x <= cl && y >= top && y <= b;
-        }
-        final int vr = immutableParams.right;
-        if (x > vr || y > b)
-            return false;
-        float lh = (float)h / lines;
-        if (left < cl) {
-            if (isPointInRect(x, y, left, top, vr, b))
-                return true;
-            if (isPointInRect(x, y, 0, (int) (top + lh), left, b))
-                return true;
-            if (isPointInRect(x, y, cl, top, vr, (int) (b - lh)))
-                return true;
-            return false;
-        } else {
-            if (isPointInRect(x, y, 0, (int) (top + lh), cl, b))
-                return true;
-            if (isPointInRect(x, y, cl, top, left, (int) (b - lh)))
-                return true;
-            if (isPointInRect(x, y, left, top, vr, (int) (b - lh)))
+        final Rect rect = tempRect;
+        for (int i = 0, l = blockInfo.getLines(); i < l; i ++) {
+            if (!blockInfo.getLineRect(immutableParams, i, rect))
+                return false;
+            if (isPointInRect(x, y, rect.left, rect.top, rect.right, rect.bottom))
                 return true;
-            return false;
         }
+        return false;
     }
 
     private boolean isPointInRect(float x, float y, int l, int t, int r, int b) {
@@ -389,7 +446,8 @@ public class DefaultDrawableBlock implements IDrawableBlock<DefaultDrawableBlock
         DefaultDrawableBlock block = DefaultDrawableBlock.obtain();
         block.mText = text;
         block.type = TEXT;
-        block.textStyleParams = params;
+        block.lineBreaks = LineBreakUtils.computeBreaks(text);
+        block.textStyleParams = params == null ? null : params.use();
         return block;
     }
 
@@ -420,22 +478,48 @@ public class DefaultDrawableBlock implements IDrawableBlock<DefaultDrawableBlock
         return block;
     }
 
+    /**
+     * 圆角标签block，不需要创建Drawable，宽度在计算时得出
+     * @param text 原文本，如"[vip]"
+     * @param chip 标签样式
+     */
+    public static DefaultDrawableBlock createChipBlock(CharSequence text, @NonNull Chip chip) {
+        DefaultDrawableBlock block = DefaultDrawableBlock.obtain();
+        block.mText = text;
+        block.type = CHIP;
+        block.chip = chip;
+        return block;
+    }
+
     public static DefaultDrawableBlock createSpanBlock(CharSequence text, BaseSpan span, DefaultDrawableBlockList children) {
         DefaultDrawableBlock block = DefaultDrawableBlock.obtain();
         block.mText = text;
         block.type = SPAN;
         block.children = children;
         block.span = span;
-        block.textStyleParams = SpecialStyleParams.obtain(span);
+        block.textStyleParams = SpecialStyleParams.obtain(span).use();
         for (int i = 0, l = children.size(); i < l;i ++) {
             DefaultDrawableBlock b = children.get(i);
             if (b != null && b.textStyleParams == null) {
-                b.textStyleParams = block.textStyleParams;
+                b.textStyleParams = block.textStyleParams.use();
             }
         }
         return block;
     }
 
+    /**
+     * 段落block，children中不含换行符，由{@link xfy.fakeview.library.text.compiler.ParagraphTextCompiler}创建
+     * @param text     段落文本
+     * @param children 段落中的block，需已调用{@link DefaultDrawableBlockList#use()}
+     */
+    public static DefaultDrawableBlock createParagraphBlock(CharSequence text, DefaultDrawableBlockList children) {
+        DefaultDrawableBlock block = DefaultDrawableBlock.obtain();
+        block.mText = text;
+        block.type = PARAGRAPH;
+        block.children = children;
+        return block;
+    }
+
     public static DefaultDrawableBlock createNextLineBlock() {
         DefaultDrawableBlock block = DefaultDrawableBlock.obtain();
         block.mText = "\n";
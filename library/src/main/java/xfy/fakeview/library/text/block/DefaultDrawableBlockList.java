@@ -3,6 +3,7 @@ package xfy.fakeview.library.text.block;
 import android.graphics.Canvas;
 import android.graphics.drawable.Drawable;
 import android.support.annotation.NonNull;
+import android.text.TextPaint;
 import android.util.Log;
 import android.view.MotionEvent;
 import android.view.View;
@@ -13,7 +14,9 @@ import java.util.List;
 import xfy.fakeview.library.DebugInfo;
 import xfy.fakeview.library.text.param.ClickSpanBlockInfo;
 import xfy.fakeview.library.text.param.ImmutableParams;
+import xfy.fakeview.library.text.param.SpecialStyleParams;
 import xfy.fakeview.library.text.param.VariableParams;
+import xfy.fakeview.library.text.utils.LineBreakUtils;
 import xfy.fakeview.library.text.utils.LineUtils;
 import xfy.fakeview.library.text.utils.MeasureTextUtils;
 import xfy.fakeview.library.text.utils.SimpleGravity;
@@ -30,17 +33,36 @@ public class DefaultDrawableBlockList extends ArrayList<DefaultDrawableBlock> im
 //    private int mDrawableCount;
 //    private int mSpecialDrawableCount;
     private boolean isRoot = false;
-    private boolean hasSpan = false;
     private int needSetCallbackBlockCount;
+    //包含span、图片的block个数及不能缓存的block个数(span或段落的子list中有也算)，替换block时增量更新
+    private int spanBlockCount;
+    private int drawableBlockCount;
+    private int notCacheBlockCount;
 
     private long lastFlag = 0;
     private int lastDrawableSize = 0;
-    private int lastCLeft = 0;
     private int lastLeft = 0;
     private int lastRight = 0;
     private float lastTextSize;
-    private boolean canSaveToCache = true;
-    private boolean hasDrawable = false;
+
+    //min-content max-content宽度缓存
+    private long contentWidths = -1;
+    private int contentWidthsDrawableSize;
+    private float contentWidthsTextSize;
+    private float[] widthsBuffer;
+
+    //计算参数或block改变时增加，保存的计算进度(MeasureProgress)版本不同时不能继续
+    private int version;
+    //上次计算开始时的参数
+    private int lastStartLeft;
+    private int lastLineInfo;
+
+    //计算时的行数限制，达到后停止计算，0表示不限制
+    private int lastLineBudget;
+    //是否因行数限制没有计算全部block
+    private boolean lastTruncated;
+    //因行数限制停止时已计算的字符数(上限)，-1表示全部计算
+    private int measuredLength = -1;
 
     private static final int DEFAULT_EXPAND_SIZE = 10;
     private int[] lineFlags;
@@ -59,9 +81,11 @@ public class DefaultDrawableBlockList extends ArrayList<DefaultDrawableBlock> im
     }
 
     public synchronized static DefaultDrawableBlockList obtain(boolean root, int start, int end) {
+        DefaultDrawableBlockList list;
         if (cache.isEmpty())
-            return new DefaultDrawableBlockList(start, end);
-        DefaultDrawableBlockList list = cache.remove(0);
+            list = new DefaultDrawableBlockList(start, end);
+        else
+            list = cache.remove(0);
         list.isRoot = root;
         list.mStart = start;
         list.mEnd = end;
@@ -75,17 +99,24 @@ public class DefaultDrawableBlockList extends ArrayList<DefaultDrawableBlock> im
     private void recycle() {
         lines = 0;
         lineFlags = null;
-        hasSpan = false;
-        hasDrawable = false;
+        spanBlockCount = 0;
+        drawableBlockCount = 0;
+        notCacheBlockCount = 0;
         needSetCallbackBlockCount = 0;
 //        mNewLineCount = 0;
 //        mDrawableCount = 0;
 //        mSpecialDrawableCount = 0;
         lastFlag = 0;
         lastDrawableSize = 0;
-        lastCLeft = 0;
+        lastStartLeft = 0;
         lastLeft = 0;
         lastRight = 0;
+        version ++;
+        lastLineBudget = 0;
+        lastTruncated = false;
+        measuredLength = -1;
+        contentWidths = -1;
+        widthsBuffer = null;
         for (int i = 0, l = size(); i < l;i ++) {
             DefaultDrawableBlock block = get(i);
             if (block == null)
@@ -140,15 +171,25 @@ public class DefaultDrawableBlockList extends ArrayList<DefaultDrawableBlock> im
     public boolean onTouchEvent(@NonNull View v, MotionEvent event, @NonNull ImmutableParams immutableParams) {
         if (!hasSpan() || immutableParams.clickSpanBlockInfos == null || immutableParams.clickSpanBlockInfos.size() == 0)
             return false;
+        final int action = event.getAction();
+        ClickSpanBlockInfo pressed = null;
+        boolean result = false;
         for (int i = 0, l = immutableParams.clickSpanBlockInfos.size(); i < l;i ++) {
             ClickSpanBlockInfo blockInfo = immutableParams.clickSpanBlockInfos.get(i);
             if (blockInfo != null && blockInfo.block != null) {
                 if (blockInfo.block.onTouchEvent(v, event, immutableParams, blockInfo)) {
-                    return true;
+                    if (action == MotionEvent.ACTION_DOWN)
+                        pressed = blockInfo;
+                    result = true;
+                    break;
                 }
             }
         }
-        return false;
+        if (action == MotionEvent.ACTION_DOWN || action == MotionEvent.ACTION_UP
+                || action == MotionEvent.ACTION_CANCEL) {
+            immutableParams.pressedBlockInfo = pressed;
+        }
+        return result;
     }
 
     @Override
@@ -172,7 +213,7 @@ public class DefaultDrawableBlockList extends ArrayList<DefaultDrawableBlock> im
     public boolean draw(Canvas canvas, @NonNull VariableParams variableParams, @NonNull ImmutableParams immutableParams) {
         boolean result = true;
         canvas.save();
-        traslateCanvas(canvas, immutableParams);
+        traslateCanvas(canvas, variableParams, immutableParams);
         for (int i = 0, l = size(); i < l; i ++) {
             result |= get(i).draw(canvas, variableParams, immutableParams);
         }
@@ -188,7 +229,7 @@ public class DefaultDrawableBlockList extends ArrayList<DefaultDrawableBlock> im
             IDrawableBlock block = get(i);
             if (block.getType() == IDrawableBlock.NEED_SET_CALLBACK_DRAWABLE) {
                 block.addCallback(callback);
-            } else if (block.getType() == IDrawableBlock.SPAN) {
+            } else if (block.getType() == IDrawableBlock.SPAN || block.getType() == IDrawableBlock.PARAGRAPH) {
                 block.getChildren().addCallback(callback);
             }
         }
@@ -202,13 +243,15 @@ public class DefaultDrawableBlockList extends ArrayList<DefaultDrawableBlock> im
             IDrawableBlock block = get(i);
             if (block.getType() == IDrawableBlock.NEED_SET_CALLBACK_DRAWABLE) {
                 block.removeCallback(callback);
-            } else if (block.getType() == IDrawableBlock.SPAN) {
+            } else if (block.getType() == IDrawableBlock.SPAN || block.getType() == IDrawableBlock.PARAGRAPH) {
                 block.getChildren().removeCallback(callback);
             }
         }
     }
 
-    private void traslateCanvas(Canvas canvas, ImmutableParams params) {
+    private void traslateCanvas(Canvas canvas, VariableParams variableParams, ImmutableParams params) {
+        variableParams.translateX = 0;
+        variableParams.translateY = 0;
         if (!params.translateByGravity)
             return;
         final int textWidth = MeasureTextUtils.getMaxWidth(params.blockFlag);
@@ -216,7 +259,14 @@ public class DefaultDrawableBlockList extends ArrayList<DefaultDrawableBlock> im
         if (textHeight == 0)
             return;
         final int gravity = params.gravity;
-        translateByGravity(canvas, gravity, params.left, params.top, params.right, params.bottom, textWidth, textHeight);
+        long flag = SimpleGravity.apply(gravity, params.left, params.top, params.right, params.bottom, textWidth, textHeight);
+        final int tx = SimpleGravity.getLeft(flag) - params.left;
+        final int ty = SimpleGravity.getTop(flag) - params.top;
+        if (tx == 0 && ty == 0)
+            return;
+        canvas.translate(tx, ty);
+        variableParams.translateX = tx;
+        variableParams.translateY = ty;
     }
 
     public static boolean translateByGravity(Canvas canvas, int gravity, int l, int t, int r, int b, int textWidth, int textHeight) {
@@ -258,7 +308,7 @@ public class DefaultDrawableBlockList extends ArrayList<DefaultDrawableBlock> im
 
     @Override
     public boolean canSaveToCache() {
-        return canSaveToCache;
+        return notCacheBlockCount == 0;
     }
 
     @Override
@@ -278,7 +328,7 @@ public class DefaultDrawableBlockList extends ArrayList<DefaultDrawableBlock> im
 
     @Override
     public boolean hasDrawable() {
-        return hasDrawable;
+        return drawableBlockCount > 0;
     }
 
 //    @Override
@@ -298,7 +348,7 @@ public class DefaultDrawableBlockList extends ArrayList<DefaultDrawableBlock> im
 
     @Override
     public boolean hasSpan() {
-        return hasSpan;
+        return spanBlockCount > 0;
     }
 
     @Override
@@ -319,20 +369,68 @@ public class DefaultDrawableBlockList extends ArrayList<DefaultDrawableBlock> im
         int currentTop = measureParams.currentTop;
         final int left = measureParams.left;
         final int right = measureParams.right;
-        if (!checkNeedMeasure(measureParams, immutableParams)) {
+        //此list第一行在root list中的行
+        final int startLine = measureParams.currentLine;
+        final MeasureProgress progress = measureParams.progress;
+        if (isRoot && progress != null) {
+            progress.level = 0;
+            progress.resuming = canResume(progress, measureParams, immutableParams);
+            if (!progress.resuming)
+                progress.reset();
+        }
+        final int level = progress != null ? progress.level : 0;
+        final boolean resume = progress != null && progress.resuming && level < progress.depth;
+        if (!resume && !checkNeedMeasure(measureParams, immutableParams)) {
+            measureParams.measuredLength = measuredLength;
             return lastFlag;
         }
-        long flag = MeasureTextUtils.setLines(0, 1);
+        //从当前行开始最多计算的行数，每个block的限制为剩余行数
+        final int lineBudget = measureParams.lineBudget;
+        long flag;
+        int start = 0;
+        if (resume) {
+            start = progress.indexes[level];
+            flag = progress.flags[level];
+            currentLeft = progress.currentLefts[level];
+            currentTop = progress.currentTops[level];
+            lines = progress.lines[level];
+            //最内层超时的位置在两个block之间时恢复完成，否则继续恢复第start个文本block中的进度
+            if (level == progress.depth - 1 && !progress.isTextSaved())
+                progress.resuming = false;
+        } else {
+            flag = MeasureTextUtils.setLines(0, 1);
+            lines = 0;
+            if (isRoot)
+                onMeasureStart(measureParams, immutableParams);
+            lastStartLeft = currentLeft;
+            lastLineBudget = lineBudget;
+            lastLineInfo = lineInfo;
+        }
+        lastTruncated = false;
+        measuredLength = -1;
+        //有进度时可中断，子list(span，段落)中的进度保存在下一层
+        final long deadline = progress != null ? measureParams.deadline : 0;
+        if (progress != null)
+            progress.level = level + 1;
         int len = size();
-        for (int i = 0; i < len; i ++) {
+        for (int i = start; i < len; i ++) {
             IDrawableBlock block = get(i);
             if (block == null)
                 continue;
+            final long preFlag = flag;
+            final int preCurrentLeft = currentLeft;
+            final int preCurrentTop = currentTop;
+            final int preLines = lines;
             measureParams.currentLeft = currentLeft;
             measureParams.currentTop = currentTop;
+            measureParams.currentLine = startLine + MeasureTextUtils.getLines(flag) - 1;
+            measureParams.measuredLength = -1;
+            if (lineBudget > 0)
+                measureParams.lineBudget = lineBudget - MeasureTextUtils.getLines(flag) + 1;
             long bf = block.measure(measureParams, immutableParams);
             int state = bf == 0 ? MeasureTextUtils.STATE_ERROR : MeasureTextUtils.getState(bf);
-            if (state == MeasureTextUtils.STATE_SUCCESS) {
+            //超时时也合并已计算的行，用于先绘制已完成的行，继续计算时从计算此block之前的结果开始
+            if (state == MeasureTextUtils.STATE_SUCCESS || state == MeasureTextUtils.STATE_TIMEOUT) {
                 int cl = MeasureTextUtils.getLines(flag);
                 currentLeft = MeasureTextUtils.getCurrentLeft(bf);
                 int blines = MeasureTextUtils.getLines(bf);
@@ -342,7 +440,10 @@ public class DefaultDrawableBlockList extends ArrayList<DefaultDrawableBlock> im
                 //相当于index + 1,所以不减
                 int lineStart = cl;
                 int lh = getLastLineHeight();
-                if (drawOnFirstLine) {
+                if (block.getType() == IDrawableBlock.PARAGRAPH) {
+                    //段落从当前行开始，直接复制段落中每行的高度
+                    copyLineHeight(get(i).getChildren(), lineStart - 1, blines, lineInfo);
+                } else if (drawOnFirstLine) {
                     //需要覆盖上一行的高度，所以要减
                     if (lineHeight > lh) {
                         lineStart --;
@@ -363,23 +464,137 @@ public class DefaultDrawableBlockList extends ArrayList<DefaultDrawableBlock> im
             } else {
                 MeasureTextUtils.setState(flag, state);
             }
+            if (state == MeasureTextUtils.STATE_TIMEOUT) {
+                //子list超时时已保存下一层的进度
+                if (block.getType() != IDrawableBlock.SPAN && block.getType() != IDrawableBlock.PARAGRAPH)
+                    progress.onTimeout(level);
+                progress.saveFrame(level, i, preFlag, preCurrentLeft, preCurrentTop, preLines);
+                flag = MeasureTextUtils.setState(flag, MeasureTextUtils.STATE_TIMEOUT);
+                break;
+            }
+            if (lineBudget > 0 && MeasureTextUtils.getLines(flag) >= lineBudget
+                    && (i < len - 1 || measureParams.measuredLength >= 0)) {
+                lastTruncated = true;
+                measuredLength = getTextLength(i + 1);
+                if (measureParams.measuredLength >= 0)
+                    measuredLength -= getTextLength(get(i)) - measureParams.measuredLength;
+                break;
+            }
+            if (deadline > 0 && i < len - 1 && System.nanoTime() >= deadline) {
+                progress.onTimeout(level);
+                progress.clearText();
+                progress.saveFrame(level, i + 1, flag, currentLeft, currentTop, lines);
+                flag = MeasureTextUtils.setState(flag, MeasureTextUtils.STATE_TIMEOUT);
+                break;
+            }
         }
+        if (progress != null)
+            progress.level = level;
+        measureParams.currentLine = startLine;
+        measureParams.lineBudget = lineBudget;
+        measureParams.measuredLength = measuredLength;
         lastFlag = flag;
         lastDrawableSize = drawableSize;
-        lastCLeft = currentLeft;
         lastLeft = left;
         lastRight = right;
         lastTextSize = immutableParams.paint.getTextSize();
+        if (isRoot && progress != null) {
+            if (MeasureTextUtils.getState(flag) == MeasureTextUtils.STATE_TIMEOUT)
+                saveMeasureParams(progress, measureParams, immutableParams);
+            else
+                progress.reset();
+        }
         return flag;
     }
 
+    /**
+     * progress中有未完成的计算，且计算参数及block没有改变时，可从保存的位置继续
+     * 其他view使用相同参数计算时，行高等结果相同，不影响保存的进度
+     */
+    private boolean canResume(MeasureProgress progress, BlockMeasureParams measureParams, @NonNull ImmutableParams immutableParams) {
+        return progress.isPending()
+                && progress.version == version
+                && progress.drawableSize == measureParams.drawableSize
+                && progress.startLeft == measureParams.currentLeft
+                && progress.left == measureParams.left
+                && progress.right == measureParams.right
+                && progress.lineBudget == measureParams.lineBudget
+                && progress.lineInfo == measureParams.lineInfo
+                && progress.textSize == immutableParams.paint.getTextSize();
+    }
+
+    private void saveMeasureParams(MeasureProgress progress, BlockMeasureParams measureParams, @NonNull ImmutableParams immutableParams) {
+        progress.version = version;
+        progress.drawableSize = measureParams.drawableSize;
+        progress.startLeft = lastStartLeft;
+        progress.left = measureParams.left;
+        progress.right = measureParams.right;
+        progress.lineBudget = lastLineBudget;
+        progress.lineInfo = lastLineInfo;
+        progress.textSize = immutableParams.paint.getTextSize();
+    }
+
+    /**
+     * 从头计算root list时调用，参数改变后之前保存的进度不能继续
+     */
+    private void onMeasureStart(BlockMeasureParams measureParams, @NonNull ImmutableParams immutableParams) {
+        if (lastFlag == 0
+                || lastDrawableSize != measureParams.drawableSize
+                || lastStartLeft != measureParams.currentLeft
+                || lastLeft != measureParams.left
+                || lastRight != measureParams.right
+                || lastLineBudget != measureParams.lineBudget
+                || lastLineInfo != measureParams.lineInfo
+                || lastTextSize != immutableParams.paint.getTextSize()) {
+            version ++;
+        }
+    }
+
+    /**
+     * 上次因行数限制停止时，需要更多行才重新计算
+     */
+    private boolean needMoreLines(int lineBudget) {
+        return lastTruncated && (lineBudget <= 0 || lineBudget > lastLineBudget);
+    }
+
+    /**
+     * 前count个block的文本长度
+     */
+    private int getTextLength(int count) {
+        int length = 0;
+        for (int i = 0; i < count; i ++) {
+            length += getTextLength(get(i));
+        }
+        return length;
+    }
+
+    private static int getTextLength(DefaultDrawableBlock block) {
+        final CharSequence text = block != null ? block.getText() : null;
+        return text != null ? text.length() : 0;
+    }
+
+    /**
+     * 上次计算因行数限制({@link BlockMeasureParams#lineBudget})停止时，已计算文本的结束位置(上限)，
+     * 之后的文本不影响计算结果；全部计算时为{@link #getEnd()}
+     */
+    public int getMeasuredTextEnd() {
+        return measuredLength < 0 ? mEnd : Math.min(mEnd, mStart + measuredLength);
+    }
+
     private boolean checkNeedMeasure(BlockMeasureParams measureParams, @NonNull ImmutableParams immutableParams) {
         if (measureParams.forceMeasure)
             return true;
+        if (MeasureTextUtils.getState(lastFlag) == MeasureTextUtils.STATE_TIMEOUT)
+            return true;
+        if (needMoreLines(measureParams.lineBudget))
+            return true;
+        //行数限制变小时按新的限制计算
+        if (measureParams.lineBudget > 0 && MeasureTextUtils.getLines(lastFlag) > measureParams.lineBudget)
+            return true;
         if (measureParams.drawableSize == lastDrawableSize
-                && lastCLeft == measureParams.currentLeft
-                && lastLeft == immutableParams.left
-                && lastRight == immutableParams.right
+                && lastStartLeft == measureParams.currentLeft
+                && lastLeft == measureParams.left
+                && lastRight == measureParams.right
                 && lastTextSize == immutableParams.paint.getTextSize()
                 && lastFlag != 0)
             return false;
@@ -388,7 +603,7 @@ public class DefaultDrawableBlockList extends ArrayList<DefaultDrawableBlock> im
 
     private int getLastLineHeight() {
         final int len = lineFlags != null ? lines : 0;
-        if (len == 0 || lines >= lineFlags.length)
+        if (len == 0 || lines > lineFlags.length)
             return 0;
         return LineUtils.getLineHeight(lineFlags[len - 1]);
     }
@@ -401,9 +616,24 @@ public class DefaultDrawableBlockList extends ArrayList<DefaultDrawableBlock> im
         lines = end + 1;
     }
 
+    private void copyLineHeight(DefaultDrawableBlockList paragraph, int start, int count, int defaultLineInfo) {
+        if (count <= 0)
+            return;
+        final int end = start + count - 1;
+        initLineHeight(end);
+        final int[] src = paragraph != null ? paragraph.lineFlags : null;
+        final int srcLen = src != null ? Math.min(paragraph.lines, count) : 0;
+        if (srcLen > 0)
+            System.arraycopy(src, 0, lineFlags, start, srcLen);
+        for (int i = start + srcLen; i <= end; i ++) {
+            lineFlags[i] = defaultLineInfo;
+        }
+        lines = end + 1;
+    }
+
     private void initLineHeight(int endIndex) {
-        if (lines <= endIndex) {
-            int needLen = lines + DEFAULT_EXPAND_SIZE;
+        if (lineFlags == null || lineFlags.length <= endIndex) {
+            int needLen = Math.max(lines + DEFAULT_EXPAND_SIZE, lines << 1);
             while (needLen <= endIndex) {
                 needLen += DEFAULT_EXPAND_SIZE;
             }
@@ -418,16 +648,27 @@ public class DefaultDrawableBlockList extends ArrayList<DefaultDrawableBlock> im
     public boolean add(DefaultDrawableBlock block) {
         if (!super.add(block))
             return false;
+        final int oldCount = needSetCallbackBlockCount;
+        countBlock(block, 1);
+        if (isRoot && oldCount != needSetCallbackBlockCount)
+            setNeedSetCallbackCount(needSetCallbackBlockCount);
+        return true;
+    }
+
+    /**
+     * 更新block个数
+     * @param delta 添加时为1，移除时为-1
+     */
+    private void countBlock(DefaultDrawableBlock block, int delta) {
         switch (block.getType()) {
             case IDrawableBlock.NEED_SET_CALLBACK_DRAWABLE:
-                needSetCallbackBlockCount++;
-                if (isRoot)
-                    setNeedSetCallbackCount(needSetCallbackBlockCount);
-                hasDrawable = true;
+                needSetCallbackBlockCount += delta;
+                drawableBlockCount += delta;
                 break;
             case IDrawableBlock.DRAWABLE:
             case IDrawableBlock.SPECIAL_DRAWABLE:
-                hasDrawable = true;
+            case IDrawableBlock.CHIP:
+                drawableBlockCount += delta;
                 break;
 //                mDrawableCount ++;
 //                break;
@@ -437,32 +678,168 @@ public class DefaultDrawableBlockList extends ArrayList<DefaultDrawableBlock> im
 //            case IDrawableBlock.SPECIAL_DRAWABLE:
 //                mSpecialDrawableCount ++;
 //                break;
+            case IDrawableBlock.PARAGRAPH:
             case IDrawableBlock.SPAN:
-                hasSpan = true;
-                needSetCallbackBlockCount += block.getChildren().needSetCallbackBlockCount;
-                if (isRoot)
-                    setNeedSetCallbackCount(needSetCallbackBlockCount);
-                if (canSaveToCache) {
-                    canSaveToCache = block.canSaveToCache();
-                }
-                if (!hasDrawable)
-                    hasDrawable = block.getChildren().hasDrawable;
+                final DefaultDrawableBlockList children = block.getChildren();
+                if (block.getType() == IDrawableBlock.SPAN || children.hasSpan())
+                    spanBlockCount += delta;
+                needSetCallbackBlockCount += delta * children.needSetCallbackBlockCount;
+                if (!block.canSaveToCache())
+                    notCacheBlockCount += delta;
+                if (children.hasDrawable())
+                    drawableBlockCount += delta;
 //                mDrawableCount += block.getChildren().getNewLineCount();
 //                mNewLineCount += block.getChildren().getNewLineCount();
 //                mSpecialDrawableCount += block.getChildren().getSpecialDrawableCount();
                 break;
         }
-        return true;
     }
 
-    private long now() {
-        return System.nanoTime();
+    /**
+     * 将[from, to)中的block替换为blocks，被替换的block会被回收
+     * 只能用于不在缓存中的root list，替换后需重新计算
+     * 只更新被替换及新的block的个数，不遍历其他block
+     * @param from   起始index
+     * @param to     结束index，不包含
+     * @param blocks 新的block
+     * @param end    替换后文本长度
+     */
+    public void replaceBlocks(int from, int to, List<DefaultDrawableBlock> blocks, int end) {
+        final int oldCount = needSetCallbackBlockCount;
+        for (int i = from; i < to; i ++) {
+            DefaultDrawableBlock block = get(i);
+            if (block != null) {
+                countBlock(block, -1);
+                block.recycle();
+            }
+        }
+        removeRange(from, to);
+        addAll(from, blocks);
+        for (int i = 0, l = blocks.size(); i < l; i ++) {
+            countBlock(blocks.get(i), 1);
+        }
+        mEnd = end;
+        //新的block也需要设置个数
+        if (isRoot && (oldCount > 0 || needSetCallbackBlockCount > 0))
+            setNeedSetCallbackCount(needSetCallbackBlockCount);
+        lastFlag = 0;
+        version ++;
+        contentWidths = -1;
     }
 
-    private long logCast(String pre, long start) {
-        long now = now();
-        Log.d(TAG, pre + (now - start));
-        return now;
+    /**
+     * 段落中可点击block的位置只在计算时添加，之前的段落改变行数时，没有改变的段落不会重新计算
+     * 清除包含span的段落的计算结果，下次计算时重新添加位置
+     */
+    public void remeasureSpanParagraphs() {
+        for (int i = 0, l = size(); i < l; i ++) {
+            DefaultDrawableBlock block = get(i);
+            if (block == null || block.getType() != IDrawableBlock.PARAGRAPH)
+                continue;
+            DefaultDrawableBlockList children = block.getChildren();
+            if (children != null && children.hasSpan())
+                children.lastFlag = 0;
+        }
     }
 
+    /**
+     * 将other中的block按顺序移到此list末尾，other清空后回收
+     * 用于合并分段解析的结果，other不能被使用
+     */
+    public void moveBlocksFrom(@NonNull DefaultDrawableBlockList other) {
+        for (int i = 0, l = other.size(); i < l; i ++) {
+            add(other.get(i));
+        }
+        other.clear();
+        other.recycle();
+    }
+
+    @Override
+    public long getContentWidths(@NonNull TextPaint paint, int drawableSize) {
+        final float textSize = paint.getTextSize();
+        if (contentWidths >= 0 && contentWidthsDrawableSize == drawableSize && contentWidthsTextSize == textSize)
+            return contentWidths;
+        float[] state = new float[CONTENT_STATE_SIZE];
+        computeContentWidths(state, paint, drawableSize);
+        final float maxLine = Math.max(state[CONTENT_MAX_LINE], state[CONTENT_LINE]);
+        contentWidths = MeasureTextUtils.combineContentWidth((int) Math.ceil(state[CONTENT_MAX_WORD]), (int) Math.ceil(maxLine));
+        contentWidthsDrawableSize = drawableSize;
+        contentWidthsTextSize = textSize;
+        return contentWidths;
+    }
+
+    private static final int CONTENT_LINE = 0;
+    private static final int CONTENT_WORD = 1;
+    private static final int CONTENT_MAX_LINE = 2;
+    private static final int CONTENT_MAX_WORD = 3;
+    private static final int CONTENT_STATE_SIZE = 4;
+
+    /**
+     * 遍历所有block，span和段落中的block也算在同一行
+     * @param state 当前行宽，当前单词宽，最长行宽，最宽单词宽
+     */
+    private void computeContentWidths(float[] state, TextPaint paint, int drawableSize) {
+        for (int i = 0, l = size(); i < l; i ++) {
+            DefaultDrawableBlock block = get(i);
+            if (block == null)
+                continue;
+            switch (block.getType()) {
+                case IDrawableBlock.TEXT:
+                    computeTextContentWidths(state, block, paint);
+                    break;
+                case IDrawableBlock.NEXTLINE:
+                    state[CONTENT_MAX_LINE] = Math.max(state[CONTENT_MAX_LINE], state[CONTENT_LINE]);
+                    state[CONTENT_LINE] = 0;
+                    state[CONTENT_WORD] = 0;
+                    break;
+                case IDrawableBlock.SPAN:
+                case IDrawableBlock.PARAGRAPH:
+                    if (block.getChildren() != null)
+                        block.getChildren().computeContentWidths(state, paint, drawableSize);
+                    break;
+                default:
+                    final int dw = block.measureDrawableWidth(paint, drawableSize);
+                    state[CONTENT_LINE] += dw;
+                    state[CONTENT_WORD] = 0;
+                    state[CONTENT_MAX_WORD] = Math.max(state[CONTENT_MAX_WORD], dw);
+                    break;
+            }
+        }
+    }
+
+    private void computeTextContentWidths(float[] state, DefaultDrawableBlock block, TextPaint paint) {
+        final CharSequence text = block.getText();
+        final int len = text.length();
+        if (len == 0)
+            return;
+        final SpecialStyleParams styleParams = block.getTextStyleParams();
+        final float oldTextSize = paint.getTextSize();
+        if (styleParams != null && styleParams.hasTextSize)
+            paint.setTextSize(styleParams.textSize);
+        if (widthsBuffer == null || widthsBuffer.length < len)
+            widthsBuffer = new float[len];
+        final float[] widths = widthsBuffer;
+        paint.getTextWidths(text, 0, len, widths);
+        paint.setTextSize(oldTextSize);
+        float line = state[CONTENT_LINE];
+        float word = state[CONTENT_WORD];
+        float maxWord = state[CONTENT_MAX_WORD];
+        for (int i = 0; i < len; i ++) {
+            final char c = text.charAt(i);
+            final float w = widths[i];
+            line += w;
+            if (Character.isWhitespace(c)) {
+                word = 0;
+            } else if (LineBreakUtils.isBreakAround(c)) {
+                word = 0;
+                maxWord = Math.max(maxWord, w);
+            } else {
+                word += w;
+                maxWord = Math.max(maxWord, word);
+            }
+        }
+        state[CONTENT_LINE] = line;
+        state[CONTENT_WORD] = word;
+        state[CONTENT_MAX_WORD] = maxWord;
+    }
 }
@@ -18,6 +18,8 @@ public interface IDrawableBlock<T extends IDrawableBlockList> extends IBlock {
     int SPAN = 3;
     int NEXTLINE = 4;
     int NEED_SET_CALLBACK_DRAWABLE = 5;
+    int PARAGRAPH = 6;
+    int CHIP = 7;
 
     int getType();
 
@@ -1,6 +1,7 @@
 package xfy.fakeview.library.text.block;
 
 import android.support.annotation.NonNull;
+import android.text.TextPaint;
 import android.view.MotionEvent;
 import android.view.View;
 
@@ -31,6 +32,13 @@ public interface IDrawableBlockList<E extends IDrawableBlock> extends List<E>, I
 
     int getLineHeightSize();
 
+    /**
+     * 不限宽度时最长一行的宽度(max-content)，和最宽的不可换行单元(单词或图片)的宽度(min-content)
+     * @return {@link xfy.fakeview.library.text.utils.MeasureTextUtils#getMinContentWidth(long)}
+     *         {@link xfy.fakeview.library.text.utils.MeasureTextUtils#getMaxContentWidth(long)}
+     */
+    long getContentWidths(@NonNull TextPaint paint, int drawableSize);
+
     void use();
 
     void notUse();
@@ -0,0 +1,136 @@
+package xfy.fakeview.library.text.block;
+
+/**
+ * Created by XiongFangyu on 2018/4/20.
+ *
+ * 限时计算的进度，每个drawable持有一个
+ * 缓存中的block list可能被多个view共用，进度不能保存在list中
+ *
+ * 超时时由内向外保存：文本block中继续计算的字符位置(行首)，
+ * 及每层list(root，span，段落)中继续计算的block和计算此block之前的结果；
+ * 继续计算时由外向内恢复，所以很长的一段文字、一个span或段落也可以被中断
+ */
+public class MeasureProgress {
+    private static final int DEFAULT_DEPTH = 4;
+
+    //保存时root list的版本，计算参数或block改变后不能继续
+    int version;
+    //保存时的计算参数
+    int drawableSize;
+    int startLeft;
+    int left;
+    int right;
+    int lineBudget;
+    int lineInfo;
+    float textSize;
+
+    //保存的list层数，0表示没有未完成的计算
+    int depth;
+    //每层list中继续计算的block index
+    int[] indexes = new int[DEFAULT_DEPTH];
+    //每层list计算此block之前的结果
+    long[] flags = new long[DEFAULT_DEPTH];
+    int[] currentLefts = new int[DEFAULT_DEPTH];
+    int[] currentTops = new int[DEFAULT_DEPTH];
+    int[] lines = new int[DEFAULT_DEPTH];
+
+    //最内层为文本block时，继续计算的字符位置及之前的结果
+    private boolean hasText;
+    private int textOffset;
+    private long textFlag;
+
+    //计算中：当前list层数
+    int level;
+    //计算中：是否正在恢复保存的进度
+    boolean resuming;
+
+    /**
+     * @return 是否有未完成的计算
+     */
+    public boolean isPending() {
+        return depth > 0;
+    }
+
+    /**
+     * 清除进度，下次从头计算
+     */
+    public void reset() {
+        depth = 0;
+        level = 0;
+        hasText = false;
+        resuming = false;
+    }
+
+    /**
+     * 恢复进度时，若最内层为文本block，返回true并结束恢复
+     * 之后通过{@link #getTextOffset()}和{@link #getTextFlag()}继续计算
+     */
+    public boolean resumeText() {
+        if (!resuming || !hasText)
+            return false;
+        resuming = false;
+        hasText = false;
+        return true;
+    }
+
+    public int getTextOffset() {
+        return textOffset;
+    }
+
+    public long getTextFlag() {
+        return textFlag;
+    }
+
+    /**
+     * 文本block超时时保存
+     * @param offset 继续计算的位置，需为行首
+     * @param flag   offset之前的计算结果
+     */
+    public void saveText(int offset, long flag) {
+        hasText = true;
+        textOffset = offset;
+        textFlag = flag;
+    }
+
+    boolean isTextSaved() {
+        return hasText;
+    }
+
+    /**
+     * 超时的位置在第level层list中(不在子list中)
+     */
+    void onTimeout(int level) {
+        depth = level + 1;
+    }
+
+    /**
+     * 清除文本进度，超时的位置在两个block之间
+     */
+    void clearText() {
+        hasText = false;
+    }
+
+    void saveFrame(int level, int index, long flag, int currentLeft, int currentTop, int lines) {
+        if (level >= indexes.length) {
+            final int size = Math.max(level + 1, indexes.length << 1);
+            indexes = copyOf(indexes, size);
+            currentLefts = copyOf(currentLefts, size);
+            currentTops = copyOf(currentTops, size);
+            this.lines = copyOf(this.lines, size);
+            long[] temp = new long[size];
+            System.arraycopy(flags, 0, temp, 0, flags.length);
+            flags = temp;
+        }
+        indexes[level] = index;
+        flags[level] = flag;
+        currentLefts[level] = currentLeft;
+        currentTops[level] = currentTop;
+        this.lines[level] = lines;
+    }
+
+    private static int[] copyOf(int[] src, int size) {
+        int[] temp = new int[size];
+        System.arraycopy(src, 0, temp, 0, src.length);
+        return temp;
+    }
+}
@@ -7,6 +7,7 @@ import android.util.LruCache;
 
 import xfy.fakeview.library.text.block.DefaultDrawableBlock;
 import xfy.fakeview.library.text.block.DefaultDrawableBlockList;
+import xfy.fakeview.library.text.metrics.TextMetrics;
 import xfy.fakeview.library.text.param.SpecialStyleParams;
 
 /**
@@ -81,13 +82,20 @@ public class DefaultTextCompiler implements ITextCompiler<DefaultDrawableBlockLi
 
         DefaultDrawableBlockList result = cache != null ? cache.get(text) : null;
         if (result != null && result.getStart() == start && result.getEnd() == end) {
+            TextMetrics.compileCache(true);
             result.use();
             return result;
         }
+        if (cache != null)
+            TextMetrics.compileCache(false);
+        final long metricsStart = TextMetrics.start();
         result = DefaultDrawableBlockList.obtain(true, start, end);
         compileInternal(result, text, start, end, null);
+        TextMetrics.recordCompile(metricsStart);
+        TextMetrics.recordBlockCount(result.size());
         result.use();
-        if (cache != null && result.canSaveToCache()) {
+        //只缓存完整文本的结果，只解析了前面部分(maxLines预览)时不能作为整段文本的结果
+        if (cache != null && start == 0 && end == size && result.canSaveToCache()) {
             result.doNotRecycle();
             DefaultDrawableBlockList pre = cache.put(text, result);
             if (pre != null) {
@@ -97,6 +105,35 @@ public class DefaultTextCompiler implements ITextCompiler<DefaultDrawableBlockLi
         return result;
     }
 
+    /**
+     * 缓存中是否有此文本完整的解析结果
+     */
+    public boolean isCached(@NonNull CharSequence text) {
+        if (cache == null)
+            return false;
+        DefaultDrawableBlockList list = cache.get(text);
+        return list != null && list.getStart() == 0 && list.getEnd() == text.length();
+    }
+
+    /**
+     * 将其他线程中解析(及计算)完成的list放入缓存，之后{@link #compile(CharSequence)}可直接命中
+     * 缓存中已有此文本时不替换
+     * @param list 由{@link #compileInternal}解析的完整文本的root list
+     * @return 是否放入缓存
+     */
+    public boolean putCache(@NonNull CharSequence text, @NonNull DefaultDrawableBlockList list) {
+        if (cache == null || !list.isRoot() || !list.canSaveToCache()
+                || list.getStart() != 0 || list.getEnd() != text.length())
+            return false;
+        synchronized (cache) {
+            if (cache.get(text) != null)
+                return false;
+            list.doNotRecycle();
+            cache.put(text, list);
+        }
+        return true;
+    }
+
     @Override
     public void compileInternal(@NonNull DefaultDrawableBlockList list, @NonNull CharSequence text, int start, int end, @Nullable SpecialStyleParams specialStyleParams) {
         if (innerCompiler != null) {
@@ -106,6 +143,30 @@ public class DefaultTextCompiler implements ITextCompiler<DefaultDrawableBlockLi
         }
     }
 
+    /**
+     * 并行解析时是否可以在第index个字符(换行符)之后拆分，拆分后分段解析的结果需和整体解析相同
+     * 可能跨行的标记(如"[表情]"、html标签)需重写
+     * @see ParallelTextCompiler
+     */
+    public boolean canSplitAfter(@NonNull CharSequence text, int index) {
+        if (innerCompiler == null)
+            return true;
+        return innerCompiler instanceof DefaultTextCompiler
+                && ((DefaultTextCompiler) innerCompiler).canSplitAfter(text, index);
+    }
+
+    /**
+     * 是否可以只解析文本前面部分(maxLines预览)，之前文本的解析结果需和整体解析相同
+     * 标记(如html标签)影响范围可能从后面的文本开始时需重写
+     * @see xfy.fakeview.library.text.FTextDrawable#setMaxLines(int)
+     */
+    public boolean canCompilePrefix() {
+        if (innerCompiler == null)
+            return true;
+        return innerCompiler instanceof DefaultTextCompiler
+                && ((DefaultTextCompiler) innerCompiler).canCompilePrefix();
+    }
+
     /**
      * compile special text, implement by child class
      * @param list parent list
@@ -7,6 +7,7 @@ import android.support.annotation.Nullable;
 import xfy.fakeview.library.text.block.DefaultDrawableBlock;
 import xfy.fakeview.library.text.block.DefaultDrawableBlockList;
 import xfy.fakeview.library.text.param.SpecialStyleParams;
+import xfy.fakeview.library.text.utils.Chip;
 import xfy.fakeview.library.text.utils.IDrawableStats;
 
 /**
@@ -29,6 +30,7 @@ public class DrawableTextCompiler extends DefaultTextCompiler {
     protected char D_START = '[';
     protected char D_END   = ']';
     private ResourceAdapter adapter;
+    private ChipAdapter chipAdapter;
 
     protected DrawableTextCompiler() {
     }
@@ -45,18 +47,39 @@ public class DrawableTextCompiler extends DefaultTextCompiler {
         return adapter;
     }
 
+    /**
+     * 设置后"[xxx]"优先解析为圆角标签，不是标签时再由{@link ResourceAdapter}解析
+     */
+    public void setChipAdapter(ChipAdapter chipAdapter) {
+        this.chipAdapter = chipAdapter;
+    }
+
+    public ChipAdapter getChipAdapter() {
+        return chipAdapter;
+    }
+
     @Override
     public void compileInternal(@NonNull DefaultDrawableBlockList list, @NonNull CharSequence text, int start, int end, @Nullable SpecialStyleParams specialStyleParams) {
-        if (adapter == null) {
+        if (adapter == null && chipAdapter == null) {
             super.compileInternal(list, text, start, end, specialStyleParams);
             return;
         }
-        adapter.beforeCompile();
+        if (adapter != null)
+            adapter.beforeCompile();
         compileDrawbleText(list, text, start, end, specialStyleParams);
     }
 
     @Override
     protected boolean compileSpecialText(DefaultDrawableBlockList list, CharSequence t, @Nullable SpecialStyleParams specialStyleParams) {
+        if (chipAdapter != null) {
+            Chip chip = chipAdapter.parseChip(t);
+            if (chip != null) {
+                list.add(DefaultDrawableBlock.createChipBlock(t, chip));
+                return true;
+            }
+        }
+        if (adapter == null)
+            return false;
         int res = adapter.parseRes(t);
         if (res <= 0) {
             Drawable d = adapter.parseDrawable(t);
@@ -77,6 +100,31 @@ public class DrawableTextCompiler extends DefaultTextCompiler {
         return false;
     }
 
+    /**
+     * 换行符在"[...]"中时不能拆分
+     */
+    @Override
+    public boolean canSplitAfter(@NonNull CharSequence text, int index) {
+        if (adapter != null || chipAdapter != null) {
+            for (int i = index - 1; i >= 0; i --) {
+                final char c = text.charAt(i);
+                if (c == D_END)
+                    break;
+                if (c == D_START) {
+                    for (int j = index + 1, l = text.length(); j < l; j ++) {
+                        final char n = text.charAt(j);
+                        if (n == D_START)
+                            break;
+                        if (n == D_END)
+                            return false;
+                    }
+                    break;
+                }
+            }
+        }
+        return super.canSplitAfter(text, index);
+    }
+
     private void compileDrawbleText(DefaultDrawableBlockList list, @NonNull CharSequence text, int start, int end, @Nullable SpecialStyleParams specialStyleParams) {
         int index = start;
         boolean haveStart = false;
@@ -114,4 +162,12 @@ public class DrawableTextCompiler extends DefaultTextCompiler {
         int parseRes(@NonNull CharSequence text);
         Drawable parseDrawable(@NonNull CharSequence text);
     }
+
+    public interface ChipAdapter {
+        /**
+         * @param text 包含起止符，如"[vip]"
+         * @return 不是标签时返回null
+         */
+        @Nullable Chip parseChip(@NonNull CharSequence text);
+    }
 }
@@ -0,0 +1,177 @@
+package xfy.fakeview.library.text.compiler;
+
+import android.support.annotation.DrawableRes;
+import android.support.annotation.NonNull;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Created by XiongFangyu on 2018/4/19.
+ *
+ * 预先计算好的emoji序列表(code point前缀树)，每个序列对应一个drawable id
+ * 序列可以是单个emoji，带肤色的emoji，或ZWJ组合emoji
+ *
+ * U+FE0F(emoji样式选择符)在建表和匹配时都被忽略，所以"❤"和"❤️"匹配同一个序列
+ * 创建后不可修改，可在多个线程中使用
+ */
+public final class EmojiTable {
+    private static final int VARIATION_SELECTOR = 0xFE0F;
+    private static final int SKIN_TONE_START = 0x1F3FB;
+    private static final int SKIN_TONE_END = 0x1F3FF;
+
+    private final Node root;
+    private final int size;
+
+    private EmojiTable(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 从start开始匹配最长的emoji序列
+     * 匹配到的序列后如果还有肤色符但表中没有对应序列，肤色符会一起被匹配，使用不带肤色的图片
+     * @param text  文本
+     * @param start 开始位置
+     * @param end   结束位置
+     * @return 匹配到的长度(char个数)及drawable id，{@link #getMatchLength(long)} {@link #getMatchRes(long)}，未匹配到返回0
+     */
+    public long match(@NonNull CharSequence text, int start, int end) {
+        Node node = root;
+        int i = start;
+        int matchEnd = -1;
+        int matchRes = 0;
+        while (i < end) {
+            final int cp = Character.codePointAt(text, i);
+            final int next = i + Character.charCount(cp);
+            if (cp == VARIATION_SELECTOR) {
+                if (matchEnd == i)
+                    matchEnd = next;
+                i = next;
+                continue;
+            }
+            node = node.get(cp);
+            if (node == null)
+                break;
+            i = next;
+            if (node.res != 0) {
+                matchEnd = i;
+                matchRes = node.res;
+            }
+        }
+        if (matchEnd < 0)
+            return 0;
+        if (matchEnd < end) {
+            final int cp = Character.codePointAt(text, matchEnd);
+            if (cp >= SKIN_TONE_START && cp <= SKIN_TONE_END)
+                matchEnd += Character.charCount(cp);
+        }
+        return ((long) (matchEnd - start) << 32) | (matchRes & 0xFFFFFFFFL);
+    }
+
+    public static int getMatchLength(long match) {
+        return (int) (match >>> 32);
+    }
+
+    public static int getMatchRes(long match) {
+        return (int) match;
+    }
+
+    /**
+     * 是否可能是emoji的第一个字符，用于快速跳过普通文字
+     */
+    public boolean isStart(int codePoint) {
+        return root.get(codePoint) != null;
+    }
+
+    private static final class Node {
+        //子节点code point，有序
+        final int[] keys;
+        final Node[] children;
+        final int res;
+
+        Node(int[] keys, Node[] children, int res) {
+            this.keys = keys;
+            this.children = children;
+            this.res = res;
+        }
+
+        Node get(int cp) {
+            int lo = 0;
+            int hi = keys.length - 1;
+            while (lo <= hi) {
+                final int mid = (lo + hi) >>> 1;
+                final int k = keys[mid];
+                if (k < cp) {
+                    lo = mid + 1;
+                } else if (k > cp) {
+                    hi = mid - 1;
+                } else {
+                    return children[mid];
+                }
+            }
+            return null;
+        }
+    }
+
+    public static class Builder {
+        private final BuilderNode root = new BuilderNode();
+        private int size;
+
+        /**
+         * @param sequence emoji序列
+         * @param res      对应的图片
+         */
+        public Builder put(@NonNull CharSequence sequence, @DrawableRes int res) {
+            if (res == 0)
+                throw new IllegalArgumentException("res must not be 0");
+            BuilderNode node = root;
+            boolean empty = true;
+            for (int i = 0, l = sequence.length(); i < l; ) {
+                final int cp = Character.codePointAt(sequence, i);
+                i += Character.charCount(cp);
+                if (cp == VARIATION_SELECTOR)
+                    continue;
+                BuilderNode child = node.children.get(cp);
+                if (child == null) {
+                    child = new BuilderNode();
+                    node.children.put(cp, child);
+                }
+                node = child;
+                empty = false;
+            }
+            if (empty)
+                throw new IllegalArgumentException("sequence must contain at least one code point");
+            if (node.res == 0)
+                size ++;
+            node.res = res;
+            return this;
+        }
+
+        public EmojiTable build() {
+            return new EmojiTable(root.build(), size);
+        }
+    }
+
+    private static final class BuilderNode {
+        final TreeMap<Integer, BuilderNode> children = new TreeMap<>();
+        int res;
+
+        Node build() {
+            final int len = children.size();
+            final int[] keys = new int[len];
+            final Node[] nodes = new Node[len];
+            int i = 0;
+            for (Map.Entry<Integer, BuilderNode> e : children.entrySet()) {
+                keys[i] = e.getKey();
+                nodes[i] = e.getValue().build();
+                i ++;
+            }
+            return new Node(keys, nodes, res);
+        }
+    }
+}
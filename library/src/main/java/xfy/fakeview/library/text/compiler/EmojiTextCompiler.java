@@ -0,0 +1,87 @@
+package xfy.fakeview.library.text.compiler;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import xfy.fakeview.library.text.block.DefaultDrawableBlock;
+import xfy.fakeview.library.text.block.DefaultDrawableBlockList;
+import xfy.fakeview.library.text.param.SpecialStyleParams;
+
+/**
+ * Created by XiongFangyu on 2018/4/19.
+ *
+ * 将unicode emoji(包括代理对、ZWJ组合、肤色)替换为图片，图片大小和表情相同(drawableSize)，
+ * 不再使用系统emoji字体绘制
+ * 需要设置{@link EmojiTable}，表中没有的emoji按文字处理
+ *
+ * 可作为其他compiler的innerCompiler，如new DrawableTextCompiler(new EmojiTextCompiler(table))
+ */
+public class EmojiTextCompiler extends DefaultTextCompiler {
+    private static volatile EmojiTextCompiler compiler;
+
+    public static EmojiTextCompiler getCompiler() {
+        if (compiler == null) {
+            synchronized (EmojiTextCompiler.class) {
+                if (compiler == null)
+                    compiler = new EmojiTextCompiler();
+            }
+        }
+        return compiler;
+    }
+
+    private volatile EmojiTable table;
+
+    protected EmojiTextCompiler() {}
+
+    public EmojiTextCompiler(ITextCompiler<DefaultDrawableBlockList> innerCompiler) {
+        super(innerCompiler);
+    }
+
+    public EmojiTextCompiler(EmojiTable table) {
+        this();
+        this.table = table;
+    }
+
+    public void setEmojiTable(EmojiTable table) {
+        this.table = table;
+    }
+
+    public EmojiTable getEmojiTable() {
+        return table;
+    }
+
+    @Override
+    public void compileInternal(@NonNull DefaultDrawableBlockList list, @NonNull CharSequence text, int start, int end, @Nullable SpecialStyleParams specialStyleParams) {
+        final EmojiTable table = this.table;
+        if (table == null || table.size() == 0) {
+            super.compileInternal(list, text, start, end, specialStyleParams);
+            return;
+        }
+        int lastEnd = start;
+        int i = start;
+        while (i < end) {
+            final char c = text.charAt(i);
+            //emoji都不在ascii中，除了keycap(#*0-9)
+            if (c < 0x80 && c != '#' && c != '*' && (c < '0' || c > '9')) {
+                i ++;
+                continue;
+            }
+            final int cp = Character.codePointAt(text, i);
+            if (table.isStart(cp)) {
+                final long match = table.match(text, i, end);
+                final int len = EmojiTable.getMatchLength(match);
+                if (len > 0) {
+                    if (lastEnd < i)
+                        super.compileInternal(list, text, lastEnd, i, specialStyleParams);
+                    list.add(DefaultDrawableBlock.createDrawableBlock(text.subSequence(i, i + len), EmojiTable.getMatchRes(match)));
+                    i += len;
+                    lastEnd = i;
+                    continue;
+                }
+            }
+            i += Character.charCount(cp);
+        }
+        if (lastEnd < end)
+            super.compileInternal(list, text, lastEnd, end, specialStyleParams);
+    }
+}
@@ -0,0 +1,390 @@
+package xfy.fakeview.library.text.compiler;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.View;
+
+import xfy.fakeview.library.text.block.DefaultDrawableBlock;
+import xfy.fakeview.library.text.block.DefaultDrawableBlockList;
+import xfy.fakeview.library.text.param.SpecialStyleParams;
+import xfy.fakeview.library.text.utils.FClickableSpan;
+
+/**
+ * Created by XiongFangyu on 2018/4/20.
+ *
+ * 解析时识别链接、@用户、#话题#、电话号码，直接生成可点击的span block，和解析结果一起缓存，
+ * 不需要先用Linkify或正则生成Spannable
+ * 只遍历一次文本，每种类型使用手写的状态机匹配，不使用正则；不是识别结果的部分交给innerCompiler，
+ * 如new EntityTextCompiler(new EmojiTextCompiler(table))
+ *
+ * 识别规则(尽量简单，宁可少识别)：
+ * 链接：http://，https://或www.开头，到空白字符或中文为止，去掉末尾的标点
+ * @用户：前一个字符不是字母数字(排除邮箱)，@后为字母、数字、下划线或中文，最多{@link #MAX_NAME_LENGTH}个
+ * #话题：#后为字母、数字、下划线或中文，不能全是数字，若紧跟#则包含结尾的#
+ * 电话：数字之间可以有单个-或空格，共{@link #MIN_PHONE_DIGITS}到{@link #MAX_PHONE_DIGITS}个数字，前后不能是字母数字；
+ *      需为+或0开头、11位手机号(1[3-9]开头)，或按分隔符分组(如400-820-8820，每组3到4个数字)，排除日期和普通长数字
+ */
+public class EntityTextCompiler extends DefaultTextCompiler {
+    private static volatile EntityTextCompiler compiler;
+
+    public static EntityTextCompiler getCompiler() {
+        if (compiler == null) {
+            synchronized (EntityTextCompiler.class) {
+                if (compiler == null)
+                    compiler = new EntityTextCompiler();
+            }
+        }
+        return compiler;
+    }
+
+    public static final int TYPE_URL = 1;
+    public static final int TYPE_MENTION = 1 << 1;
+    public static final int TYPE_HASHTAG = 1 << 2;
+    public static final int TYPE_PHONE = 1 << 3;
+    public static final int TYPE_ALL = TYPE_URL | TYPE_MENTION | TYPE_HASHTAG | TYPE_PHONE;
+
+    static final int MAX_NAME_LENGTH = 32;
+    static final int MIN_PHONE_DIGITS = 7;
+    static final int MAX_PHONE_DIGITS = 15;
+    static final int MOBILE_DIGITS = 11;
+
+    private volatile int types = TYPE_ALL;
+    private OnEntityClickListener entityClickListener;
+    private boolean hasLinkColor;
+    private int linkColor;
+
+    protected EntityTextCompiler() {}
+
+    public EntityTextCompiler(ITextCompiler<DefaultDrawableBlockList> innerCompiler) {
+        super(innerCompiler);
+    }
+
+    /**
+     * 需要识别的类型，默认全部识别
+     * 解析结果会被缓存，需在解析前设置
+     * @param types {@link #TYPE_URL}，{@link #TYPE_MENTION}，{@link #TYPE_HASHTAG}，{@link #TYPE_PHONE}的组合
+     */
+    public void setEntityTypes(int types) {
+        this.types = types;
+    }
+
+    public int getEntityTypes() {
+        return types;
+    }
+
+    public void setOnEntityClickListener(OnEntityClickListener listener) {
+        this.entityClickListener = listener;
+    }
+
+    /**
+     * 识别结果的文字颜色，默认使用文字颜色
+     */
+    public void setLinkColor(int color) {
+        hasLinkColor = true;
+        linkColor = color;
+    }
+
+    @Override
+    public void compileInternal(@NonNull DefaultDrawableBlockList list, @NonNull CharSequence text, int start, int end, @Nullable SpecialStyleParams specialStyleParams) {
+        final int types = this.types;
+        if (types == 0) {
+            super.compileInternal(list, text, start, end, specialStyleParams);
+            return;
+        }
+        int lastEnd = start;
+        int i = start;
+        while (i < end) {
+            final char c = text.charAt(i);
+            int type = 0;
+            int entityEnd = -1;
+            if ((c == 'h' || c == 'H' || c == 'w' || c == 'W') && (types & TYPE_URL) != 0) {
+                entityEnd = matchUrl(text, i, end);
+                type = TYPE_URL;
+            } else if (c == '@' && (types & TYPE_MENTION) != 0) {
+                entityEnd = matchMention(text, i, end);
+                type = TYPE_MENTION;
+            } else if (c == '#' && (types & TYPE_HASHTAG) != 0) {
+                entityEnd = matchHashtag(text, i, end);
+                type = TYPE_HASHTAG;
+            } else if ((c == '+' || isDigit(c)) && (types & TYPE_PHONE) != 0) {
+                entityEnd = matchPhone(text, i, end);
+                type = TYPE_PHONE;
+            }
+            if (entityEnd > i && isBoundary(text, i, start)) {
+                if (lastEnd < i)
+                    super.compileInternal(list, text, lastEnd, i, specialStyleParams);
+                compileEntity(list, type, text, i, entityEnd, specialStyleParams);
+                i = entityEnd;
+                lastEnd = i;
+                continue;
+            }
+            //跳过整个单词，避免在单词中间识别，如邮箱中的@
+            if (isWordChar(c)) {
+                i ++;
+                while (i < end && isWordChar(text.charAt(i)))
+                    i ++;
+            } else {
+                i ++;
+            }
+        }
+        if (lastEnd < end)
+            super.compileInternal(list, text, lastEnd, end, specialStyleParams);
+    }
+
+    /**
+     * 生成识别结果的span block，span为空时按普通文字解析
+     */
+    protected void compileEntity(DefaultDrawableBlockList list, int type, CharSequence text, int start, int end, @Nullable SpecialStyleParams specialStyleParams) {
+        FClickableSpan span = createSpan(type, text.subSequence(start, end).toString());
+        if (span == null) {
+            super.compileInternal(list, text, start, end, specialStyleParams);
+            return;
+        }
+        DefaultDrawableBlockList children = DefaultDrawableBlockList.obtain(false, start, end);
+        super.compileInternal(children, text, start, end, specialStyleParams);
+        list.add(DefaultDrawableBlock.createSpanBlock(text.subSequence(start, end), span, children));
+    }
+
+    /**
+     * 可重写，自定义每种类型的样式及点击事件
+     * @param type   识别的类型
+     * @param entity 识别出的文字
+     * @return 为空时不生成span
+     */
+    protected @Nullable FClickableSpan createSpan(int type, @NonNull String entity) {
+        EntitySpan span = new EntitySpan(this, type, entity);
+        if (hasLinkColor)
+            span.withForegroundColor(linkColor);
+        return span;
+    }
+
+    //<editor-folder desc="automata">
+
+    /**
+     * @return 链接结束位置，不是链接返回-1
+     */
+    static int matchUrl(CharSequence text, int start, int end) {
+        int i = matchIgnoreCase(text, start, end, "https://");
+        if (i < 0)
+            i = matchIgnoreCase(text, start, end, "http://");
+        final boolean www = i < 0;
+        if (www)
+            i = matchIgnoreCase(text, start, end, "www.");
+        if (i < 0)
+            return -1;
+        final int hostStart = i;
+        boolean hasDot = false;
+        int parentheses = 0;
+        while (i < end) {
+            final char c = text.charAt(i);
+            if (!isUrlChar(c))
+                break;
+            if (c == '.')
+                hasDot = true;
+            else if (c == '(')
+                parentheses ++;
+            else if (c == ')') {
+                if (parentheses == 0)
+                    break;
+                parentheses --;
+            }
+            i ++;
+        }
+        //末尾的标点一般不属于链接
+        while (i > hostStart && isUrlTrailingPunctuation(text.charAt(i - 1)))
+            i --;
+        if (i == hostStart || (www && !hasDot))
+            return -1;
+        return i;
+    }
+
+    static int matchMention(CharSequence text, int start, int end) {
+        int i = start + 1;
+        final int max = Math.min(end, i + MAX_NAME_LENGTH);
+        while (i < max && isNameChar(text.charAt(i)))
+            i ++;
+        return i > start + 1 ? i : -1;
+    }
+
+    static int matchHashtag(CharSequence text, int start, int end) {
+        int i = start + 1;
+        boolean allDigits = true;
+        final int max = Math.min(end, i + MAX_NAME_LENGTH);
+        while (i < max) {
+            final char c = text.charAt(i);
+            if (!isNameChar(c))
+                break;
+            if (!isDigit(c))
+                allDigits = false;
+            i ++;
+        }
+        if (i == start + 1 || allDigits)
+            return -1;
+        if (i < end && text.charAt(i) == '#')
+            i ++;
+        return i;
+    }
+
+    static int matchPhone(CharSequence text, int start, int end) {
+        int i = start;
+        final boolean plus = text.charAt(i) == '+';
+        if (plus)
+            i ++;
+        int digits = 0;
+        //被分隔符分开的数字组数及当前组的数字个数
+        int groups = 0;
+        int groupDigits = 0;
+        boolean groupLayout = true;
+        int lastDigitEnd = -1;
+        while (i < end) {
+            final char c = text.charAt(i);
+            if (isDigit(c)) {
+                if (groupDigits == 0)
+                    groups ++;
+                groupDigits ++;
+                digits ++;
+                if (digits > MAX_PHONE_DIGITS)
+                    return -1;
+                i ++;
+                lastDigitEnd = i;
+            } else if ((c == '-' || c == ' ') && lastDigitEnd == i && i + 1 < end && isDigit(text.charAt(i + 1))) {
+                //数字之间的单个分隔符
+                if (!isPhoneGroup(groups, groupDigits))
+                    groupLayout = false;
+                groupDigits = 0;
+                i ++;
+            } else {
+                break;
+            }
+        }
+        if (digits < MIN_PHONE_DIGITS)
+            return -1;
+        if (lastDigitEnd < end && isWordChar(text.charAt(lastDigitEnd)))
+            return -1;
+        //+或0开头(国际号码，区号)时不限制格式
+        if (plus || text.charAt(start) == '0')
+            return lastDigitEnd;
+        if (groups == 1)
+            return isMobile(text, start, digits) ? lastDigitEnd : -1;
+        return groupLayout && isPhoneGroup(groups, groupDigits) ? lastDigitEnd : -1;
+    }
+
+    /**
+     * 11位手机号：1[3-9]开头
+     */
+    private static boolean isMobile(CharSequence text, int start, int digits) {
+        if (digits != MOBILE_DIGITS || text.charAt(start) != '1')
+            return false;
+        final char c = text.charAt(start + 1);
+        return c >= '3' && c <= '9';
+    }
+
+    /**
+     * 分隔后的格式：第一组2到4个数字，之后每组3到4个数字，排除2018-04-20这类日期
+     * @param index 第几组，从1开始
+     */
+    private static boolean isPhoneGroup(int index, int digits) {
+        return digits <= 4 && digits >= (index == 1 ? 2 : 3);
+    }
+
+    private static int matchIgnoreCase(CharSequence text, int start, int end, String prefix) {
+        final int len = prefix.length();
+        if (end - start < len)
+            return -1;
+        for (int i = 0; i < len; i ++) {
+            if (Character.toLowerCase(text.charAt(start + i)) != prefix.charAt(i))
+                return -1;
+        }
+        return start + len;
+    }
+
+    /**
+     * 识别结果前一个字符不能是字母数字
+     */
+    private static boolean isBoundary(CharSequence text, int index, int start) {
+        return index == start || !isWordChar(text.charAt(index - 1));
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || isDigit(c) || c == '_';
+    }
+
+    private static boolean isNameChar(char c) {
+        return isWordChar(c) || (c >= 0x4E00 && c <= 0x9FFF);
+    }
+
+    private static boolean isUrlChar(char c) {
+        if (c <= ' ' || c >= 0x7F)
+            return false;
+        switch (c) {
+            case '"':
+            case '<':
+            case '>':
+            case '\\':
+            case '^':
+            case '`':
+            case '{':
+            case '|':
+            case '}':
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean isUrlTrailingPunctuation(char c) {
+        switch (c) {
+            case '.':
+            case ',':
+            case ';':
+            case ':':
+            case '!':
+            case '?':
+            case '\'':
+                return true;
+        }
+        return false;
+    }
+    //</editor-folder>
+
+    /**
+     * 识别结果生成的span
+     */
+    public static class EntitySpan extends FClickableSpan {
+        private final EntityTextCompiler compiler;
+        private final int type;
+        private final String entity;
+
+        EntitySpan(EntityTextCompiler compiler, int type, String entity) {
+            this.compiler = compiler;
+            this.type = type;
+            this.entity = entity;
+        }
+
+        public int getType() {
+            return type;
+        }
+
+        public String getEntity() {
+            return entity;
+        }
+
+        @Override
+        public void onClick(View v) {
+            OnEntityClickListener listener = compiler.entityClickListener;
+            if (listener != null)
+                listener.onEntityClick(v, type, entity);
+        }
+    }
+
+    public interface OnEntityClickListener {
+        /**
+         * @param type   {@link #TYPE_URL}，{@link #TYPE_MENTION}，{@link #TYPE_HASHTAG}或{@link #TYPE_PHONE}
+         * @param entity 识别出的文字，如链接地址、"@name"、"#topic#"、电话号码
+         */
+        void onEntityClick(View v, int type, String entity);
+    }
+}
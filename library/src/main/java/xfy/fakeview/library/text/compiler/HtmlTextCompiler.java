@@ -0,0 +1,501 @@
+package xfy.fakeview.library.text.compiler;
+
+import android.graphics.Color;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
+import android.view.View;
+
+import java.util.ArrayList;
+import java.util.Locale;
+
+import xfy.fakeview.library.text.block.DefaultDrawableBlock;
+import xfy.fakeview.library.text.block.DefaultDrawableBlockList;
+import xfy.fakeview.library.text.param.SpecialStyleParams;
+import xfy.fakeview.library.text.utils.FClickableSpan;
+import xfy.fakeview.library.text.utils.IDrawableStats;
+
+/**
+ * Created by XiongFangyu on 2018/4/18.
+ *
+ * 直接解析简单html标签，不经过Html.fromHtml生成Spanned
+ * 支持：{@code <b> <strong> <i> <em> <u> <font color> <a href> <br> <img src>}，
+ * 以及{@code &lt; &gt; &amp; &quot; &apos; &nbsp; &#NN; &#xNN;}，其他标签忽略，只保留内容
+ *
+ * 和Html.fromHtml一样，连续的空白字符(包括换行符)合并为一个空格，换行使用{@code <br>}
+ * 标签外的文字交给innerCompiler解析(如表情)
+ * {@code <img>}的src由{@link #setImageAdapter}解析
+ */
+public class HtmlTextCompiler extends DefaultTextCompiler {
+    private static volatile HtmlTextCompiler compiler;
+
+    public static HtmlTextCompiler getCompiler() {
+        if (compiler == null) {
+            synchronized (HtmlTextCompiler.class) {
+                if (compiler == null)
+                    compiler = new HtmlTextCompiler();
+            }
+        }
+        return compiler;
+    }
+
+    private static final char OBJECT_CHAR = '\uFFFC';
+    private static final char NBSP_CHAR = '\u00A0';
+
+    private DrawableTextCompiler.ResourceAdapter imageAdapter;
+    private OnLinkClickListener linkClickListener;
+    private boolean hasLinkColor;
+    private int linkColor;
+
+    protected HtmlTextCompiler() {}
+
+    public HtmlTextCompiler(ITextCompiler<DefaultDrawableBlockList> innerCompiler) {
+        super(innerCompiler);
+    }
+
+    /**
+     * 解析{@code <img>}中的src，src会传给{@link DrawableTextCompiler.ResourceAdapter#parseRes}
+     * 或{@link DrawableTextCompiler.ResourceAdapter#parseDrawable}
+     */
+    public void setImageAdapter(DrawableTextCompiler.ResourceAdapter adapter) {
+        this.imageAdapter = adapter;
+    }
+
+    public DrawableTextCompiler.ResourceAdapter getImageAdapter() {
+        return imageAdapter;
+    }
+
+    public void setOnLinkClickListener(OnLinkClickListener listener) {
+        this.linkClickListener = listener;
+    }
+
+    /**
+     * {@code <a>}中文字的颜色，默认使用文字颜色
+     */
+    public void setLinkColor(int color) {
+        hasLinkColor = true;
+        linkColor = color;
+    }
+
+    /**
+     * 标签及样式可能跨行，不拆分
+     */
+    @Override
+    public boolean canSplitAfter(@NonNull CharSequence text, int index) {
+        return false;
+    }
+
+    /**
+     * 标记的解析需要完整文本，不能只解析前面部分
+     */
+    @Override
+    public boolean canCompilePrefix() {
+        return false;
+    }
+
+    @Override
+    public void compileInternal(@NonNull DefaultDrawableBlockList list, @NonNull CharSequence text, int start, int end, @Nullable SpecialStyleParams specialStyleParams) {
+        if (!containsMarkup(text, start, end)) {
+            super.compileInternal(list, text, start, end, specialStyleParams);
+            return;
+        }
+        State state = new State(list, specialStyleParams);
+        int i = start;
+        while (i < end) {
+            final char c = text.charAt(i);
+            if (c == '<') {
+                int close = indexOf(text, '>', i + 1, end);
+                if (close < 0) {
+                    appendText(state, text, i, end);
+                    break;
+                }
+                compileTag(state, text, i + 1, close);
+                i = close + 1;
+            } else if (c == '&') {
+                i = appendEntity(state.text, text, i, end);
+                state.lastSpace = false;
+            } else if (isWhitespace(c)) {
+                if (!state.lastSpace)
+                    state.text.append(' ');
+                state.lastSpace = true;
+                i ++;
+            } else {
+                state.text.append(c);
+                state.lastSpace = false;
+                i ++;
+            }
+        }
+        flush(state);
+        if (state.link != null)
+            closeLink(state);
+        for (int l = state.styles.size() - 1; l >= 0; l --) {
+            state.styles.get(l).release();
+        }
+    }
+
+    private void compileTag(State state, CharSequence text, int start, int end) {
+        final boolean close = start < end && text.charAt(start) == '/';
+        int nameStart = close ? start + 1 : start;
+        int nameEnd = nameStart;
+        while (nameEnd < end && Character.isLetterOrDigit(text.charAt(nameEnd))) {
+            nameEnd ++;
+        }
+        if (nameEnd == nameStart)
+            return;
+        final String name = text.subSequence(nameStart, nameEnd).toString().toLowerCase(Locale.US);
+        if (close) {
+            if ("a".equals(name)) {
+                if (state.link != null)
+                    closeLink(state);
+            } else {
+                popStyle(state, name);
+            }
+            return;
+        }
+        switch (name) {
+            case "br":
+                flush(state);
+                state.target.add(DefaultDrawableBlock.createNextLineBlock());
+                state.lastSpace = true;
+                break;
+            case "b":
+            case "strong":
+                pushStyle(state, name).boldText();
+                break;
+            case "i":
+            case "em":
+                pushStyle(state, name).italicText();
+                break;
+            case "u":
+                pushStyle(state, name).underlineText();
+                break;
+            case "font":
+                String color = getAttribute(text, nameEnd, end, "color");
+                if (color != null) {
+                    try {
+                        int c = Color.parseColor(color);
+                        pushStyle(state, name).withForegroundColor(c);
+                    } catch (IllegalArgumentException e) {
+                        pushStyle(state, name);
+                    }
+                } else {
+                    pushStyle(state, name);
+                }
+                break;
+            case "a":
+                if (state.link == null)
+                    openLink(state, getAttribute(text, nameEnd, end, "href"));
+                break;
+            case "img":
+                flush(state);
+                compileImage(state, getAttribute(text, nameEnd, end, "src"));
+                state.lastSpace = false;
+                break;
+        }
+    }
+
+    /**
+     * 将缓存的文字交给innerCompiler
+     */
+    private void flush(State state) {
+        final StringBuilder sb = state.text;
+        if (sb.length() == 0)
+            return;
+        String t = sb.toString();
+        sb.setLength(0);
+        if (state.linkText != null)
+            state.linkText.append(t);
+        super.compileInternal(state.target, t, 0, t.length(), state.currentParams());
+    }
+
+    private SpecialStyleParams pushStyle(State state, String name) {
+        flush(state);
+        SpecialStyleParams params = SpecialStyleParams.obtain();
+        SpecialStyleParams current = state.currentParams();
+        if (current != null)
+            params.initByParams(current);
+        state.styles.add(new Style(name, params.use()));
+        return params;
+    }
+
+    private void popStyle(State state, String name) {
+        final ArrayList<Style> styles = state.styles;
+        int index = styles.size() - 1;
+        while (index >= 0 && !styles.get(index).name.equals(name)) {
+            index --;
+        }
+        if (index < 0)
+            return;
+        flush(state);
+        for (int i = styles.size() - 1; i >= index; i --) {
+            styles.remove(i).release();
+        }
+    }
+
+    private void openLink(State state, String href) {
+        flush(state);
+        state.link = new LinkSpan(this, href);
+        if (hasLinkColor)
+            state.link.withForegroundColor(linkColor);
+        state.link.underlineText();
+        SpecialStyleParams params = pushStyle(state, "a").underlineText();
+        if (hasLinkColor)
+            params.withForegroundColor(linkColor);
+        state.linkText = new StringBuilder();
+        state.target = DefaultDrawableBlockList.obtain(false, 0, 0);
+    }
+
+    private void closeLink(State state) {
+        popStyle(state, "a");
+        flush(state);
+        DefaultDrawableBlockList children = state.target;
+        state.target = state.root;
+        if (!children.isEmpty()) {
+            state.root.add(DefaultDrawableBlock.createSpanBlock(state.linkText.toString(), state.link, children));
+        }
+        state.link = null;
+        state.linkText = null;
+    }
+
+    private void compileImage(State state, String src) {
+        if (imageAdapter == null || TextUtils.isEmpty(src))
+            return;
+        if (!state.imageAdapterReady) {
+            imageAdapter.beforeCompile();
+            state.imageAdapterReady = true;
+        }
+        int res = imageAdapter.parseRes(src);
+        if (res > 0) {
+            state.target.add(DefaultDrawableBlock.createDrawableBlock(src, res));
+        } else {
+            Drawable d = imageAdapter.parseDrawable(src);
+            if (d == null)
+                return;
+            if (d instanceof IDrawableStats) {
+                state.target.add(DefaultDrawableBlock.createNeedSetCallbackDrawableBlock(src, d));
+            } else {
+                state.target.add(DefaultDrawableBlock.createSpecialDrawableBlock(src, d));
+            }
+        }
+        if (state.linkText != null)
+            state.linkText.append(OBJECT_CHAR);
+    }
+
+    private static void appendText(State state, CharSequence text, int start, int end) {
+        for (int i = start; i < end; i ++) {
+            state.text.append(text.charAt(i));
+        }
+        state.lastSpace = false;
+    }
+
+    private static boolean containsMarkup(CharSequence text, int start, int end) {
+        for (int i = start; i < end; i ++) {
+            final char c = text.charAt(i);
+            if (c == '<' || c == '&')
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    private static int indexOf(CharSequence text, char c, int start, int end) {
+        for (int i = start; i < end; i ++) {
+            if (text.charAt(i) == c)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * 解析转义字符，无法解析时原样保留'&'
+     * @return 下一个字符位置
+     */
+    private static int appendEntity(StringBuilder out, CharSequence text, int start, int end) {
+        int semicolon = indexOf(text, ';', start + 1, Math.min(end, start + 10));
+        if (semicolon < 0) {
+            out.append('&');
+            return start + 1;
+        }
+        final int ns = start + 1;
+        final int len = semicolon - ns;
+        char c = 0;
+        if (len > 1 && text.charAt(ns) == '#') {
+            try {
+                int code;
+                if (text.charAt(ns + 1) == 'x' || text.charAt(ns + 1) == 'X') {
+                    code = Integer.parseInt(text.subSequence(ns + 2, semicolon).toString(), 16);
+                } else {
+                    code = Integer.parseInt(text.subSequence(ns + 1, semicolon).toString());
+                }
+                out.appendCodePoint(code);
+                return semicolon + 1;
+            } catch (IllegalArgumentException e) {
+                out.append('&');
+                return start + 1;
+            }
+        } else if (regionEquals(text, ns, len, "lt")) {
+            c = '<';
+        } else if (regionEquals(text, ns, len, "gt")) {
+            c = '>';
+        } else if (regionEquals(text, ns, len, "amp")) {
+            c = '&';
+        } else if (regionEquals(text, ns, len, "quot")) {
+            c = '"';
+        } else if (regionEquals(text, ns, len, "apos")) {
+            c = '\'';
+        } else if (regionEquals(text, ns, len, "nbsp")) {
+            c = NBSP_CHAR;
+        }
+        if (c == 0) {
+            out.append('&');
+            return start + 1;
+        }
+        out.append(c);
+        return semicolon + 1;
+    }
+
+    private static boolean regionEquals(CharSequence text, int start, int len, String s) {
+        if (len != s.length())
+            return false;
+        for (int i = 0; i < len; i ++) {
+            if (text.charAt(start + i) != s.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * 获取标签中的属性值，支持单引号、双引号或不带引号
+     * @param start 标签名后的位置
+     * @param end   '>'的位置
+     */
+    private static String getAttribute(CharSequence text, int start, int end, String name) {
+        final int nl = name.length();
+        int i = start;
+        while (i < end) {
+            while (i < end && (isWhitespace(text.charAt(i)) || text.charAt(i) == '/')) {
+                i ++;
+            }
+            int ks = i;
+            while (i < end && text.charAt(i) != '=' && !isWhitespace(text.charAt(i))) {
+                i ++;
+            }
+            final boolean match = i - ks == nl && text.subSequence(ks, i).toString().equalsIgnoreCase(name);
+            while (i < end && isWhitespace(text.charAt(i))) {
+                i ++;
+            }
+            if (i >= end || text.charAt(i) != '=')
+                continue;
+            i ++;
+            while (i < end && isWhitespace(text.charAt(i))) {
+                i ++;
+            }
+            if (i >= end)
+                return match ? "" : null;
+            final char q = text.charAt(i);
+            int vs;
+            int ve;
+            if (q == '"' || q == '\'') {
+                vs = i + 1;
+                ve = indexOf(text, q, vs, end);
+                if (ve < 0)
+                    ve = end;
+                i = ve + 1;
+            } else {
+                vs = i;
+                while (i < end && !isWhitespace(text.charAt(i))) {
+                    i ++;
+                }
+                ve = i;
+            }
+            if (match) {
+                if (indexOf(text, '&', vs, ve) < 0)
+                    return text.subSequence(vs, ve).toString();
+                StringBuilder sb = new StringBuilder(ve - vs);
+                int j = vs;
+                while (j < ve) {
+                    if (text.charAt(j) == '&') {
+                        j = appendEntity(sb, text, j, ve);
+                    } else {
+                        sb.append(text.charAt(j ++));
+                    }
+                }
+                return sb.toString();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 单次解析的状态
+     */
+    private static final class State {
+        final DefaultDrawableBlockList root;
+        final SpecialStyleParams baseParams;
+        final StringBuilder text = new StringBuilder();
+        final ArrayList<Style> styles = new ArrayList<>();
+        //当前block添加到的list，在<a>中时为span的children
+        DefaultDrawableBlockList target;
+        LinkSpan link;
+        StringBuilder linkText;
+        boolean lastSpace = true;
+        boolean imageAdapterReady;
+
+        State(DefaultDrawableBlockList root, SpecialStyleParams baseParams) {
+            this.root = root;
+            this.target = root;
+            this.baseParams = baseParams;
+        }
+
+        SpecialStyleParams currentParams() {
+            final int size = styles.size();
+            return size > 0 ? styles.get(size - 1).params : baseParams;
+        }
+    }
+
+    private static final class Style {
+        final String name;
+        final SpecialStyleParams params;
+
+        Style(String name, SpecialStyleParams params) {
+            this.name = name;
+            this.params = params;
+        }
+
+        void release() {
+            params.recycle();
+        }
+    }
+
+    /**
+     * {@code <a>}标签生成的span
+     */
+    public static class LinkSpan extends FClickableSpan {
+        private final HtmlTextCompiler compiler;
+        private final String href;
+
+        LinkSpan(HtmlTextCompiler compiler, String href) {
+            this.compiler = compiler;
+            this.href = href;
+        }
+
+        public String getHref() {
+            return href;
+        }
+
+        @Override
+        public void onClick(View v) {
+            OnLinkClickListener listener = compiler.linkClickListener;
+            if (listener != null)
+                listener.onLinkClick(v, href);
+        }
+    }
+
+    public interface OnLinkClickListener {
+        void onLinkClick(View v, String href);
+    }
+}
@@ -0,0 +1,132 @@
+package xfy.fakeview.library.text.compiler;
+
+import android.support.annotation.NonNull;
+import android.text.Spanned;
+
+import java.util.ArrayList;
+
+import xfy.fakeview.library.text.block.DefaultDrawableBlock;
+import xfy.fakeview.library.text.block.DefaultDrawableBlockList;
+import xfy.fakeview.library.text.block.IDrawableBlock;
+import xfy.fakeview.library.text.utils.BaseSpan;
+
+/**
+ * Created by XiongFangyu on 2018/4/12.
+ *
+ * Compile text into paragraphs for editing.
+ * The root list is [PARAGRAPH, NEXTLINE, PARAGRAPH, ... , PARAGRAPH], so paragraph n is at index 2n.
+ * When text changed, only changed paragraphs are compiled again and the measure result of other
+ * paragraphs is reused by {@link DefaultDrawableBlockList#measure}.
+ *
+ * The root list is changed in place, so it will never be saved to compiler cache.
+ */
+public class ParagraphTextCompiler {
+    private final ITextCompiler<DefaultDrawableBlockList> compiler;
+    private final ArrayList<DefaultDrawableBlock> temp = new ArrayList<>();
+
+    public ParagraphTextCompiler(@NonNull ITextCompiler<DefaultDrawableBlockList> compiler) {
+        this.compiler = compiler;
+    }
+
+    public ITextCompiler<DefaultDrawableBlockList> getCompiler() {
+        return compiler;
+    }
+
+    /**
+     * Text contains {@link BaseSpan} may have a span across paragraphs, so it can't be compiled by paragraph.
+     */
+    public static boolean canCompileByParagraph(CharSequence text) {
+        if (!(text instanceof Spanned))
+            return true;
+        Spanned spanned = (Spanned) text;
+        BaseSpan[] spans = spanned.getSpans(0, spanned.length(), BaseSpan.class);
+        return spans == null || spans.length == 0;
+    }
+
+    public DefaultDrawableBlockList compile(@NonNull CharSequence text) {
+        final int len = text.length();
+        DefaultDrawableBlockList result = DefaultDrawableBlockList.obtain(true, 0, len);
+        compileParagraphs(temp, text, 0, len);
+        result.replaceBlocks(0, 0, temp, len);
+        temp.clear();
+        result.use();
+        return result;
+    }
+
+    /**
+     * Compile changed paragraphs and replace them in list.
+     * @param list    list created by {@link #compile(CharSequence)}
+     * @param oldText text of list
+     * @param newText new text
+     * @return false if list can't be changed, caller should compile whole text
+     */
+    public boolean compileChanged(@NonNull DefaultDrawableBlockList list, @NonNull CharSequence oldText, @NonNull CharSequence newText) {
+        final int oldLen = oldText.length();
+        final int newLen = newText.length();
+        if (list.getEnd() != oldLen || (list.size() & 1) == 0)
+            return false;
+        final int minLen = Math.min(oldLen, newLen);
+        int prefix = 0;
+        while (prefix < minLen && oldText.charAt(prefix) == newText.charAt(prefix)) {
+            prefix ++;
+        }
+        if (prefix == oldLen && oldLen == newLen)
+            return true;
+        int suffix = 0;
+        while (suffix < minLen - prefix
+                && oldText.charAt(oldLen - suffix - 1) == newText.charAt(newLen - suffix - 1)) {
+            suffix ++;
+        }
+        final int changeEnd = oldLen - suffix;
+
+        int first = -1;
+        int last = -1;
+        int firstStart = 0;
+        int lastEnd = 0;
+        int offset = 0;
+        for (int i = 0, l = list.size(); i < l; i += 2) {
+            DefaultDrawableBlock block = list.get(i);
+            if (block.getType() != IDrawableBlock.PARAGRAPH)
+                return false;
+            final int end = offset + block.getText().length();
+            if (first < 0 && end >= prefix) {
+                first = i;
+                firstStart = offset;
+            }
+            if (first >= 0) {
+                last = i;
+                lastEnd = end;
+                if (end >= changeEnd)
+                    break;
+            }
+            offset = end + 1;
+        }
+        if (first < 0 || lastEnd < changeEnd)
+            return false;
+        final int newEnd = lastEnd + newLen - oldLen;
+        compileParagraphs(temp, newText, firstStart, newEnd);
+        list.replaceBlocks(first, last + 1, temp, newLen);
+        temp.clear();
+        return true;
+    }
+
+    private void compileParagraphs(ArrayList<DefaultDrawableBlock> out, CharSequence text, int start, int end) {
+        int ps = start;
+        for (int i = start; i <= end; i ++) {
+            if (i == end || text.charAt(i) == ITextCompiler.NEW_LINE_CHAR) {
+                if (ps != start)
+                    out.add(DefaultDrawableBlock.createNextLineBlock());
+                out.add(createParagraph(text, ps, i));
+                ps = i + 1;
+            }
+        }
+    }
+
+    private DefaultDrawableBlock createParagraph(CharSequence text, int start, int end) {
+        DefaultDrawableBlockList children = DefaultDrawableBlockList.obtain(false, start, end);
+        children.use();
+        if (end > start)
+            compiler.compileInternal(children, text, start, end, null);
+        return DefaultDrawableBlock.createParagraphBlock(text.subSequence(start, end), children);
+    }
+}
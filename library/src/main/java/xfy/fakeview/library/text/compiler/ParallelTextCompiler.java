@@ -0,0 +1,190 @@
+package xfy.fakeview.library.text.compiler;
+
+import android.support.annotation.NonNull;
+import android.text.Spanned;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import xfy.fakeview.library.text.block.DefaultDrawableBlockList;
+import xfy.fakeview.library.text.metrics.TextMetrics;
+
+/**
+ * Created by XiongFangyu on 2018/4/20.
+ *
+ * 并行解析很长的文本(如长文档、聊天记录导出)
+ * 在可安全拆分的换行符后将文本分为cpu核数段，调用线程解析第一段，其余在线程池中解析，
+ * 最后按顺序合并为一个root list，结果和{@link DefaultTextCompiler#compile(CharSequence)}相同
+ *
+ * 换行符被span覆盖，或compiler认为不能拆分时({@link DefaultTextCompiler#canSplitAfter})不拆分；
+ * 每段都会调用compiler的{@link ITextCompiler#compileInternal}，compiler及其adapter需线程安全
+ * 文本较短时直接使用compiler解析
+ */
+public class ParallelTextCompiler {
+    //每段最少字符数，更短时并行解析不划算
+    public static final int MIN_PART_LENGTH = 8 * 1024;
+    private static final int THREAD_COUNT = Math.max(1, Runtime.getRuntime().availableProcessors());
+    private static volatile ExecutorService executor;
+
+    private final DefaultTextCompiler compiler;
+    //最多拆分段数
+    private final int maxParts;
+
+    public ParallelTextCompiler(@NonNull DefaultTextCompiler compiler) {
+        this(compiler, THREAD_COUNT);
+    }
+
+    /**
+     * @param maxParts 最多拆分段数，默认为cpu核数
+     */
+    public ParallelTextCompiler(@NonNull DefaultTextCompiler compiler, int maxParts) {
+        this.compiler = compiler;
+        this.maxParts = Math.max(1, maxParts);
+    }
+
+    public DefaultTextCompiler getCompiler() {
+        return compiler;
+    }
+
+    private static ExecutorService getExecutor() {
+        if (executor == null) {
+            synchronized (ParallelTextCompiler.class) {
+                if (executor == null) {
+                    executor = Executors.newFixedThreadPool(THREAD_COUNT, new ThreadFactory() {
+                        private final AtomicInteger count = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(@NonNull Runnable r) {
+                            Thread t = new Thread(r, "FText-Compile-" + count.incrementAndGet());
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * 解析整个文本，结果已调用{@link DefaultDrawableBlockList#use()}，并放入compiler的缓存
+     * 阻塞直到全部完成
+     */
+    public DefaultDrawableBlockList compile(@NonNull final CharSequence text) {
+        final int len = text.length();
+        if (len == 0 || compiler.isCached(text))
+            return compiler.compile(text);
+        final int[] splits = split(compiler, text, Math.min(maxParts, len / MIN_PART_LENGTH));
+        if (splits.length <= 2)
+            return compiler.compile(text);
+
+        final long metricsStart = TextMetrics.start();
+        final int parts = splits.length - 1;
+        final DefaultDrawableBlockList[] lists = new DefaultDrawableBlockList[parts];
+        List<Future<?>> futures = new ArrayList<>(parts - 1);
+        final ExecutorService executor = getExecutor();
+        for (int i = 1; i < parts; i ++) {
+            final int index = i;
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    lists[index] = compilePart(text, splits[index], splits[index + 1]);
+                    return null;
+                }
+            }));
+        }
+        lists[0] = compilePart(text, splits[0], splits[1]);
+        try {
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            for (Future<?> f : futures) {
+                f.cancel(true);
+            }
+            recycleParts(lists);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            recycleParts(lists);
+            throw new RuntimeException(e.getCause());
+        }
+
+        DefaultDrawableBlockList result = DefaultDrawableBlockList.obtain(true, 0, len);
+        for (DefaultDrawableBlockList part : lists) {
+            result.moveBlocksFrom(part);
+        }
+        TextMetrics.recordCompile(metricsStart);
+        TextMetrics.recordBlockCount(result.size());
+        result.use();
+        compiler.putCache(text, result);
+        return result;
+    }
+
+    private DefaultDrawableBlockList compilePart(CharSequence text, int start, int end) {
+        DefaultDrawableBlockList list = DefaultDrawableBlockList.obtain(false, start, end);
+        compiler.compileInternal(list, text, start, end, null);
+        return list;
+    }
+
+    private static void recycleParts(DefaultDrawableBlockList[] lists) {
+        for (DefaultDrawableBlockList list : lists) {
+            if (list != null) {
+                list.use();
+                list.notUse();
+            }
+        }
+    }
+
+    /**
+     * 在平均位置之后查找可拆分的换行符
+     * @param parts 期望段数
+     * @return 各段起始位置及文本长度，[0, s1, s2, ..., len]
+     */
+    static int[] split(DefaultTextCompiler compiler, CharSequence text, int parts) {
+        final int len = text.length();
+        if (parts <= 1)
+            return new int[] {0, len};
+        final Spanned spanned = text instanceof Spanned ? (Spanned) text : null;
+        int[] splits = new int[parts + 1];
+        int count = 1;
+        int from = 0;
+        for (int i = 1; i < parts; i ++) {
+            int index = Math.max(from, len * i / parts);
+            while (index < len) {
+                if (text.charAt(index) == ITextCompiler.NEW_LINE_CHAR
+                        && !isInSpan(spanned, index) && compiler.canSplitAfter(text, index))
+                    break;
+                index ++;
+            }
+            if (index + 1 >= len)
+                break;
+            from = index + 1;
+            splits[count ++] = from;
+        }
+        splits[count ++] = len;
+        if (count == splits.length)
+            return splits;
+        int[] result = new int[count];
+        System.arraycopy(splits, 0, result, 0, count);
+        return result;
+    }
+
+    private static boolean isInSpan(Spanned spanned, int index) {
+        if (spanned == null)
+            return false;
+        Object[] spans = spanned.getSpans(index, index + 1, Object.class);
+        for (Object span : spans) {
+            if (spanned.getSpanStart(span) <= index && spanned.getSpanEnd(span) > index)
+                return true;
+        }
+        return false;
+    }
+}
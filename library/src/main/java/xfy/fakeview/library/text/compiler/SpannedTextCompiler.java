@@ -0,0 +1,158 @@
+package xfy.fakeview.library.text.compiler;
+
+import android.content.res.Resources;
+import android.graphics.Typeface;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.Spanned;
+import android.text.style.AbsoluteSizeSpan;
+import android.text.style.BackgroundColorSpan;
+import android.text.style.CharacterStyle;
+import android.text.style.DynamicDrawableSpan;
+import android.text.style.ForegroundColorSpan;
+import android.text.style.StyleSpan;
+import android.text.style.UnderlineSpan;
+
+import xfy.fakeview.library.text.block.DefaultDrawableBlock;
+import xfy.fakeview.library.text.block.DefaultDrawableBlockList;
+import xfy.fakeview.library.text.param.SpecialStyleParams;
+import xfy.fakeview.library.text.utils.IDrawableStats;
+
+/**
+ * Created by XiongFangyu on 2018/4/17.
+ *
+ * 解析系统span：{@link ForegroundColorSpan} {@link BackgroundColorSpan} {@link AbsoluteSizeSpan}
+ * {@link StyleSpan} {@link UnderlineSpan} {@link DynamicDrawableSpan}(如ImageSpan)
+ *
+ * 按span边界遍历一次，样式转换为{@link SpecialStyleParams}，图片转换为图片block，其他span忽略
+ * 需要同时解析{@link xfy.fakeview.library.text.utils.FClickableSpan}时，作为{@link ClickSpanTextCompiler}的innerCompiler
+ */
+public class SpannedTextCompiler extends DefaultTextCompiler {
+    private static volatile SpannedTextCompiler compiler;
+
+    public static SpannedTextCompiler getCompiler() {
+        if (compiler == null) {
+            synchronized (SpannedTextCompiler.class) {
+                if (compiler == null)
+                    compiler = new SpannedTextCompiler();
+            }
+        }
+        return compiler;
+    }
+
+    protected SpannedTextCompiler() {}
+
+    public SpannedTextCompiler(ITextCompiler<DefaultDrawableBlockList> innerCompiler) {
+        super(innerCompiler);
+    }
+
+    @Override
+    public void compileInternal(@NonNull DefaultDrawableBlockList list, @NonNull CharSequence text, int start, int end, @Nullable SpecialStyleParams specialStyleParams) {
+        if (!(text instanceof Spanned)) {
+            super.compileInternal(list, text, start, end, specialStyleParams);
+            return;
+        }
+        final Spanned spanned = (Spanned) text;
+        int next;
+        for (int i = start; i < end; i = next) {
+            next = spanned.nextSpanTransition(i, end, CharacterStyle.class);
+            CharacterStyle[] spans = spanned.getSpans(i, next, CharacterStyle.class);
+            DynamicDrawableSpan drawableSpan = findDrawableSpan(spanned, spans, i, next);
+            if (drawableSpan != null) {
+                next = Math.min(spanned.getSpanEnd(drawableSpan), end);
+                compileDrawableSpan(list, drawableSpan, text, i, next, specialStyleParams);
+                continue;
+            }
+            super.compileInternal(list, text, i, next, createParams(spanned, spans, i, next, specialStyleParams));
+        }
+    }
+
+    /**
+     * 是否是此解析器能解析的span，其他span会被忽略
+     */
+    public static boolean isSupportedSpan(Object span) {
+        return span instanceof ForegroundColorSpan
+                || span instanceof BackgroundColorSpan
+                || span instanceof AbsoluteSizeSpan
+                || span instanceof StyleSpan
+                || span instanceof UnderlineSpan
+                || span instanceof DynamicDrawableSpan;
+    }
+
+    /**
+     * 将图片span转换为图片block，drawable为空时按文本解析
+     */
+    protected void compileDrawableSpan(DefaultDrawableBlockList list, DynamicDrawableSpan span, CharSequence text, int start, int end, @Nullable SpecialStyleParams specialStyleParams) {
+        Drawable d = span.getDrawable();
+        if (d == null) {
+            super.compileInternal(list, text, start, end, specialStyleParams);
+            return;
+        }
+        CharSequence t = text.subSequence(start, end);
+        if (d instanceof IDrawableStats) {
+            list.add(DefaultDrawableBlock.createNeedSetCallbackDrawableBlock(t, d));
+        } else {
+            list.add(DefaultDrawableBlock.createSpecialDrawableBlock(t, d));
+        }
+    }
+
+    private static DynamicDrawableSpan findDrawableSpan(Spanned spanned, CharacterStyle[] spans, int start, int end) {
+        if (spans == null)
+            return null;
+        for (CharacterStyle span : spans) {
+            if (span instanceof DynamicDrawableSpan && isInRange(spanned, span, start, end))
+                return (DynamicDrawableSpan) span;
+        }
+        return null;
+    }
+
+    /**
+     * 没有可解析的样式时直接返回parent，不创建新对象
+     */
+    private static SpecialStyleParams createParams(Spanned spanned, CharacterStyle[] spans, int start, int end, @Nullable SpecialStyleParams parent) {
+        if (spans == null || spans.length == 0)
+            return parent;
+        SpecialStyleParams params = null;
+        for (CharacterStyle span : spans) {
+            if (!isInRange(spanned, span, start, end))
+                continue;
+            if (span instanceof ForegroundColorSpan) {
+                params = newParams(params, parent).withForegroundColor(((ForegroundColorSpan) span).getForegroundColor());
+            } else if (span instanceof BackgroundColorSpan) {
+                params = newParams(params, parent).withBackgroundColor(((BackgroundColorSpan) span).getBackgroundColor());
+            } else if (span instanceof AbsoluteSizeSpan) {
+                AbsoluteSizeSpan sizeSpan = (AbsoluteSizeSpan) span;
+                float size = sizeSpan.getSize();
+                if (sizeSpan.getDip())
+                    size *= Resources.getSystem().getDisplayMetrics().density;
+                params = newParams(params, parent).withTextSize(size);
+            } else if (span instanceof StyleSpan) {
+                final int style = ((StyleSpan) span).getStyle();
+                if ((style & Typeface.BOLD) != 0)
+                    params = newParams(params, parent).boldText();
+                if ((style & Typeface.ITALIC) != 0)
+                    params = newParams(params, parent).italicText();
+            } else if (span instanceof UnderlineSpan) {
+                params = newParams(params, parent).underlineText();
+            }
+        }
+        return params != null ? params : parent;
+    }
+
+    private static SpecialStyleParams newParams(SpecialStyleParams params, SpecialStyleParams parent) {
+        if (params != null)
+            return params;
+        params = SpecialStyleParams.obtain();
+        if (parent != null)
+            params.initByParams(parent);
+        return params;
+    }
+
+    /**
+     * 忽略长度为0的span
+     */
+    private static boolean isInRange(Spanned spanned, Object span, int start, int end) {
+        return spanned.getSpanStart(span) < end && spanned.getSpanEnd(span) > start;
+    }
+}
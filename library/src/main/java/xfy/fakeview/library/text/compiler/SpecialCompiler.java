@@ -71,6 +71,22 @@ public class SpecialCompiler extends DefaultTextCompiler {
 
     private Pattern pattern;
 
+    /**
+     * 富文本标记可能跨行，不拆分
+     */
+    @Override
+    public boolean canSplitAfter(@NonNull CharSequence text, int index) {
+        return false;
+    }
+
+    /**
+     * 标记的解析需要完整文本，不能只解析前面部分
+     */
+    @Override
+    public boolean canCompilePrefix() {
+        return false;
+    }
+
     @Override
     public void compileInternal(@NonNull DefaultDrawableBlockList list, @NonNull CharSequence text, int start, int end, @Nullable SpecialStyleParams specialStyleParams) {
         CharSequence sub = text.subSequence(start, end);
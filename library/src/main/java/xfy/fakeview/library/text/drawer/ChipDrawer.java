@@ -0,0 +1,82 @@
+package xfy.fakeview.library.text.drawer;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.support.annotation.NonNull;
+import android.text.TextPaint;
+
+import xfy.fakeview.library.text.param.ImmutableParams;
+import xfy.fakeview.library.text.param.VariableParams;
+import xfy.fakeview.library.text.utils.Chip;
+
+/**
+ * Created by XiongFangyu on 2018/4/20.
+ *
+ * 绘制{@link Chip}，所有标签共用一个paint和rect，只在主线程绘制
+ * 计算宽度时使用传入的paint(临时修改文字大小)，可在计算线程中调用
+ * 绘制时使用文字paint计算宽度，并复制其文字样式，和计算结果一致
+ */
+public class ChipDrawer {
+    private static final TextPaint chipPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private static final RectF chipRect = new RectF();
+
+    private ChipDrawer() {}
+
+    /**
+     * 标签宽度：文字宽度加左右padding
+     * @param paint  文字paint，计算后恢复原文字大小
+     * @param height 标签高度，即图片大小
+     */
+    public static int measureChipWidth(@NonNull TextPaint paint, @NonNull Chip chip, int height) {
+        final float oldTextSize = paint.getTextSize();
+        paint.setTextSize(chip.getTextSize(height));
+        final float tw = paint.measureText(chip.label, 0, chip.label.length());
+        paint.setTextSize(oldTextSize);
+        return (int) Math.ceil(tw) + (chip.getPadding(height) << 1);
+    }
+
+    public static void drawChip(@NonNull Canvas canvas, @NonNull Chip chip,
+                                @NonNull VariableParams variableParams, @NonNull ImmutableParams immutableParams) {
+        final int dh = immutableParams.drawableHeight;
+        //和计算时使用相同的paint计算宽度，绘制时使用相同的文字样式
+        final int dw = measureChipWidth(immutableParams.paint, chip, dh);
+        final TextPaint paint = chipPaint;
+        setTextStyle(paint, immutableParams.paint);
+
+        int maxWidth = TextDrawer.getDrawMaxWidthFronNow(variableParams, immutableParams);
+        if (maxWidth < 0) {
+            if (-maxWidth < dw) {
+                TextDrawer.drawEllipsize(canvas, variableParams, immutableParams);
+                return;
+            }
+        } else if (maxWidth < dw) {
+            TextDrawer.drawNextLine(canvas, variableParams, immutableParams);
+        }
+
+        final int l = variableParams.currentLeft;
+        final int t = variableParams.currentTop;
+        if (!canvas.quickReject(l, t, l + dw, t + dh, Canvas.EdgeType.AA)) {
+            final float radius = chip.getRadius(dh);
+            chipRect.set(l, t, l + dw, t + dh);
+            paint.setColor(chip.backgroundColor);
+            canvas.drawRoundRect(chipRect, radius, radius, paint);
+
+            paint.setColor(chip.textColor);
+            paint.setTextSize(chip.getTextSize(dh));
+            final float baseline = t + (dh - paint.descent() - paint.ascent()) / 2;
+            canvas.drawText(chip.label, 0, chip.label.length(), l + chip.getPadding(dh), baseline, paint);
+        }
+        variableParams.currentLeft += dw;
+    }
+
+    /**
+     * 复制影响文字宽度的样式：字体、flag(粗体、下划线等)、倾斜及缩放
+     */
+    private static void setTextStyle(TextPaint dst, TextPaint src) {
+        dst.setTypeface(src.getTypeface());
+        dst.setFlags(src.getFlags());
+        dst.setTextSkewX(src.getTextSkewX());
+        dst.setTextScaleX(src.getTextScaleX());
+    }
+}
@@ -0,0 +1,230 @@
+package xfy.fakeview.library.text.drawer;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.res.Resources;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.DrawableRes;
+import android.support.annotation.NonNull;
+import android.text.TextUtils;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Created by XiongFangyu on 2018/4/20.
+ *
+ * 按使用次数预加载文字中的图片资源(如表情)
+ * 某个表情第一次出现时在主线程中通过getDrawable解码，表情很多时(如打开聊天)会卡顿；
+ * 设置预加载数量后记录每个资源的使用次数并保存，在子线程中提前解码使用最多的N个，
+ * {@link TextDrawableDrawer#getSpecialDrawable(int, int)}直接通过已解码的ConstantState创建drawable
+ *
+ * 图片绘制时按drawableSize缩放，只需解码一次，和drawableSize无关
+ * 使用次数按资源名保存在SharedPreferences中，资源id在不同版本中可能不同
+ */
+public final class EmojiPreloader {
+    private static final String PREFS_NAME = "fakeview_emoji_usage";
+    private static final String KEY_USAGE = "usage";
+    //最多记录的资源数量，超出时去掉使用次数最少的
+    private static final int MAX_RECORD_SIZE = 512;
+
+    private static final Object lock = new Object();
+    //预加载数量，0不记录也不预加载
+    private static volatile int preloadCount = 0;
+    //资源id -> 使用次数
+    private static final SparseIntArray usage = new SparseIntArray();
+    //是否已读取保存的使用次数
+    private static boolean usageLoaded = false;
+    //资源id -> 已解码的drawable
+    private static final SparseArray<Drawable.ConstantState> preloaded = new SparseArray<>();
+    private static boolean preloading = false;
+
+    private EmojiPreloader() {}
+
+    /**
+     * 设置预加载数量，一般为表情面板第一页的数量
+     * @param count 小于等于0时不记录使用次数，并释放已预加载的图片
+     */
+    public static void setPreloadCount(int count) {
+        preloadCount = count < 0 ? 0 : count;
+        if (preloadCount == 0)
+            clear();
+    }
+
+    public static int getPreloadCount() {
+        return preloadCount;
+    }
+
+    /**
+     * 在子线程中预加载使用最多的图片，并保存使用次数
+     * 在app启动及打开聊天等表情较多的页面时调用，正在预加载时忽略
+     */
+    public static void preload(@NonNull Context context) {
+        if (preloadCount <= 0)
+            return;
+        synchronized (lock) {
+            if (preloading)
+                return;
+            preloading = true;
+        }
+        final Context appContext = context.getApplicationContext();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    preloadNow(appContext);
+                } finally {
+                    synchronized (lock) {
+                        preloading = false;
+                    }
+                }
+            }
+        }, "FText-Emoji-Preload");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * 在当前线程中预加载，需在子线程中调用
+     * @see #preload(Context)
+     */
+    public static void preloadNow(@NonNull Context context) {
+        final int count = preloadCount;
+        if (count <= 0)
+            return;
+        final Resources resources = context.getResources();
+        final SharedPreferences sp = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        final List<int[]> ranking;
+        synchronized (lock) {
+            if (!usageLoaded) {
+                readUsage(resources, sp.getString(KEY_USAGE, null));
+                usageLoaded = true;
+            }
+            ranking = rank();
+        }
+        sp.edit().putString(KEY_USAGE, writeUsage(resources, ranking)).apply();
+
+        final int size = Math.min(count, ranking.size());
+        SparseArray<Drawable.ConstantState> result = new SparseArray<>(size);
+        for (int i = 0; i < size; i ++) {
+            final int res = ranking.get(i)[0];
+            Drawable.ConstantState state = getPreloaded(res);
+            if (state == null) {
+                state = decode(resources, res);
+                if (state == null)
+                    continue;
+            }
+            result.put(res, state);
+        }
+        synchronized (lock) {
+            preloaded.clear();
+            for (int i = 0, l = result.size(); i < l; i ++) {
+                preloaded.put(result.keyAt(i), result.valueAt(i));
+            }
+        }
+    }
+
+    /**
+     * @return 资源是否已预加载
+     */
+    public static boolean isPreloaded(@DrawableRes int res) {
+        return getPreloaded(res) != null;
+    }
+
+    /**
+     * 释放已预加载的图片，如内存不足时；使用次数仍保留
+     */
+    public static void clear() {
+        synchronized (lock) {
+            preloaded.clear();
+        }
+    }
+
+    /**
+     * 文字中的图片资源解码时调用，记录使用次数
+     */
+    static void record(@DrawableRes int res) {
+        if (preloadCount <= 0 || res <= 0)
+            return;
+        synchronized (lock) {
+            usage.put(res, usage.get(res) + 1);
+        }
+    }
+
+    static Drawable.ConstantState getPreloaded(@DrawableRes int res) {
+        synchronized (lock) {
+            return preloaded.get(res);
+        }
+    }
+
+    private static Drawable.ConstantState decode(Resources resources, int res) {
+        try {
+            Drawable drawable = resources.getDrawable(res);
+            return drawable != null ? drawable.getConstantState() : null;
+        } catch (Resources.NotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 按使用次数从多到少排序，只保留前{@link #MAX_RECORD_SIZE}个
+     * @return [资源id, 使用次数]
+     */
+    private static List<int[]> rank() {
+        List<int[]> list = new ArrayList<>(usage.size());
+        for (int i = 0, l = usage.size(); i < l; i ++) {
+            list.add(new int[] {usage.keyAt(i), usage.valueAt(i)});
+        }
+        Collections.sort(list, new Comparator<int[]>() {
+            @Override
+            public int compare(int[] o1, int[] o2) {
+                return o2[1] < o1[1] ? -1 : (o2[1] == o1[1] ? 0 : 1);
+            }
+        });
+        while (list.size() > MAX_RECORD_SIZE) {
+            usage.delete(list.remove(list.size() - 1)[0]);
+        }
+        return list;
+    }
+
+    /**
+     * 格式为"资源名=次数"，用换行分隔
+     */
+    private static void readUsage(Resources resources, String saved) {
+        if (TextUtils.isEmpty(saved))
+            return;
+        for (String line : saved.split("\n")) {
+            final int index = line.lastIndexOf('=');
+            if (index <= 0)
+                continue;
+            final int res = resources.getIdentifier(line.substring(0, index), null, null);
+            if (res == 0)
+                continue;
+            try {
+                usage.put(res, usage.get(res) + Integer.parseInt(line.substring(index + 1)));
+            } catch (NumberFormatException ignore) {
+            }
+        }
+    }
+
+    private static String writeUsage(Resources resources, List<int[]> ranking) {
+        StringBuilder sb = new StringBuilder();
+        for (int[] item : ranking) {
+            final String name;
+            try {
+                name = resources.getResourceName(item[0]);
+            } catch (Resources.NotFoundException e) {
+                continue;
+            }
+            if (sb.length() > 0)
+                sb.append('\n');
+            sb.append(name).append('=').append(item[1]);
+        }
+        return sb.toString();
+    }
+}
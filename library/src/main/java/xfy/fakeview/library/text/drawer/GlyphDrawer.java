@@ -0,0 +1,235 @@
+package xfy.fakeview.library.text.drawer;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.TextPaint;
+import android.util.SparseArray;
+
+import java.lang.reflect.Method;
+
+/**
+ * Created by XiongFangyu on 2018/4/20.
+ *
+ * API 31及以上使用TextRunShaper排版一次，保存glyph id及位置，之后使用Canvas.drawGlyphs直接绘制，
+ * 不变的文字不需要每次drawText时重新排版
+ * compileSdk低于31，通过反射调用；默认关闭，低版本或反射失败时使用drawText
+ * 逐个glyph的反射调用只在排版时进行，绘制时使用排版时生成的参数，每段相同字体调用一次drawGlyphs
+ *
+ * 排版结果保存在文本block的{@link GlyphCache}中，每行文字第一次绘制时排版，
+ * 每行一个，以行首位置为key，文字范围及影响排版的paint属性相同时使用
+ * 有下划线、删除线(drawGlyphs不绘制)或从右向左的文字时使用drawText
+ */
+public class GlyphDrawer {
+    private static final int MIN_SDK = 31;
+    //drawGlyphs参数中paint的位置
+    private static final int DRAW_ARG_PAINT = 6;
+
+    private static boolean enabled;
+    private static boolean reflected;
+    private static Method shapeTextRun;
+    private static Method glyphCount;
+    private static Method getGlyphId;
+    private static Method getGlyphX;
+    private static Method getGlyphY;
+    private static Method getFont;
+    private static Method drawGlyphs;
+
+    private GlyphDrawer() {}
+
+    /**
+     * 是否使用drawGlyphs绘制，默认关闭，只在API 31及以上生效
+     * 需在主线程设置
+     */
+    public static void setEnabled(boolean enabled) {
+        GlyphDrawer.enabled = enabled;
+    }
+
+    /**
+     * @return 已开启且当前系统支持
+     */
+    public static boolean isEnabled() {
+        return enabled && isAvailable();
+    }
+
+    private static boolean isAvailable() {
+        if (!reflected) {
+            reflected = true;
+            if (Build.VERSION.SDK_INT >= MIN_SDK) {
+                try {
+                    Class<?> shaper = Class.forName("android.graphics.text.TextRunShaper");
+                    Class<?> glyphs = Class.forName("android.graphics.text.PositionedGlyphs");
+                    Class<?> font = Class.forName("android.graphics.fonts.Font");
+                    shapeTextRun = shaper.getMethod("shapeTextRun", CharSequence.class, int.class, int.class,
+                            int.class, int.class, float.class, float.class, boolean.class, Paint.class);
+                    glyphCount = glyphs.getMethod("glyphCount");
+                    getGlyphId = glyphs.getMethod("getGlyphId", int.class);
+                    getGlyphX = glyphs.getMethod("getGlyphX", int.class);
+                    getGlyphY = glyphs.getMethod("getGlyphY", int.class);
+                    getFont = glyphs.getMethod("getFont", int.class);
+                    drawGlyphs = Canvas.class.getMethod("drawGlyphs", int[].class, int.class, float[].class,
+                            int.class, int.class, font, Paint.class);
+                } catch (Throwable e) {
+                    drawGlyphs = null;
+                }
+            }
+        }
+        return drawGlyphs != null;
+    }
+
+    /**
+     * 绘制text中[start, end)的文字，cache为空或不能使用drawGlyphs时使用drawText
+     * @param cache  文本block的排版缓存
+     * @param offset text在block文本中的位置
+     */
+    public static void drawText(@NonNull Canvas canvas, @NonNull CharSequence text, int start, int end,
+                                float x, float y, @NonNull TextPaint paint, @Nullable GlyphCache cache, int offset) {
+        if (cache == null || end <= start || !isEnabled()
+                || paint.isUnderlineText() || paint.isStrikeThruText()) {
+            canvas.drawText(text, start, end, x, y, paint);
+            return;
+        }
+        GlyphRun run = cache.get(offset + start, offset + end, paint);
+        if (run == null) {
+            run = shape(text, start, end, offset, paint);
+            cache.put(run);
+        }
+        if (run.glyphIds == null || !drawRun(canvas, run, x, y, paint)) {
+            canvas.drawText(text, start, end, x, y, paint);
+        }
+    }
+
+    private static GlyphRun shape(CharSequence text, int start, int end, int offset, TextPaint paint) {
+        GlyphRun run = new GlyphRun(offset + start, offset + end, paint);
+        for (int i = start; i < end; i ++) {
+            final byte d = Character.getDirectionality(text.charAt(i));
+            if (d == Character.DIRECTIONALITY_RIGHT_TO_LEFT || d == Character.DIRECTIONALITY_RIGHT_TO_LEFT_ARABIC)
+                return run;
+        }
+        try {
+            final int count = end - start;
+            Object glyphs = shapeTextRun.invoke(null, text, start, count, start, count, 0f, 0f, false, paint);
+            final int n = (Integer) glyphCount.invoke(glyphs);
+            int[] ids = new int[n];
+            float[] positions = new float[n << 1];
+            Object[] fonts = new Object[n];
+            int[] fontStarts = new int[n + 1];
+            int fontCount = 0;
+            Object lastFont = null;
+            //每个glyph的4次调用共用参数数组
+            final Object[] index = new Object[1];
+            for (int i = 0; i < n; i ++) {
+                index[0] = i;
+                ids[i] = (Integer) getGlyphId.invoke(glyphs, index);
+                positions[i << 1] = (Float) getGlyphX.invoke(glyphs, index);
+                positions[(i << 1) + 1] = (Float) getGlyphY.invoke(glyphs, index);
+                Object font = getFont.invoke(glyphs, index);
+                if (i == 0 || !font.equals(lastFont)) {
+                    fonts[fontCount] = font;
+                    fontStarts[fontCount] = i;
+                    fontCount ++;
+                    lastFont = font;
+                }
+            }
+            fontStarts[fontCount] = n;
+            //drawGlyphs(glyphIds, glyphIdOffset, positions, positionOffset, glyphCount, font, paint)
+            Object[][] drawArgs = new Object[fontCount][];
+            for (int i = 0; i < fontCount; i ++) {
+                final int s = fontStarts[i];
+                drawArgs[i] = new Object[] {ids, s, positions, s << 1, fontStarts[i + 1] - s, fonts[i], null};
+            }
+            run.drawArgs = drawArgs;
+            run.glyphIds = ids;
+        } catch (Throwable ignore) {
+        }
+        return run;
+    }
+
+    private static boolean drawRun(Canvas canvas, GlyphRun run, float x, float y, Paint paint) {
+        canvas.save();
+        canvas.translate(x, y);
+        try {
+            for (Object[] args : run.drawArgs) {
+                args[DRAW_ARG_PAINT] = paint;
+                try {
+                    drawGlyphs.invoke(canvas, args);
+                } finally {
+                    args[DRAW_ARG_PAINT] = null;
+                }
+            }
+            return true;
+        } catch (Throwable e) {
+            //绘制失败后此run不再使用drawGlyphs
+            run.glyphIds = null;
+            return false;
+        } finally {
+            canvas.restore();
+        }
+    }
+
+    /**
+     * 一个文本block中各行文字的排版结果，每行一个，以行首在block文本中的位置为key
+     * 宽度或paint改变时同一行首的结果被替换；同一个block被不同宽度的view绘制时，
+     * 超过{@link #MAX_SIZE}行后清空
+     */
+    public static final class GlyphCache {
+        private static final int MAX_SIZE = 256;
+
+        private final SparseArray<GlyphRun> runs = new SparseArray<>();
+
+        GlyphRun get(int start, int end, TextPaint paint) {
+            final GlyphRun run = runs.get(start);
+            return run != null && run.matches(start, end, paint) ? run : null;
+        }
+
+        void put(GlyphRun run) {
+            if (runs.size() >= MAX_SIZE && runs.indexOfKey(run.start) < 0)
+                runs.clear();
+            runs.put(run.start, run);
+        }
+
+        public int size() {
+            return runs.size();
+        }
+    }
+
+    static final class GlyphRun {
+        final int start;
+        final int end;
+        final float textSize;
+        final float textSkewX;
+        final float textScaleX;
+        final float letterSpacing;
+        final Typeface typeface;
+        final int flags;
+
+        //为null时此段文字使用drawText
+        int[] glyphIds;
+        //每段相同字体的drawGlyphs参数，包含glyph id，每个glyph相对于绘制起点的x, y及字体，paint绘制时设置
+        Object[][] drawArgs;
+
+        GlyphRun(int start, int end, TextPaint paint) {
+            this.start = start;
+            this.end = end;
+            this.textSize = paint.getTextSize();
+            this.textSkewX = paint.getTextSkewX();
+            this.textScaleX = paint.getTextScaleX();
+            this.letterSpacing = Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP ? paint.getLetterSpacing() : 0;
+            this.typeface = paint.getTypeface();
+            this.flags = paint.getFlags();
+        }
+
+        boolean matches(int start, int end, TextPaint paint) {
+            return this.start == start && this.end == end
+                    && textSize == paint.getTextSize()
+                    && typeface == paint.getTypeface()
+                    && flags == paint.getFlags()
+                    && textSkewX == paint.getTextSkewX()
+                    && textScaleX == paint.getTextScaleX()
+                    && (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP || letterSpacing == paint.getLetterSpacing());
+        }
+    }
+}
@@ -68,7 +68,11 @@ public class TextDrawableDrawer {
     }
 
     public Drawable getSpecialDrawable(@DrawableRes int res, int drawableHeight) {
-        return getSpecialDrawable(getResources().getDrawable(res), drawableHeight, false);
+        EmojiPreloader.record(res);
+        //已预加载时不需要在主线程解码
+        final Drawable.ConstantState state = EmojiPreloader.getPreloaded(res);
+        final Drawable drawable = state != null ? state.newDrawable(getResources()) : getResources().getDrawable(res);
+        return getSpecialDrawable(drawable, drawableHeight, false);
     }
 
     public Drawable getSpecialDrawable(Drawable drawable, int drawableHeight, boolean forceNewDrawable) {
@@ -106,12 +110,19 @@ public class TextDrawableDrawer {
             TextDrawer.drawNextLine(canvas, variableParams, immutableParams);
         }
 
-        canvas.save();
-        float scale = measureDrawableScale(drawable, dh);
-        canvas.translate(variableParams.currentLeft, variableParams.currentTop);
-        canvas.scale(scale, scale);
-        drawable.draw(canvas);
-        canvas.restore();
+        final int l = variableParams.currentLeft;
+        final int t = variableParams.currentTop;
+        if (variableParams.drawableRects != null)
+            variableParams.drawableRects.add(drawable, l, t, l + dw, t + dh);
+        //局部刷新时跳过不在刷新区域中的图片
+        if (!canvas.quickReject(l, t, l + dw, t + dh, Canvas.EdgeType.AA)) {
+            canvas.save();
+            float scale = measureDrawableScale(drawable, dh);
+            canvas.translate(l, t);
+            canvas.scale(scale, scale);
+            drawable.draw(canvas);
+            canvas.restore();
+        }
         variableParams.currentLeft += dw;
     }
 
@@ -9,13 +9,14 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.text.TextPaint;
 import android.text.TextUtils;
-import android.util.Log;
 
 import xfy.fakeview.library.text.block.BlockMeasureParams;
 import xfy.fakeview.library.text.block.IDrawableBlockList;
+import xfy.fakeview.library.text.block.MeasureProgress;
 import xfy.fakeview.library.text.param.ImmutableParams;
 import xfy.fakeview.library.text.param.SpecialStyleParams;
 import xfy.fakeview.library.text.param.VariableParams;
+import xfy.fakeview.library.text.utils.LineBreakUtils;
 import xfy.fakeview.library.text.utils.LineUtils;
 import xfy.fakeview.library.text.utils.MeasureTextUtils;
 
@@ -23,12 +24,14 @@ import xfy.fakeview.library.text.utils.MeasureTextUtils;
  * Created by XiongFangyu on 2018/2/9.
  */
 public class TextDrawer {
-    private static final String TAG = "Fake--TextDrawer";
-    private static Paint.FontMetricsInt fontMetricsInt;
+    //批量计算时在多个线程中使用，每个线程一个
+    private static final ThreadLocal<Paint.FontMetricsInt> fontMetricsInt = new ThreadLocal<>();
     private static boolean DEBUG = false;
     private static Paint debugPaint;
 
     public static final String ELLIPSIZE_TEXT = "...";
+    //限时计算时每段估算的行数
+    private static final int MEASURE_SEGMENT_LINES = 16;
 
     public static void setDebug(boolean debug) {
         DEBUG = debug;
@@ -49,10 +52,12 @@ public class TextDrawer {
     }
 
     private static Paint.FontMetricsInt getFontMetricsInt() {
-        if (fontMetricsInt == null) {
-            fontMetricsInt = new Paint.FontMetricsInt();
+        Paint.FontMetricsInt fm = fontMetricsInt.get();
+        if (fm == null) {
+            fm = new Paint.FontMetricsInt();
+            fontMetricsInt.set(fm);
         }
-        return fontMetricsInt;
+        return fm;
     }
 
     /**
@@ -67,6 +72,25 @@ public class TextDrawer {
     public static void drawText(Canvas canvas, CharSequence text,
                                 @NonNull VariableParams variableParams, @NonNull ImmutableParams immutableParams,
                                 @Nullable SpecialStyleParams styleParams) {
+        drawText(canvas, text, null, variableParams, immutableParams, styleParams);
+    }
+
+    /**
+     * 按可换行位置绘制纯文本，和{@link MeasureTextUtils#measureText(long, int, int, float[], CharSequence, long[])}规则相同
+     * @param breaks 可换行位置 {@link LineBreakUtils#computeBreaks(CharSequence)}，为null时按字符换行
+     */
+    public static void drawText(Canvas canvas, CharSequence text, @Nullable long[] breaks,
+                                @NonNull VariableParams variableParams, @NonNull ImmutableParams immutableParams,
+                                @Nullable SpecialStyleParams styleParams) {
+        drawText(canvas, text, breaks, variableParams, immutableParams, styleParams, null);
+    }
+
+    /**
+     * @param glyphCache 文本block的排版缓存，不为空且{@link GlyphDrawer#isEnabled()}时使用drawGlyphs绘制
+     */
+    public static void drawText(Canvas canvas, CharSequence text, @Nullable long[] breaks,
+                                @NonNull VariableParams variableParams, @NonNull ImmutableParams immutableParams,
+                                @Nullable SpecialStyleParams styleParams, @Nullable GlyphDrawer.GlyphCache glyphCache) {
         final TextPaint textPaint = immutableParams.paint;
         final int oldFColor = textPaint.getColor();
         final boolean oldUnderline = textPaint.isUnderlineText();
@@ -89,17 +113,40 @@ public class TextDrawer {
         final int right = immutableParams.right;
         final TextUtils.TruncateAt ellipsize = immutableParams.truncateAt;
         boolean drawError = false;
+        //text在原文本中的位置
+        int offset = 0;
         while (textWidth + variableParams.currentLeft > right) {
             final int maxWidth = getDrawMaxWidthFronNow(variableParams, immutableParams);
             final int rmw = maxWidth < 0 ? -maxWidth : maxWidth;
             breakPoint = textPaint.breakText(text, 0, text.length(), true,
                     rmw, null);
+            int nextStart = breakPoint;
+            int backWidth = rmw;
+            if (breaks != null && !(maxWidth < 0 && ellipsize == TextUtils.TruncateAt.END)) {
+                if (breakPoint < text.length() && Character.isWhitespace(text.charAt(breakPoint))) {
+                    //行尾空白字符不绘制
+                    nextStart = breakPoint + 1;
+                } else {
+                    final int b = LineBreakUtils.lastBreak(breaks, offset, offset + breakPoint);
+                    if (b >= 0) {
+                        breakPoint = b - offset;
+                    } else if (offset == 0 && variableParams.currentLeft > immutableParams.left) {
+                        //整个单词移到下一行
+                        breakPoint = 0;
+                    }
+                    nextStart = breakPoint;
+                }
+                backWidth = (int) Math.ceil(textPaint.measureText(text, 0, breakPoint));
+            }
 
             if (backPaint != null) {
-                drawBack(canvas, backPaint, rmw, variableParams, immutableParams);
+                drawBack(canvas, backPaint, backWidth, variableParams, immutableParams);
             }
+            drawHighlight(canvas, textPaint, text, breakPoint, offset, variableParams, immutableParams);
 
-            canvas.drawText(text, 0, breakPoint, variableParams.currentLeft, variableParams.currentBaseline, textPaint);
+            if (!quickReject(canvas, backWidth, variableParams, immutableParams))
+                GlyphDrawer.drawText(canvas, text, 0, breakPoint, variableParams.currentLeft, variableParams.currentBaseline,
+                        textPaint, glyphCache, offset);
             if (maxWidth < 0 && ellipsize == TextUtils.TruncateAt.END) {
                 variableParams.currentLeft += (int) Math.ceil(textPaint.measureText(text, 0, breakPoint));
 
@@ -120,7 +167,8 @@ public class TextDrawer {
                 break;
             }
             toNewDrawLine(variableParams, immutableParams);
-            text = text.subSequence(breakPoint, text.length());
+            text = text.subSequence(nextStart, text.length());
+            offset += nextStart;
             textWidth = (int) Math.ceil(textPaint.measureText(text, 0, text.length()));
         }
 
@@ -128,7 +176,10 @@ public class TextDrawer {
             if (backPaint != null) {
                 drawBack(canvas, backPaint, textWidth, variableParams, immutableParams);
             }
-            canvas.drawText(text, 0, text.length(), variableParams.currentLeft, variableParams.currentBaseline, textPaint);
+            drawHighlight(canvas, textPaint, text, text.length(), offset, variableParams, immutableParams);
+            if (!quickReject(canvas, textWidth, variableParams, immutableParams))
+                GlyphDrawer.drawText(canvas, text, 0, text.length(), variableParams.currentLeft, variableParams.currentBaseline,
+                        textPaint, glyphCache, offset);
             variableParams.currentLeft += textWidth;
         }
 
@@ -139,12 +190,7 @@ public class TextDrawer {
 
     private static void drawBack(@NonNull Canvas canvas, @NonNull TextPaint backPaint, int width,
                                  @NonNull VariableParams variableParams, @NonNull ImmutableParams immutableParams) {
-        final int[] linesHeight = immutableParams.lineInfos;
-        int lh = 0;
-        if (linesHeight != null) {
-            lh = LineUtils.getLineHeight(linesHeight, variableParams.currentDrawLine);
-        }
-        lh = lh < 0 ? 0 : lh;
+        final int lh = getCurrentLineHeight(variableParams, immutableParams);
         final int oldColor = backPaint.getColor();
         backPaint.setColor(backPaint.bgColor);
         canvas.drawRect(variableParams.currentLeft, variableParams.currentTop,
@@ -152,6 +198,52 @@ public class TextDrawer {
         backPaint.setColor(oldColor);
     }
 
+    /**
+     * 绘制text中[0, end)与高亮范围相交部分的背景
+     * @param offset text在block文本中的位置
+     */
+    private static void drawHighlight(@NonNull Canvas canvas, @NonNull TextPaint textPaint, CharSequence text, int end, int offset,
+                                      @NonNull VariableParams variableParams, @NonNull ImmutableParams immutableParams) {
+        final int[] highlights = variableParams.highlights;
+        if (highlights == null || end <= 0)
+            return;
+        final int start = variableParams.currentCharIndex + offset;
+        int lh = -1;
+        for (int i = 0, l = highlights.length - 1; i < l; i += 2) {
+            final int hs = Math.max(highlights[i], start);
+            final int he = Math.min(highlights[i + 1], start + end);
+            if (hs >= he)
+                continue;
+            if (lh < 0)
+                lh = getCurrentLineHeight(variableParams, immutableParams);
+            final float l0 = variableParams.currentLeft + (hs == start ? 0 : textPaint.measureText(text, 0, hs - start));
+            final float r0 = variableParams.currentLeft + textPaint.measureText(text, 0, he - start);
+            canvas.drawRect(l0, variableParams.currentTop, r0, variableParams.currentTop + lh, variableParams.highlightPaint);
+        }
+    }
+
+    /**
+     * 当前行中宽为width的文字是否在canvas的绘制区域外，局部刷新时跳过
+     */
+    private static boolean quickReject(@NonNull Canvas canvas, int width,
+                                       @NonNull VariableParams variableParams, @NonNull ImmutableParams immutableParams) {
+        final int lh = getCurrentLineHeight(variableParams, immutableParams);
+        if (lh <= 0 || width <= 0)
+            return false;
+        final int l = variableParams.currentLeft;
+        final int t = variableParams.currentTop;
+        return canvas.quickReject(l, t, l + width, t + lh, Canvas.EdgeType.AA);
+    }
+
+    private static int getCurrentLineHeight(@NonNull VariableParams variableParams, @NonNull ImmutableParams immutableParams) {
+        final int[] linesHeight = immutableParams.lineInfos;
+        int lh = 0;
+        if (linesHeight != null) {
+            lh = LineUtils.getLineHeight(linesHeight, variableParams.currentDrawLine);
+        }
+        return lh < 0 ? 0 : lh;
+    }
+
     private static void setPaintByStyleParams(@NonNull TextPaint paint, @NonNull SpecialStyleParams params) {
         if (params.hasFColor)
             paint.setColor(params.foregroundColor);
@@ -335,6 +427,77 @@ public class TextDrawer {
         return flag;
     }
 
+    /**
+     * 按可换行位置计算纯文本的所占长度和行数
+     * @param breaks 可换行位置 {@link LineBreakUtils#computeBreaks(CharSequence)}，为null时按字符换行
+     * @see MeasureTextUtils#measureText(long, int, int, float[], CharSequence, long[])
+     */
+    public static long measureText(TextPaint textPaint, CharSequence text, @Nullable long[] breaks, int currentLeft, int left, int right) {
+        if (breaks == null)
+            return measureText(textPaint, text, currentLeft, left, right, 0);
+        long flag = MeasureTextUtils.setLines(MeasureTextUtils.setCurrentLeft(0, currentLeft), 1);
+        final float[] widths = new float[text.length()];
+        textPaint.getTextWidths(text.toString(), widths);
+        return MeasureTextUtils.measureText(flag, left, right, widths, text, breaks);
+    }
+
+    /**
+     * 行数达到measureParams.lineBudget时停止计算，只计算可能显示的前面部分字符
+     * 停止时计算过的字符数保存到measureParams.measuredLength
+     * 限时计算(measureParams.progress不为null)时分段计算，每段结束时检查是否超时，超时时保存最后一个行首的位置
+     * 每段按最窄字符(约文字大小的1/4)估算字符数，没有完整的行时加倍
+     */
+    public static long measureText(TextPaint textPaint, CharSequence text, @Nullable long[] breaks, int currentLeft,
+                                   int left, int right, @NonNull BlockMeasureParams measureParams) {
+        final int len = text.length();
+        final int lineBudget = measureParams.lineBudget;
+        final MeasureProgress progress = measureParams.progress;
+        final long deadline = progress != null ? measureParams.deadline : 0;
+        measureParams.measuredLength = -1;
+        if ((lineBudget <= 0 && deadline <= 0) || len == 0)
+            return measureText(textPaint, text, breaks, currentLeft, left, right);
+        final float minCharWidth = Math.max(1f, textPaint.getTextSize() / 4);
+        final long lineChars = (long) ((right - left) / minCharWidth) + 1;
+        int count = (int) Math.min(len, lineChars * (lineBudget > 0 ? lineBudget : MEASURE_SEGMENT_LINES));
+        int start = 0;
+        long flag;
+        if (progress != null && progress.resumeText()) {
+            start = progress.getTextOffset();
+            flag = progress.getTextFlag();
+        } else {
+            flag = MeasureTextUtils.setLines(MeasureTextUtils.setCurrentLeft(0, currentLeft), 1);
+        }
+        final long[] lastLine = new long[2];
+        while (true) {
+            int end = (int) Math.min(len, (long) start + count);
+            if (end < len && Character.isHighSurrogate(text.charAt(end - 1)))
+                end ++;
+            final float[] widths = new float[end - start];
+            textPaint.getTextWidths(text, start, end, widths);
+            final long result = MeasureTextUtils.measureText(flag, left, right, widths, text, breaks, lineBudget, start, lastLine);
+            if (MeasureTextUtils.getState(result) != MeasureTextUtils.STATE_SUCCESS)
+                return result;
+            if (lineBudget > 0 && MeasureTextUtils.getLines(result) >= lineBudget) {
+                if (end < len)
+                    measureParams.measuredLength = end;
+                return result;
+            }
+            if (end == len)
+                return result;
+            //最后一行可能受之后的字符影响，从最后一行开始继续
+            if (lastLine[0] <= start) {
+                count = (int) Math.min(len, (long) count << 1);
+                continue;
+            }
+            start = (int) lastLine[0];
+            flag = lastLine[1];
+            if (deadline > 0 && System.nanoTime() >= deadline) {
+                progress.saveText(start, flag);
+                return MeasureTextUtils.setState(flag, MeasureTextUtils.STATE_TIMEOUT);
+            }
+        }
+    }
+
     public static long measureFixWidth(int width, int currentLeft, int left, int right) {
         long flag = MeasureTextUtils.setLines(MeasureTextUtils.setCurrentLeft(0, currentLeft), 1);
         if (currentLeft + width > right) {
@@ -348,15 +511,58 @@ public class TextDrawer {
         if (!list.hasDrawable()) {
             drawableSize = 0;
         }
+        return measureText(immutableParams, list, getLineInfo(immutableParams.paint, drawableSize, includePad),
+                drawableSize, currentLeft, left, right, includePad, forceMeasure);
+    }
+
+    /**
+     * 使用已计算好的行信息计算
+     * @param lineInfo 行高及baseline
+     *                 @see #getLineInfo(Paint.FontMetricsInt, int, boolean)
+     */
+    public static long measureText(@NonNull ImmutableParams immutableParams, IDrawableBlockList list, int lineInfo, int drawableSize,
+                                   int currentLeft, int left, int right, boolean includePad, boolean forceMeasure) {
+        return measureText(immutableParams, list, lineInfo, drawableSize, currentLeft, left, right, includePad, forceMeasure, 0, null);
+    }
+
+    /**
+     * 计算到maxLines + 1行时停止，结果行数大于maxLines表示需要省略
+     * @param maxLines 小于等于0或Integer.MAX_VALUE表示不限制
+     */
+    public static long measureText(@NonNull ImmutableParams immutableParams, IDrawableBlockList list, int lineInfo, int drawableSize,
+                                   int currentLeft, int left, int right, boolean includePad, boolean forceMeasure, int maxLines) {
+        return measureText(immutableParams, list, lineInfo, drawableSize, currentLeft, left, right, includePad, forceMeasure, 0, null, maxLines);
+    }
+
+    /**
+     * 限时计算，超时返回{@link MeasureTextUtils#STATE_TIMEOUT}，计算进度保存在progress中
+     * @param deadline System.nanoTime()截止时间，0表示不限制
+     * @param progress 计算进度，有未完成的计算时从保存的位置继续；为null时不限时
+     */
+    public static long measureText(@NonNull ImmutableParams immutableParams, IDrawableBlockList list, int lineInfo, int drawableSize,
+                                   int currentLeft, int left, int right, boolean includePad, boolean forceMeasure,
+                                   long deadline, @Nullable MeasureProgress progress) {
+        return measureText(immutableParams, list, lineInfo, drawableSize, currentLeft, left, right, includePad, forceMeasure, deadline, progress, 0);
+    }
+
+    /**
+     * @param maxLines 计算到maxLines + 1行时停止，小于等于0或Integer.MAX_VALUE表示不限制
+     */
+    public static long measureText(@NonNull ImmutableParams immutableParams, IDrawableBlockList list, int lineInfo, int drawableSize,
+                                   int currentLeft, int left, int right, boolean includePad, boolean forceMeasure,
+                                   long deadline, @Nullable MeasureProgress progress, int maxLines) {
         BlockMeasureParams params = BlockMeasureParams.obtain()
-                .setLineInfo(getLineInfo(immutableParams.paint, drawableSize, includePad))
+                .setLineInfo(lineInfo)
                 .setDrawableSize(drawableSize)
                 .setCurrentLeft(currentLeft)
                 .setCurrentTop(0)
                 .setLeft(left)
                 .setRight(right)
                 .setIncludePad(includePad)
-                .setForceMeasure(forceMeasure);
+                .setForceMeasure(forceMeasure)
+                .setDeadline(deadline)
+                .setProgress(progress)
+                .setLineBudget(maxLines <= 0 || maxLines == Integer.MAX_VALUE ? 0 : maxLines + 1);
         return list.measure(params, immutableParams);
     }
 
@@ -370,6 +576,10 @@ public class TextDrawer {
     public static int getLineInfo(TextPaint paint, int drawableSize, boolean includePad) {
         Paint.FontMetricsInt fontMetricsInt = getFontMetricsInt();
         paint.getFontMetricsInt(fontMetricsInt);
+        return getLineInfo(fontMetricsInt, drawableSize, includePad);
+    }
+
+    public static int getLineInfo(Paint.FontMetricsInt fontMetricsInt, int drawableSize, boolean includePad) {
         int top = getFontHeightCalTop(fontMetricsInt, includePad);
         int bot = getFontHeightCalBottom(fontMetricsInt, includePad);
         int fh = bot - top;
@@ -402,14 +612,4 @@ public class TextDrawer {
     public static int getEllipsizeLength(TextPaint paint, String ellipsizeText) {
         return (int) Math.ceil(paint.measureText(ellipsizeText));
     }
-
-    private static long nano() {
-        return System.nanoTime();
-    }
-
-    private static long logCast(String pre, long start) {
-        long nano = nano();
-        Log.d(TAG, pre + (nano - start));
-        return nano;
-    }
 }
@@ -0,0 +1,144 @@
+package xfy.fakeview.library.text.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Created by XiongFangyu on 2018/4/20.
+ *
+ * 无锁直方图，记录非负数值(如纳秒耗时)，可在多个线程中同时记录
+ * 小于8的值每个值一个桶，之后每个2的幂区间分为4个桶，相对误差不超过25%
+ * 记录只有几次原子加操作，不分配内存
+ */
+public final class Histogram {
+    private static final int LINEAR = 8;
+    private static final int SUB_BITS = 2;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    //log2(LINEAR)
+    private static final int FIRST_EXP = 3;
+    static final int BUCKET_COUNT = LINEAR + (63 - FIRST_EXP) * SUB_COUNT;
+
+    private final String name;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public Histogram(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @param value 小于0时按0记录
+     */
+    public void record(long value) {
+        if (value < 0)
+            value = 0;
+        buckets.incrementAndGet(indexOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long m;
+        while (value > (m = max.get())) {
+            if (max.compareAndSet(m, value))
+                break;
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * 复制当前数据，复制过程中的记录可能只有部分被包含
+     * @param reset 复制后是否清空
+     */
+    public Snapshot snapshot(boolean reset) {
+        final long[] copy = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i ++) {
+            copy[i] = reset ? buckets.getAndSet(i, 0) : buckets.get(i);
+        }
+        if (reset) {
+            return new Snapshot(name, copy, count.getAndSet(0), sum.getAndSet(0), max.getAndSet(0));
+        }
+        return new Snapshot(name, copy, count.get(), sum.get(), max.get());
+    }
+
+    public void reset() {
+        snapshot(true);
+    }
+
+    static int indexOf(long value) {
+        if (value < LINEAR)
+            return (int) value;
+        final int exp = 63 - Long.numberOfLeadingZeros(value);
+        final int sub = (int) (value >>> (exp - SUB_BITS)) & (SUB_COUNT - 1);
+        return LINEAR + (exp - FIRST_EXP) * SUB_COUNT + sub;
+    }
+
+    /**
+     * @return 桶中最大值
+     */
+    static long upperBoundOf(int index) {
+        if (index < LINEAR)
+            return index;
+        final int exp = (index - LINEAR) / SUB_COUNT + FIRST_EXP;
+        final int sub = (index - LINEAR) % SUB_COUNT;
+        final long lower = (long) (SUB_COUNT + sub) << (exp - SUB_BITS);
+        return lower + (1L << (exp - SUB_BITS)) - 1;
+    }
+
+    /**
+     * 某一时刻直方图的不可变副本
+     */
+    public static final class Snapshot {
+        public final String name;
+        public final long count;
+        public final long sum;
+        public final long max;
+        private final long[] buckets;
+
+        Snapshot(String name, long[] buckets, long count, long sum, long max) {
+            this.name = name;
+            this.buckets = buckets;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getMean() {
+            return count == 0 ? 0 : sum / count;
+        }
+
+        /**
+         * @param percentile 0~100，如50，90，99
+         * @return 对应百分位所在桶的最大值，不超过{@link #max}
+         */
+        public long getPercentile(double percentile) {
+            long total = 0;
+            for (long b : buckets)
+                total += b;
+            if (total == 0)
+                return 0;
+            long target = (long) Math.ceil(total * Math.min(Math.max(percentile, 0), 100) / 100);
+            if (target < 1)
+                target = 1;
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i ++) {
+                seen += buckets[i];
+                if (seen >= target)
+                    return Math.min(upperBoundOf(i), max);
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return name + "{count=" + count + ", mean=" + getMean() + ", p50=" + getPercentile(50)
+                    + ", p90=" + getPercentile(90) + ", p99=" + getPercentile(99) + ", max=" + max + "}";
+        }
+    }
+}
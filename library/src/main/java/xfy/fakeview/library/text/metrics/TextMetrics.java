@@ -0,0 +1,151 @@
+package xfy.fakeview.library.text.metrics;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Created by XiongFangyu on 2018/4/20.
+ *
+ * 文字解析(compile)、计算(measure)、绘制(draw)各阶段的耗时统计，及解析缓存、layout缓存命中次数，
+ * 每段文字解析后的block数量
+ *
+ * 默认关闭，关闭时每次统计只有一次volatile读；开启后只有原子操作，不打log，不分配内存
+ * 调用{@link #report(boolean)}将数据交给{@link Reporter}，可在子线程中定时调用并上报百分位数据
+ */
+public final class TextMetrics {
+    private static volatile boolean enabled = false;
+    private static volatile Reporter reporter;
+
+    //解析耗时，纳秒
+    public static final Histogram COMPILE = new Histogram("compile");
+    //计算耗时，纳秒
+    public static final Histogram MEASURE = new Histogram("measure");
+    //绘制耗时，纳秒
+    public static final Histogram DRAW = new Histogram("draw");
+    //每段文字解析出的block数量
+    public static final Histogram BLOCKS = new Histogram("blocks");
+
+    private static final AtomicLong compileCacheHit = new AtomicLong();
+    private static final AtomicLong compileCacheMiss = new AtomicLong();
+    private static final AtomicLong layoutCacheHit = new AtomicLong();
+    private static final AtomicLong layoutCacheMiss = new AtomicLong();
+
+    private TextMetrics() {}
+
+    public static void setEnabled(boolean enable) {
+        enabled = enable;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setReporter(@Nullable Reporter r) {
+        reporter = r;
+    }
+
+    /**
+     * @return 开启时返回当前纳秒时间，否则返回0，和{@link #recordCompile(long)}等方法配合使用
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public static void recordCompile(long start) {
+        if (start != 0 && enabled)
+            COMPILE.record(System.nanoTime() - start);
+    }
+
+    public static void recordMeasure(long start) {
+        if (start != 0 && enabled)
+            MEASURE.record(System.nanoTime() - start);
+    }
+
+    public static void recordDraw(long start) {
+        if (start != 0 && enabled)
+            DRAW.record(System.nanoTime() - start);
+    }
+
+    public static void recordBlockCount(int count) {
+        if (enabled)
+            BLOCKS.record(count);
+    }
+
+    public static void compileCache(boolean hit) {
+        if (enabled)
+            (hit ? compileCacheHit : compileCacheMiss).incrementAndGet();
+    }
+
+    public static void layoutCache(boolean hit) {
+        if (enabled)
+            (hit ? layoutCacheHit : layoutCacheMiss).incrementAndGet();
+    }
+
+    /**
+     * 获取当前数据
+     * @param reset 是否清空已统计的数据，定时上报时使用
+     */
+    public static Snapshot snapshot(boolean reset) {
+        return new Snapshot(COMPILE.snapshot(reset), MEASURE.snapshot(reset),
+                DRAW.snapshot(reset), BLOCKS.snapshot(reset),
+                get(compileCacheHit, reset), get(compileCacheMiss, reset),
+                get(layoutCacheHit, reset), get(layoutCacheMiss, reset));
+    }
+
+    /**
+     * 将当前数据交给{@link Reporter}，未设置reporter时不做任何事
+     * @param reset 是否清空已统计的数据
+     */
+    public static void report(boolean reset) {
+        final Reporter r = reporter;
+        if (r == null)
+            return;
+        r.report(snapshot(reset));
+    }
+
+    public static void reset() {
+        snapshot(true);
+    }
+
+    private static long get(AtomicLong l, boolean reset) {
+        return reset ? l.getAndSet(0) : l.get();
+    }
+
+    public interface Reporter {
+        void report(@NonNull Snapshot snapshot);
+    }
+
+    public static final class Snapshot {
+        public final Histogram.Snapshot compile;
+        public final Histogram.Snapshot measure;
+        public final Histogram.Snapshot draw;
+        public final Histogram.Snapshot blocks;
+        public final long compileCacheHit;
+        public final long compileCacheMiss;
+        public final long layoutCacheHit;
+        public final long layoutCacheMiss;
+
+        Snapshot(Histogram.Snapshot compile, Histogram.Snapshot measure,
+                 Histogram.Snapshot draw, Histogram.Snapshot blocks,
+                 long compileCacheHit, long compileCacheMiss,
+                 long layoutCacheHit, long layoutCacheMiss) {
+            this.compile = compile;
+            this.measure = measure;
+            this.draw = draw;
+            this.blocks = blocks;
+            this.compileCacheHit = compileCacheHit;
+            this.compileCacheMiss = compileCacheMiss;
+            this.layoutCacheHit = layoutCacheHit;
+            this.layoutCacheMiss = layoutCacheMiss;
+        }
+
+        @Override
+        public String toString() {
+            return "TextMetrics{" + compile + ", " + measure + ", " + draw + ", " + blocks
+                    + ", compileCache=" + compileCacheHit + "/" + (compileCacheHit + compileCacheMiss)
+                    + ", layoutCache=" + layoutCacheHit + "/" + (layoutCacheHit + layoutCacheMiss) + "}";
+        }
+    }
+}
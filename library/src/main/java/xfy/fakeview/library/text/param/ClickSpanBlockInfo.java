@@ -1,6 +1,10 @@
 package xfy.fakeview.library.text.param;
 
+import android.graphics.Rect;
+
 import xfy.fakeview.library.text.block.IDrawableBlock;
+import xfy.fakeview.library.text.utils.LineUtils;
+import xfy.fakeview.library.text.utils.MeasureTextUtils;
 
 /**
  * Created by XiongFangyu on 2018/3/29.
@@ -9,15 +13,71 @@ public class ClickSpanBlockInfo {
     public IDrawableBlock block;
     public int blockLeft;
     public int blockTop;
+    //block第一行的行数，从0开始
+    public int blockLine;
     public long blockFlag;
 
-    public ClickSpanBlockInfo(IDrawableBlock block, int left, int top, long flag) {
+    public ClickSpanBlockInfo(IDrawableBlock block, int left, int top, int line, long flag) {
         this.block = block;
+        set(left, top, line, flag);
+    }
+
+    void set(int left, int top, int line, long flag) {
         blockLeft = left;
         blockTop = top;
+        blockLine = line;
         blockFlag = flag;
     }
 
+    public int getLines() {
+        return MeasureTextUtils.getLines(blockFlag);
+    }
+
+    /**
+     * block第line行所占区域，坐标和绘制时相同(不包含gravity平移)
+     * 行高及行的位置由{@link ImmutableParams#lineInfos}得出，和绘制时相同
+     * @return 没有此行时返回false
+     */
+    public boolean getLineRect(ImmutableParams params, int line, Rect out) {
+        final int lines = getLines();
+        final int[] lineInfos = params.lineInfos;
+        if (line < 0 || line >= lines || lineInfos == null)
+            return false;
+        final int index = blockLine + line;
+        final int h = LineUtils.getLineHeight(lineInfos, index);
+        if (h <= 0)
+            return false;
+        final int top = params.top + LineUtils.getAllLineHeight(lineInfos, index) + index * params.lineSpace;
+        final int left = line == 0 ? blockLeft : params.left;
+        final int right = line == lines - 1 ? MeasureTextUtils.getCurrentLeft(blockFlag) : params.right;
+        out.set(left, top, right, top + h);
+        return true;
+    }
+
+    /**
+     * block所有行所占区域
+     * @return 没有计算过时返回false
+     */
+    public boolean getBounds(ImmutableParams params, Rect out) {
+        final int lines = getLines();
+        if (!getLineRect(params, 0, out))
+            return false;
+        if (lines > 1) {
+            final int top = out.top;
+            int last = lines - 1;
+            //未绘制的行没有行高
+            while (last > 0 && !getLineRect(params, last, out)) {
+                last --;
+            }
+            out.top = top;
+            if (last > 0) {
+                out.left = params.left;
+                out.right = params.right;
+            }
+        }
+        return true;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
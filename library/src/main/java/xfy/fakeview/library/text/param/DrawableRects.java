@@ -0,0 +1,66 @@
+package xfy.fakeview.library.text.param;
+
+import android.graphics.Rect;
+
+/**
+ * Created by XiongFangyu on 2018/4/20.
+ *
+ * 绘制时记录的图片位置，图片刷新时只刷新其所在区域
+ * 坐标为绘制坐标，不包含gravity平移；每次绘制前清空，数组只在不够用时扩容
+ */
+public class DrawableRects {
+    private static final int DEFAULT_SIZE = 4;
+
+    private Object[] keys = new Object[DEFAULT_SIZE];
+    private int[] rects = new int[DEFAULT_SIZE << 2];
+    private int size;
+
+    public void clear() {
+        for (int i = 0; i < size; i ++) {
+            keys[i] = null;
+        }
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void add(Object key, int left, int top, int right, int bottom) {
+        if (size == keys.length) {
+            Object[] newKeys = new Object[size << 1];
+            System.arraycopy(keys, 0, newKeys, 0, size);
+            keys = newKeys;
+            int[] newRects = new int[size << 3];
+            System.arraycopy(rects, 0, newRects, 0, size << 2);
+            rects = newRects;
+        }
+        keys[size] = key;
+        final int i = size << 2;
+        rects[i] = left;
+        rects[i + 1] = top;
+        rects[i + 2] = right;
+        rects[i + 3] = bottom;
+        size ++;
+    }
+
+    /**
+     * 同一个图片可能绘制在多个位置，返回所有位置的并集
+     * @return 未绘制此图片时返回false
+     */
+    public boolean getBounds(Object key, Rect out) {
+        boolean found = false;
+        for (int i = 0; i < size; i ++) {
+            if (keys[i] != key)
+                continue;
+            final int j = i << 2;
+            if (found) {
+                out.union(rects[j], rects[j + 1], rects[j + 2], rects[j + 3]);
+            } else {
+                out.set(rects[j], rects[j + 1], rects[j + 2], rects[j + 3]);
+                found = true;
+            }
+        }
+        return found;
+    }
+}
@@ -44,15 +44,31 @@ public class ImmutableParams {
     public boolean translateByGravity = true;
     //ellipsize文案
     public String ellipsizeText = TextDrawer.ELLIPSIZE_TEXT;
-    //一个blocklist里所有的可点击的block
-    public ArrayList<ClickSpanBlockInfo> clickSpanBlockInfos = new ArrayList<>();
+    //一个blocklist里所有的可点击的block，没有可点击的block时为null
+    public ArrayList<ClickSpanBlockInfo> clickSpanBlockInfos;
+    //当前按下的可点击block，没有时为null
+    public ClickSpanBlockInfo pressedBlockInfo;
 
-    public void addClickSpanBlockInfo(IDrawableBlock block, int left, int top, long flag) {
-        if (!clickSpanBlockInfos.contains(block))
-            clickSpanBlockInfos.add(new ClickSpanBlockInfo(block, left, top, flag));
+    /**
+     * 添加或更新可点击block的位置，重新计算时更新
+     * @param line block第一行的行数，从0开始
+     */
+    public void addClickSpanBlockInfo(IDrawableBlock block, int left, int top, int line, long flag) {
+        if (clickSpanBlockInfos == null)
+            clickSpanBlockInfos = new ArrayList<>();
+        for (int i = 0, l = clickSpanBlockInfos.size(); i < l; i ++) {
+            ClickSpanBlockInfo info = clickSpanBlockInfos.get(i);
+            if (info.block == block) {
+                info.set(left, top, line, flag);
+                return;
+            }
+        }
+        clickSpanBlockInfos.add(new ClickSpanBlockInfo(block, left, top, line, flag));
     }
 
     public void clearClickBlockInfo() {
-        clickSpanBlockInfos.clear();
+        if (clickSpanBlockInfos != null)
+            clickSpanBlockInfos.clear();
+        pressedBlockInfo = null;
     }
 }
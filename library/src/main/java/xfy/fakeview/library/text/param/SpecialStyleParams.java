@@ -30,6 +30,9 @@ public class SpecialStyleParams {
     //文字大小
     public float textSize;
 
+    //被block引用的次数，为0时才放回缓存
+    private int useCount;
+
     private static final ArrayList<SpecialStyleParams> cache;
     private static final int DEFAULT_SIZE = 30;
 
@@ -64,7 +67,20 @@ public class SpecialStyleParams {
         return params.initBySpan(span);
     }
 
+    /**
+     * 被block引用时调用，同一个参数可能被多个block共用
+     */
+    public synchronized SpecialStyleParams use() {
+        useCount ++;
+        return this;
+    }
+
     public void recycle() {
+        synchronized (this) {
+            if (-- useCount > 0)
+                return;
+            useCount = 0;
+        }
         hasFColor = false;
         foregroundColor = 0;
         hasBColor = false;
@@ -85,6 +101,19 @@ public class SpecialStyleParams {
         return this;
     }
 
+    public SpecialStyleParams initByParams(SpecialStyleParams params) {
+        hasFColor = params.hasFColor;
+        foregroundColor = params.foregroundColor;
+        hasBColor = params.hasBColor;
+        backgroundColor = params.backgroundColor;
+        bold = params.bold;
+        underline = params.underline;
+        italic = params.italic;
+        hasTextSize = params.hasTextSize;
+        textSize = params.textSize;
+        return this;
+    }
+
     public SpecialStyleParams initBySpan(BaseSpan span) {
         hasFColor = span.isHasFColor();
         foregroundColor = span.getForegroundColor();
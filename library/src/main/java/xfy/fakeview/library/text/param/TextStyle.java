@@ -0,0 +1,213 @@
+package xfy.fakeview.library.text.param;
+
+import android.graphics.Color;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.support.annotation.NonNull;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.util.LruCache;
+
+import xfy.fakeview.library.text.drawer.TextDrawer;
+
+/**
+ * Created by XiongFangyu on 2018/4/13.
+ *
+ * 不可变的文字样式，相同样式的{@link xfy.fakeview.library.text.FTextDrawable}共用同一个对象
+ * 包含paint，字体信息，省略号长度，行信息
+ *
+ * 需要修改样式时使用with方法获取新的样式（copy-on-write），不可通过{@link #getPaint()}修改样式
+ * {@link #getPaint()}返回的paint只能在主线程中使用，计算或绘制时可临时修改(如文字大小)，但必须立即恢复；
+ * 其他线程中需使用{@link #newPaint()}
+ */
+public final class TextStyle {
+    private static final int CACHE_SIZE = 64;
+    private static final float DEFAULT_TEXT_SIZE = new TextPaint().getTextSize();
+    private static final LruCache<TextStyle, TextStyle> cache = new LruCache<>(CACHE_SIZE);
+
+    //文字大小
+    public final float textSize;
+    //文字颜色
+    public final int textColor;
+    //Typeface style，Typeface.BOLD Typeface.ITALIC
+    public final int typefaceStyle;
+    //是否有下划线
+    public final boolean underline;
+    //省略号文案
+    public final String ellipsizeText;
+    //不为空时，此样式不会被共用
+    public final ColorFilter colorFilter;
+
+    private TextPaint paint;
+    private Paint.FontMetricsInt fontMetrics;
+    private int ellipsizeLength;
+    private int lineInfoWithPad;
+    private int lineInfoWithoutPad;
+
+    private TextStyle(float textSize, int textColor, int typefaceStyle, boolean underline,
+                      String ellipsizeText, ColorFilter colorFilter) {
+        this.textSize = textSize;
+        this.textColor = textColor;
+        this.typefaceStyle = typefaceStyle;
+        this.underline = underline;
+        this.ellipsizeText = ellipsizeText == null ? TextDrawer.ELLIPSIZE_TEXT : ellipsizeText;
+        this.colorFilter = colorFilter;
+    }
+
+    public static TextStyle getDefault() {
+        return obtain(DEFAULT_TEXT_SIZE, Color.BLACK, Typeface.NORMAL, false, TextDrawer.ELLIPSIZE_TEXT);
+    }
+
+    /**
+     * 获取共用的样式
+     * @param textSize      px，小于等于0时使用默认大小
+     * @param textColor     文字颜色
+     * @param typefaceStyle Typeface.BOLD Typeface.ITALIC
+     * @param underline     下划线
+     * @param ellipsizeText 省略号文案
+     */
+    public static TextStyle obtain(float textSize, int textColor, int typefaceStyle, boolean underline, String ellipsizeText) {
+        if (textSize <= 0)
+            textSize = DEFAULT_TEXT_SIZE;
+        TextStyle key = new TextStyle(textSize, textColor, typefaceStyle, underline, ellipsizeText, null);
+        synchronized (cache) {
+            TextStyle result = cache.get(key);
+            if (result == null) {
+                result = key.init();
+                cache.put(result, result);
+            }
+            return result;
+        }
+    }
+
+    private static TextStyle obtain(float textSize, int textColor, int typefaceStyle, boolean underline,
+                                    String ellipsizeText, ColorFilter colorFilter) {
+        if (colorFilter == null)
+            return obtain(textSize, textColor, typefaceStyle, underline, ellipsizeText);
+        return new TextStyle(textSize, textColor, typefaceStyle, underline, ellipsizeText, colorFilter).init();
+    }
+
+    private TextStyle init() {
+        paint = newPaint();
+        fontMetrics = paint.getFontMetricsInt();
+        ellipsizeLength = TextDrawer.getEllipsizeLength(paint, ellipsizeText);
+        lineInfoWithPad = TextDrawer.getLineInfo(fontMetrics, 0, true);
+        lineInfoWithoutPad = TextDrawer.getLineInfo(fontMetrics, 0, false);
+        return this;
+    }
+
+    public TextStyle withTextSize(float textSize) {
+        if (this.textSize == textSize)
+            return this;
+        return obtain(textSize, textColor, typefaceStyle, underline, ellipsizeText, colorFilter);
+    }
+
+    public TextStyle withTextColor(int textColor) {
+        if (this.textColor == textColor)
+            return this;
+        return obtain(textSize, textColor, typefaceStyle, underline, ellipsizeText, colorFilter);
+    }
+
+    public TextStyle withAlpha(int alpha) {
+        return withTextColor((textColor & 0x00ffffff) | ((alpha & 0xff) << 24));
+    }
+
+    public TextStyle withTypefaceStyle(int typefaceStyle) {
+        if (this.typefaceStyle == typefaceStyle)
+            return this;
+        return obtain(textSize, textColor, typefaceStyle, underline, ellipsizeText, colorFilter);
+    }
+
+    public TextStyle withUnderline(boolean underline) {
+        if (this.underline == underline)
+            return this;
+        return obtain(textSize, textColor, typefaceStyle, underline, ellipsizeText, colorFilter);
+    }
+
+    public TextStyle withEllipsizeText(String ellipsizeText) {
+        if (TextUtils.equals(this.ellipsizeText, ellipsizeText))
+            return this;
+        return obtain(textSize, textColor, typefaceStyle, underline, ellipsizeText, colorFilter);
+    }
+
+    public TextStyle withColorFilter(ColorFilter colorFilter) {
+        if (this.colorFilter == colorFilter)
+            return this;
+        return obtain(textSize, textColor, typefaceStyle, underline, ellipsizeText, colorFilter);
+    }
+
+    /**
+     * @return 是否被多个view共用
+     */
+    public boolean isShared() {
+        return colorFilter == null;
+    }
+
+    /**
+     * 共用的paint，只能在主线程中使用
+     * 绘制或计算时可临时修改，但必须恢复；其他线程中使用{@link #newPaint()}
+     */
+    public @NonNull TextPaint getPaint() {
+        return paint;
+    }
+
+    /**
+     * 按此样式新建paint，不读取共用的paint，可在任意线程中调用
+     */
+    public @NonNull TextPaint newPaint() {
+        TextPaint paint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+        paint.setTextSize(textSize);
+        paint.setColor(textColor);
+        paint.setUnderlineText(underline);
+        paint.setColorFilter(colorFilter);
+        if (typefaceStyle != Typeface.NORMAL)
+            TextDrawer.apply(paint, typefaceStyle);
+        return paint;
+    }
+
+    public @NonNull Paint.FontMetricsInt getFontMetrics() {
+        return fontMetrics;
+    }
+
+    public int getEllipsizeLength() {
+        return ellipsizeLength;
+    }
+
+    /**
+     * 行高及baseline
+     * @see TextDrawer#getLineInfo(Paint.FontMetricsInt, int, boolean)
+     */
+    public int getLineInfo(int drawableSize, boolean includePad) {
+        if (drawableSize <= 0)
+            return includePad ? lineInfoWithPad : lineInfoWithoutPad;
+        return TextDrawer.getLineInfo(fontMetrics, drawableSize, includePad);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        TextStyle that = (TextStyle) o;
+
+        return Float.compare(that.textSize, textSize) == 0
+                && textColor == that.textColor
+                && typefaceStyle == that.typefaceStyle
+                && underline == that.underline
+                && ellipsizeText.equals(that.ellipsizeText)
+                && colorFilter == that.colorFilter;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Float.floatToIntBits(textSize);
+        result = 31 * result + textColor;
+        result = 31 * result + typefaceStyle;
+        result = 31 * result + (underline ? 1 : 0);
+        result = 31 * result + ellipsizeText.hashCode();
+        //colorFilter按引用比较
+        result = 31 * result + System.identityHashCode(colorFilter);
+        return result;
+    }
+}
@@ -1,5 +1,7 @@
 package xfy.fakeview.library.text.param;
 
+import android.graphics.Paint;
+
 /**
  * 可变参数
  */
@@ -14,4 +16,15 @@ public class VariableParams {
     public int currentDrawLine;
     //是否已绘制了最后的省略号
     public boolean isDrawEndEllipsize;
+    //当前绘制的block在文本中的位置
+    public int currentCharIndex;
+    //高亮范围，[start0, end0, start1, end1...]，null表示没有高亮
+    public int[] highlights;
+    //高亮背景画笔
+    public Paint highlightPaint;
+    //上次绘制时根据gravity平移的距离
+    public int translateX;
+    public int translateY;
+    //上次绘制时图片的位置，为空时不记录
+    public DrawableRects drawableRects;
 }
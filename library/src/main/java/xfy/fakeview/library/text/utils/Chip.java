@@ -0,0 +1,61 @@
+package xfy.fakeview.library.text.utils;
+
+import android.support.annotation.ColorInt;
+import android.support.annotation.NonNull;
+
+/**
+ * Created by XiongFangyu on 2018/4/20.
+ *
+ * 文字中的圆角标签(如"VIP"，等级，"置顶")的描述，不需要为每个标签创建Drawable
+ * 标签高度为图片大小(drawableSize)，宽度为文字宽度加左右padding，在计算时得出；
+ * 绘制时直接使用drawRoundRect和drawText
+ *
+ * 不可变，相同样式的标签可共用同一个对象
+ */
+public final class Chip {
+    //默认文字大小为标签高度的比例
+    public static final float DEFAULT_TEXT_SCALE = 0.6f;
+
+    //标签文字
+    public final CharSequence label;
+    //背景色
+    public final int backgroundColor;
+    //文字颜色
+    public final int textColor;
+    //圆角半径，小于0时为高度的一半(两端为半圆)
+    public final float radius;
+    //左右padding，小于0时为高度的1/4
+    public final int padding;
+    //文字大小为标签高度的比例
+    public final float textScale;
+
+    public Chip(@NonNull CharSequence label, @ColorInt int backgroundColor, @ColorInt int textColor) {
+        this(label, backgroundColor, textColor, -1, -1, DEFAULT_TEXT_SCALE);
+    }
+
+    public Chip(@NonNull CharSequence label, @ColorInt int backgroundColor, @ColorInt int textColor, float radius) {
+        this(label, backgroundColor, textColor, radius, -1, DEFAULT_TEXT_SCALE);
+    }
+
+    public Chip(@NonNull CharSequence label, @ColorInt int backgroundColor, @ColorInt int textColor,
+                float radius, int padding, float textScale) {
+        this.label = label;
+        this.backgroundColor = backgroundColor;
+        this.textColor = textColor;
+        this.radius = radius;
+        this.padding = padding;
+        this.textScale = textScale <= 0 ? DEFAULT_TEXT_SCALE : textScale;
+    }
+
+    public float getTextSize(int height) {
+        return height * textScale;
+    }
+
+    public float getRadius(int height) {
+        return radius < 0 ? height / 2f : radius;
+    }
+
+    public int getPadding(int height) {
+        return padding < 0 ? height >> 2 : padding;
+    }
+}
@@ -6,9 +6,27 @@ import android.view.View;
  * Created by XiongFangyu on 2018/3/16.
  */
 public abstract class FClickableSpan extends BaseSpan{
+    //是否有按下时的颜色
+    private boolean hasPressedColor;
+    //按下时绘制在文字上方的颜色，一般为半透明
+    private int pressedColor;
 
     public abstract void onClick(View v);
 
+    public FClickableSpan withPressedColor(int color) {
+        pressedColor = color;
+        hasPressedColor = true;
+        return this;
+    }
+
+    public boolean isHasPressedColor() {
+        return hasPressedColor;
+    }
+
+    public int getPressedColor() {
+        return pressedColor;
+    }
+
     @Override
     public boolean equals(Object obj) {
         return this == obj;
@@ -0,0 +1,85 @@
+package xfy.fakeview.library.text.utils;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Created by XiongFangyu on 2018/4/20.
+ *
+ * 文本换行位置，使用long[]保存的bitset，第i位为1表示可以在第i个字符前换行
+ * 可换行的位置：空白字符前后，中日韩文字前后；单词中间不可换行
+ * 解析时计算一次，保存在文本block中，计算和绘制时不需要再使用BreakIterator
+ *
+ * 为null表示每个字符前都可换行(如纯中文)，和按字符换行相同
+ */
+public class LineBreakUtils {
+
+    /**
+     * @return 换行位置bitset，所有位置都可换行时返回null
+     */
+    public static @Nullable long[] computeBreaks(@NonNull CharSequence text) {
+        final int len = text.length();
+        if (len <= 1)
+            return null;
+        long[] breaks = null;
+        boolean prevBreakAfter = isBreakable(text.charAt(0));
+        for (int i = 1; i < len; i ++) {
+            final char c = text.charAt(i);
+            final boolean breakAfter = isBreakable(c);
+            if (!prevBreakAfter && !breakAfter) {
+                if (breaks == null)
+                    breaks = allBreaks(len);
+                breaks[i >>> 6] &= ~(1L << i);
+            }
+            prevBreakAfter = breakAfter;
+        }
+        return breaks;
+    }
+
+    /**
+     * @param breaks {@link #computeBreaks(CharSequence)}
+     * @return 是否可以在第index个字符前换行
+     */
+    public static boolean canBreakBefore(@Nullable long[] breaks, int index) {
+        return breaks == null || (breaks[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * 在(start, end]中查找最后一个可换行的位置
+     * @return 未找到返回-1
+     */
+    public static int lastBreak(@Nullable long[] breaks, int start, int end) {
+        if (breaks == null)
+            return end > start ? end : -1;
+        for (int i = end; i > start; i --) {
+            if ((breaks[i >>> 6] & (1L << i)) != 0)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * 空白字符和中日韩文字前后都可换行
+     */
+    public static boolean isBreakable(char c) {
+        return Character.isWhitespace(c) || isBreakAround(c);
+    }
+
+    /**
+     * 中日韩文字前后都可换行
+     */
+    public static boolean isBreakAround(char c) {
+        return (c >= 0x2E80 && c <= 0x9FFF)
+                || (c >= 0xAC00 && c <= 0xD7AF)
+                || (c >= 0xF900 && c <= 0xFAFF)
+                || (c >= 0xFF00 && c <= 0xFFEF);
+    }
+
+    private static long[] allBreaks(int len) {
+        long[] breaks = new long[(len + 63) >>> 6];
+        for (int i = 0; i < breaks.length; i ++) {
+            breaks[i] = -1L;
+        }
+        return breaks;
+    }
+}
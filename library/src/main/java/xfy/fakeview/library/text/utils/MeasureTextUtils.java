@@ -8,6 +8,8 @@ public class MeasureTextUtils {
     public static final int STATE_TIMEOUT = 1;
     public static final int STATE_ERROR = 2;
 
+    //宽度只有12位，最大4095
+    public static final int WIDTH_MAX_SIZE = (1 << 12) - 1;
     public static final int HEIGHT_MAX_SIZE = 1 << 12;
     private static final long WIDTH_FLAG = 0xfffl;              //最后12位表示 width  用12位可表示4096的长度，能表示一般屏幕像素个数
     private static final long LEFT_FLAG  = 0xfff000l;           //第13位到24位表示 left 用12位可表示4096的长度，能表示一般屏幕像素个数
@@ -117,6 +119,24 @@ public class MeasureTextUtils {
         return flag;
     }
 
+    public static long combineContentWidth(int minContentWidth, int maxContentWidth) {
+        return ((long) minContentWidth << 32) | (maxContentWidth & 0xffffffffL);
+    }
+
+    /**
+     * 最宽的不可换行单元宽度
+     */
+    public static int getMinContentWidth(long contentWidths) {
+        return (int) (contentWidths >>> 32);
+    }
+
+    /**
+     * 不限宽度时最长一行的宽度
+     */
+    public static int getMaxContentWidth(long contentWidths) {
+        return (int) contentWidths;
+    }
+
     public static long measureTextByNative(long flag, int left, int right, float[] widths) {
         if (libraryLoaded)
             return nativeMeasureText(flag, left, right, widths);
@@ -126,6 +146,13 @@ public class MeasureTextUtils {
     private static native long nativeMeasureText(long flag, int left, int right, float[] widths);
     
     public static long measureText(long flag, int left, int right, float[] widths, long timeout) {
+        return measureText(flag, left, right, widths, timeout, 0);
+    }
+
+    /**
+     * @param lineBudget 行数达到此值时停止计算(不再计算之后的字符)，0表示不限制
+     */
+    public static long measureText(long flag, int left, int right, float[] widths, long timeout, int lineBudget) {
         final long now = now();
         final int contentWidth = right - left;
         for (int i = 0, l = widths.length; i < l; i++) {
@@ -140,6 +167,8 @@ public class MeasureTextUtils {
                     flag = setWillDrawOnFirstLine(flag);
                 }
                 flag = gotoCalNextLine(flag, left);
+                if (lineBudget > 0 && getLines(flag) >= lineBudget)
+                    return flag;
             }
             flag = setCurrentLeft(flag, (int) (getCurrentLeft(flag) + Math.ceil(widths[i])));
         }
@@ -147,6 +176,99 @@ public class MeasureTextUtils {
         return flag;
     }
     
+    /**
+     * 按可换行位置计算，单词不会被分到两行，一整行都放不下的单词按字符换行
+     * 行尾放不下的空白字符不占宽度，直接换行
+     * 绘制时{@link xfy.fakeview.library.text.drawer.TextDrawer}使用相同的规则
+     * @param text   文本，和widths对应
+     * @param breaks 可换行位置 {@link LineBreakUtils#computeBreaks(CharSequence)}，为null时按字符换行
+     */
+    public static long measureText(long flag, int left, int right, float[] widths, CharSequence text, long[] breaks) {
+        return measureText(flag, left, right, widths, text, breaks, 0);
+    }
+
+    /**
+     * @param lineBudget 行数达到此值时停止计算，之后的字符不再计算，0表示不限制
+     *                   用于maxLines，只需要知道是否超出最大行数
+     */
+    public static long measureText(long flag, int left, int right, float[] widths, CharSequence text, long[] breaks, int lineBudget) {
+        if (breaks == null) {
+            if (lineBudget > 0)
+                return measureText(flag, left, right, widths, 0, lineBudget);
+            return measureTextByNative(flag, left, right, widths);
+        }
+        return measureText(flag, left, right, widths, text, breaks, lineBudget, 0, null);
+    }
+
+    /**
+     * 分段计算，widths为text中[start, start + widths.length)的宽度
+     * 之后的字符可能影响最后一行的换行位置，下一段需从lastLine[0]开始，使用lastLine[1]继续计算
+     * @param breaks   可换行位置，为null时按字符换行
+     * @param start    开始位置，需为0或上次计算保存的行首
+     * @param lastLine 不为null时保存最后一行的开始位置及开始时的结果
+     */
+    public static long measureText(long flag, int left, int right, float[] widths, CharSequence text, long[] breaks,
+                                   int lineBudget, int start, long[] lastLine) {
+        final int contentWidth = right - left;
+        final int startLeft = getCurrentLeft(flag);
+        //当前行第一个字符
+        int lineStart = start;
+        boolean firstLine = start == 0;
+        if (lastLine != null) {
+            lastLine[0] = start;
+            lastLine[1] = flag;
+        }
+        for (int i = start, l = start + widths.length; i < l; i++) {
+            final float w = widths[i - start];
+            if (contentWidth < w) {
+                return setState(flag, STATE_ERROR);
+            }
+            if (getCurrentLeft(flag) + w <= right) {
+                flag = setCurrentLeft(flag, (int) (getCurrentLeft(flag) + Math.ceil(w)));
+                continue;
+            }
+            if (breaks != null && Character.isWhitespace(text.charAt(i))) {
+                if (firstLine && i != 0)
+                    flag = setWillDrawOnFirstLine(flag);
+                flag = gotoCalNextLine(flag, left);
+                if (lineBudget > 0 && getLines(flag) >= lineBudget)
+                    return flag;
+                lineStart = i + 1;
+                firstLine = false;
+                if (lastLine != null) {
+                    lastLine[0] = lineStart;
+                    lastLine[1] = flag;
+                }
+                continue;
+            }
+            do {
+                int b = breaks != null ? LineBreakUtils.lastBreak(breaks, lineStart, i) : -1;
+                if (b < 0)
+                    b = breaks != null && firstLine && startLeft > left ? 0 : i;
+                int moved = 0;
+                for (int j = b; j < i; j ++) {
+                    moved += (int) Math.ceil(widths[j - start]);
+                }
+                if (firstLine && b != 0)
+                    flag = setWillDrawOnFirstLine(flag);
+                flag = setCurrentLeft(flag, getCurrentLeft(flag) - moved);
+                flag = gotoCalNextLine(flag, left);
+                if (lastLine != null) {
+                    lastLine[0] = b;
+                    lastLine[1] = flag;
+                }
+                flag = setCurrentLeft(flag, left + moved);
+                lineStart = b;
+                firstLine = false;
+                if (lineBudget > 0 && getLines(flag) >= lineBudget)
+                    return flag;
+            } while (getCurrentLeft(flag) + w > right);
+            flag = setCurrentLeft(flag, (int) (getCurrentLeft(flag) + Math.ceil(w)));
+        }
+        flag = calContentMaxWidth(flag, left);
+        return flag;
+    }
+
     public static long calContentMaxWidth(long flag, int left) {
         int max = Math.max(getMaxWidth(flag), getCurrentLeft(flag) - left);
         return setMaxWidth(flag, max);
@@ -2,24 +2,50 @@ package xfy.fakeview.library.translator.data;
 
 import android.support.v7.widget.AppCompatButton;
 import android.support.v7.widget.AppCompatTextView;
+import android.text.Spanned;
 import android.util.TypedValue;
 import android.view.View;
 import android.widget.Button;
 import android.widget.TextView;
 
 import xfy.fakeview.library.fview.normal.FTextView;
+import xfy.fakeview.library.text.compiler.SpannedTextCompiler;
+import xfy.fakeview.library.text.utils.FClickableSpan;
 
 /**
  * Created by XiongFangyu on 2017/11/9.
  *
  * Translate data in TextView
+ *
+ * If the text only contains spans supported by {@link FTextView#getDefaultTextCompiler()},
+ * the FTextView will be rendered by {@link xfy.fakeview.library.text.FTextDrawable},
+ * otherwise by {@link android.text.Layout}.
  */
 public class TextDataTranslator implements IDataTranslator<FTextView, TextView> {
     @Override
     public boolean translateData(FTextView fview, TextView src) {
         fview.setTextColor(src.getCurrentTextColor());
         fview.setTextSize(TypedValue.COMPLEX_UNIT_PX, src.getTextSize());
-        fview.setText(src.getText());
+        CharSequence text = src.getText();
+        fview.setUseTextDrawable(canUseTextDrawable(text));
+        fview.setText(text);
+        return true;
+    }
+
+    /**
+     * Whether all spans in text can be compiled by {@link FTextView#getDefaultTextCompiler()}
+     */
+    public static boolean canUseTextDrawable(CharSequence text) {
+        if (!(text instanceof Spanned))
+            return true;
+        Spanned spanned = (Spanned) text;
+        Object[] spans = spanned.getSpans(0, spanned.length(), Object.class);
+        if (spans == null)
+            return true;
+        for (Object span : spans) {
+            if (!(span instanceof FClickableSpan) && !SpannedTextCompiler.isSupportedSpan(span))
+                return false;
+        }
         return true;
     }
 
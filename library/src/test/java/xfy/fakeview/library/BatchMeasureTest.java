@@ -0,0 +1,66 @@
+package xfy.fakeview.library;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import xfy.fakeview.library.text.BatchTextMeasurer;
+import xfy.fakeview.library.text.block.DefaultDrawableBlockList;
+import xfy.fakeview.library.text.compiler.DefaultTextCompiler;
+import xfy.fakeview.library.text.param.TextStyle;
+
+/**
+ * Created by XiongFangyu on 2018/4/20.
+ *
+ * Headless batch measure on the worker pool.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 24)
+public class BatchMeasureTest {
+
+    @Test
+    public void testLinesInOrder() {
+        TextStyle style = TextStyle.getDefault();
+        List<BatchTextMeasurer.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < 100; i ++) {
+            StringBuilder sb = new StringBuilder("batch " + i);
+            for (int j = 0; j < i % 4; j ++) {
+                sb.append("\nline ").append(j);
+            }
+            entries.add(new BatchTextMeasurer.Entry(sb.toString(), 300, style));
+        }
+        entries.add(new BatchTextMeasurer.Entry("a\nb\nc\nd", 300, style, 2, 0, 0, true));
+        entries.add(new BatchTextMeasurer.Entry("", 300, style));
+
+        int[] result = BatchTextMeasurer.measure(entries, DefaultTextCompiler.getCompiler());
+        Assert.assertEquals(entries.size() * 2, result.length);
+        for (int i = 0; i < 100; i ++) {
+            Assert.assertEquals(i % 4 + 1, BatchTextMeasurer.getLines(result, i));
+        }
+        Assert.assertEquals(2, BatchTextMeasurer.getLines(result, 100));
+        Assert.assertEquals(0, BatchTextMeasurer.getLines(result, 101));
+        Assert.assertEquals(0, BatchTextMeasurer.getHeight(result, 101));
+    }
+
+    @Test
+    public void testWarmsCompileCache() {
+        DefaultTextCompiler compiler = DefaultTextCompiler.getCompiler();
+        String text = "warm cache\nsecond line";
+        Assert.assertFalse(compiler.isCached(text));
+        List<BatchTextMeasurer.Entry> entries = new ArrayList<>();
+        entries.add(new BatchTextMeasurer.Entry(text, 300, TextStyle.getDefault()));
+        BatchTextMeasurer.measure(entries, compiler);
+        Assert.assertTrue(compiler.isCached(text));
+
+        DefaultDrawableBlockList a = compiler.compile(text);
+        DefaultDrawableBlockList b = compiler.compile(text);
+        Assert.assertSame(a, b);
+        a.notUse();
+        b.notUse();
+    }
+}
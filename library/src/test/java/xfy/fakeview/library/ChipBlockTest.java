@@ -0,0 +1,148 @@
+package xfy.fakeview.library;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.support.annotation.NonNull;
+import android.text.TextPaint;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import xfy.fakeview.library.text.block.DefaultDrawableBlock;
+import xfy.fakeview.library.text.block.DefaultDrawableBlockList;
+import xfy.fakeview.library.text.block.IDrawableBlock;
+import xfy.fakeview.library.text.compiler.DrawableTextCompiler;
+import xfy.fakeview.library.text.drawer.ChipDrawer;
+import xfy.fakeview.library.text.drawer.TextDrawer;
+import xfy.fakeview.library.text.param.ImmutableParams;
+import xfy.fakeview.library.text.param.VariableParams;
+import xfy.fakeview.library.text.utils.Chip;
+import xfy.fakeview.library.text.utils.MeasureTextUtils;
+
+/**
+ * Created by XiongFangyu on 2018/4/20.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 24)
+public class ChipBlockTest {
+    private static final Chip VIP = new Chip("VIP", Color.RED, Color.WHITE, 4, 10, 0.5f);
+
+    private static DrawableTextCompiler newCompiler() {
+        DrawableTextCompiler compiler = new DrawableTextCompiler(null);
+        compiler.setChipAdapter(new DrawableTextCompiler.ChipAdapter() {
+            @Override
+            public Chip parseChip(@NonNull CharSequence text) {
+                return "[vip]".contentEquals(text) ? VIP : null;
+            }
+        });
+        return compiler;
+    }
+
+    @Test
+    public void testCompileChip() {
+        DefaultDrawableBlockList list = newCompiler().compile("a[vip]b[other]");
+        Assert.assertTrue(list.hasDrawable());
+        int chips = 0;
+        for (int i = 0, l = list.size(); i < l; i ++) {
+            DefaultDrawableBlock block = list.get(i);
+            if (block.getType() == IDrawableBlock.CHIP) {
+                chips ++;
+                Assert.assertSame(VIP, block.getChip());
+                Assert.assertEquals("[vip]", block.getText().toString());
+            }
+        }
+        Assert.assertEquals(1, chips);
+        list.notUse();
+    }
+
+    @Test
+    public void testMeasureAndDraw() {
+        final int size = 20;
+        TextPaint paint = new TextPaint();
+        paint.setTextSize(size);
+        final int chipWidth = ChipDrawer.measureChipWidth(paint, VIP, size);
+        Assert.assertTrue(chipWidth >= 20);
+        Assert.assertEquals(size, paint.getTextSize(), 0);
+
+        DefaultDrawableBlockList list = newCompiler().compile("[vip][vip]");
+        ImmutableParams params = new ImmutableParams();
+        params.paint = paint;
+        params.drawableHeight = size;
+        params.ellipsizeText = "...";
+        params.ellipsizeLength = TextDrawer.getEllipsizeLength(paint, "...");
+        long flag = TextDrawer.measureText(params, list, TextDrawer.getLineInfo(paint, size, true),
+                size, 0, 0, 500, true, true);
+        Assert.assertEquals(MeasureTextUtils.STATE_SUCCESS, MeasureTextUtils.getState(flag));
+        Assert.assertEquals(1, MeasureTextUtils.getLines(flag));
+        Assert.assertEquals(chipWidth * 2, MeasureTextUtils.getMaxWidth(flag));
+        Assert.assertEquals(chipWidth, MeasureTextUtils.getMinContentWidth(list.getContentWidths(paint, size)));
+
+        params.left = 0;
+        params.top = 0;
+        params.right = 500;
+        params.bottom = size;
+        params.lines = 1;
+        params.needDrawLine = 1;
+        params.lineInfos = list.getLinesHeight();
+        VariableParams variableParams = new VariableParams();
+        variableParams.currentBaseline = size;
+        RecordCanvas canvas = new RecordCanvas();
+        list.draw(canvas, variableParams, params);
+        Assert.assertEquals(2, canvas.roundRects);
+        Assert.assertEquals(chipWidth, canvas.lastRect.left, 0);
+        Assert.assertEquals(chipWidth * 2, canvas.lastRect.right, 0);
+        Assert.assertEquals(size, canvas.lastRect.height(), 0);
+        Assert.assertEquals(chipWidth * 2, variableParams.currentLeft);
+        list.notUse();
+    }
+
+    @Test
+    public void testDrawWithMeasureStyle() {
+        final int size = 20;
+        TextPaint paint = new TextPaint(Paint.ANTI_ALIAS_FLAG | Paint.FAKE_BOLD_TEXT_FLAG);
+        paint.setTextSize(size);
+        DefaultDrawableBlockList list = newCompiler().compile("[vip]");
+        ImmutableParams params = new ImmutableParams();
+        params.paint = paint;
+        params.drawableHeight = size;
+        params.right = 500;
+        params.bottom = size;
+        params.lines = 1;
+        params.needDrawLine = 1;
+        VariableParams variableParams = new VariableParams();
+        variableParams.currentBaseline = size;
+        RecordCanvas canvas = new RecordCanvas();
+        list.draw(canvas, variableParams, params);
+        Assert.assertEquals(ChipDrawer.measureChipWidth(paint, VIP, size), variableParams.currentLeft);
+        Assert.assertNotNull(canvas.textPaint);
+        Assert.assertTrue(canvas.textPaint.isFakeBoldText());
+        list.notUse();
+    }
+
+    private static class RecordCanvas extends Canvas {
+        int roundRects;
+        final RectF lastRect = new RectF();
+        Paint textPaint;
+
+        @Override
+        public void drawRoundRect(@NonNull RectF rect, float rx, float ry, @NonNull Paint paint) {
+            roundRects ++;
+            lastRect.set(rect);
+        }
+
+        @Override
+        public void drawText(@NonNull CharSequence text, int start, int end, float x, float y, @NonNull Paint paint) {
+            textPaint = paint;
+        }
+
+        @Override
+        public boolean quickReject(float left, float top, float right, float bottom, @NonNull EdgeType type) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package xfy.fakeview.library;
+
+import android.graphics.Color;
+import android.graphics.drawable.ColorDrawable;
+import android.text.TextPaint;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import xfy.fakeview.library.text.block.DefaultDrawableBlock;
+import xfy.fakeview.library.text.block.DefaultDrawableBlockList;
+import xfy.fakeview.library.text.utils.MeasureTextUtils;
+
+/**
+ * Created by XiongFangyu on 2018/4/20.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 24)
+public class ContentWidthTest {
+    private static final int DRAWABLE_SIZE = 10;
+
+    @Test
+    public void testTextAndDrawables() {
+        DefaultDrawableBlockList list = DefaultDrawableBlockList.obtain(true, 0, 0);
+        list.add(DefaultDrawableBlock.createTextBlock("hello world", null));
+        list.add(DefaultDrawableBlock.createNextLineBlock());
+        list.add(DefaultDrawableBlock.createTextBlock("中文ab", null));
+        list.add(DefaultDrawableBlock.createSpecialDrawableBlock("[d]", new ColorDrawable(Color.RED)));
+        list.add(DefaultDrawableBlock.createTextBlock("cd", null));
+
+        UnitPaint paint = new UnitPaint();
+        long widths = list.getContentWidths(paint, DRAWABLE_SIZE);
+        Assert.assertEquals(DRAWABLE_SIZE, MeasureTextUtils.getMinContentWidth(widths));
+        Assert.assertEquals(4 + DRAWABLE_SIZE + 2, MeasureTextUtils.getMaxContentWidth(widths));
+        Assert.assertEquals(1, paint.count);
+
+        Assert.assertEquals(widths, list.getContentWidths(paint, DRAWABLE_SIZE));
+        Assert.assertEquals(1, paint.count);
+
+        widths = list.getContentWidths(paint, 1);
+        Assert.assertEquals(5, MeasureTextUtils.getMinContentWidth(widths));
+        Assert.assertEquals(11, MeasureTextUtils.getMaxContentWidth(widths));
+    }
+
+    /**
+     * 每个字符宽度为1
+     */
+    private static class UnitPaint extends TextPaint {
+        int count;
+
+        @Override
+        public int getTextWidths(CharSequence text, int start, int end, float[] widths) {
+            if ("hello world".contentEquals(text))
+                count ++;
+            for (int i = 0, l = end - start; i < l; i ++) {
+                widths[i] = 1;
+            }
+            return end - start;
+        }
+    }
+}
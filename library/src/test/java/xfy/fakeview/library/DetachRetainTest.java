@@ -0,0 +1,107 @@
+package xfy.fakeview.library;
+
+import android.support.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import xfy.fakeview.library.text.DetachedTextRetainer;
+import xfy.fakeview.library.text.FTextDrawable;
+import xfy.fakeview.library.text.block.DefaultDrawableBlockList;
+import xfy.fakeview.library.text.compiler.DefaultTextCompiler;
+
+/**
+ * Created by XiongFangyu on 2018/4/20.
+ *
+ * Detached drawables keep their compiled text until the global retainer evicts them.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 24)
+public class DetachRetainTest {
+
+    @After
+    public void tearDown() {
+        DetachedTextRetainer.setMaxSize(0);
+    }
+
+    @Test
+    public void testReleaseByDefault() {
+        CountCompiler compiler = new CountCompiler();
+        FTextDrawable drawable = newDrawable(compiler, "default");
+        Assert.assertEquals(1, compiler.count);
+        drawable.onDetachedFromWindow();
+        Assert.assertEquals(0, DetachedTextRetainer.size());
+        drawable.onAttachedToWindow();
+        Assert.assertEquals(2, compiler.count);
+    }
+
+    @Test
+    public void testRetainAndEvict() {
+        DetachedTextRetainer.setMaxSize(2);
+        CountCompiler compiler = new CountCompiler();
+        FTextDrawable a = newDrawable(compiler, "a");
+        FTextDrawable b = newDrawable(compiler, "b");
+        FTextDrawable c = newDrawable(compiler, "c");
+        Assert.assertEquals(3, compiler.count);
+        final int height = a.getIntrinsicHeight();
+
+        a.onDetachedFromWindow();
+        b.onDetachedFromWindow();
+        Assert.assertEquals(2, DetachedTextRetainer.size());
+        a.onAttachedToWindow();
+        Assert.assertEquals(3, compiler.count);
+        Assert.assertEquals(height, a.getIntrinsicHeight());
+        Assert.assertEquals(1, DetachedTextRetainer.size());
+
+        //b is the eldest when c and a are detached
+        c.onDetachedFromWindow();
+        a.onDetachedFromWindow();
+        Assert.assertEquals(2, DetachedTextRetainer.size());
+        b.onAttachedToWindow();
+        Assert.assertEquals(4, compiler.count);
+        c.onAttachedToWindow();
+        a.onAttachedToWindow();
+        Assert.assertEquals(4, compiler.count);
+        Assert.assertEquals(0, DetachedTextRetainer.size());
+
+        //released drawables are never retained
+        a.release();
+        Assert.assertEquals(0, DetachedTextRetainer.size());
+        a.onAttachedToWindow();
+        Assert.assertEquals(5, compiler.count);
+
+        c.onDetachedFromWindow();
+        DetachedTextRetainer.clear();
+        c.onAttachedToWindow();
+        Assert.assertEquals(6, compiler.count);
+    }
+
+    private static FTextDrawable newDrawable(CountCompiler compiler, String text) {
+        FTextDrawable drawable = new FTextDrawable();
+        drawable.setTextCompiler(compiler);
+        drawable.setDrawableSize(20);
+        drawable.setMaxWidth(500);
+        drawable.setAutoMeasure(true);
+        drawable.setText(text);
+        drawable.onAttachedToWindow();
+        return drawable;
+    }
+
+    private static class CountCompiler extends DefaultTextCompiler {
+        int count;
+
+        CountCompiler() {
+            super(null);
+        }
+
+        @Override
+        public DefaultDrawableBlockList compile(@NonNull CharSequence charSequence) {
+            count ++;
+            return super.compile(charSequence);
+        }
+    }
+}
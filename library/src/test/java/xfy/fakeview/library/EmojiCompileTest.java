@@ -0,0 +1,75 @@
+package xfy.fakeview.library;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import xfy.fakeview.library.text.block.DefaultDrawableBlock;
+import xfy.fakeview.library.text.block.DefaultDrawableBlockList;
+import xfy.fakeview.library.text.block.IDrawableBlock;
+import xfy.fakeview.library.text.compiler.EmojiTable;
+import xfy.fakeview.library.text.compiler.EmojiTextCompiler;
+
+/**
+ * Created by XiongFangyu on 2018/4/19.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 24)
+public class EmojiCompileTest {
+    private static final String GRINNING = "😀";
+    private static final String THUMBS_UP = "👍";
+    private static final String MEDIUM_SKIN = "🏽";
+    private static final String DARK_SKIN = "🏿";
+    private static final String HEART = "❤";
+    private static final String FE0F = "\uFE0F";
+    private static final String ZWJ = "\u200D";
+    private static final String FAMILY = "👨" + ZWJ + "👩" + ZWJ + "👧";
+
+    private final EmojiTable table = new EmojiTable.Builder()
+            .put(GRINNING, 1)
+            .put(THUMBS_UP, 2)
+            .put(THUMBS_UP + MEDIUM_SKIN, 3)
+            .put(HEART + FE0F, 4)
+            .put(FAMILY, 5)
+            .put("👨", 6)
+            .build();
+
+    @Test
+    public void testSurrogatePair() {
+        DefaultDrawableBlockList list = new EmojiTextCompiler(table).compile("a" + GRINNING + "b");
+        Assert.assertEquals(3, list.size());
+        Assert.assertEquals("a", list.get(0).getText().toString());
+        assertEmoji(list.get(1), GRINNING, 1);
+        Assert.assertEquals("b", list.get(2).getText().toString());
+    }
+
+    @Test
+    public void testSkinToneAndVariationSelector() {
+        DefaultDrawableBlockList list = new EmojiTextCompiler(table)
+                .compile(THUMBS_UP + MEDIUM_SKIN + THUMBS_UP + DARK_SKIN + HEART + HEART + FE0F);
+        Assert.assertEquals(4, list.size());
+        assertEmoji(list.get(0), THUMBS_UP + MEDIUM_SKIN, 3);
+        assertEmoji(list.get(1), THUMBS_UP + DARK_SKIN, 2);
+        assertEmoji(list.get(2), HEART, 4);
+        assertEmoji(list.get(3), HEART + FE0F, 4);
+    }
+
+    @Test
+    public void testZwjSequence() {
+        DefaultDrawableBlockList list = new EmojiTextCompiler(table)
+                .compile(FAMILY + " 👨" + ZWJ + "x");
+        Assert.assertEquals(4, list.size());
+        assertEmoji(list.get(0), FAMILY, 5);
+        Assert.assertEquals(" ", list.get(1).getText().toString());
+        assertEmoji(list.get(2), "👨", 6);
+        Assert.assertEquals(ZWJ + "x", list.get(3).getText().toString());
+    }
+
+    private static void assertEmoji(DefaultDrawableBlock block, String text, int res) {
+        Assert.assertEquals(IDrawableBlock.DRAWABLE, block.getType());
+        Assert.assertEquals(text, block.getText().toString());
+        Assert.assertEquals(res, block.getDrawableRes());
+    }
+}
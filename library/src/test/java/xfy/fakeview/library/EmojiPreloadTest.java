@@ -0,0 +1,66 @@
+package xfy.fakeview.library;
+
+import android.app.Application;
+import android.graphics.drawable.Drawable;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import xfy.fakeview.library.text.drawer.EmojiPreloader;
+import xfy.fakeview.library.text.drawer.TextDrawableDrawer;
+
+/**
+ * Created by XiongFangyu on 2018/4/20.
+ *
+ * The most used drawable resources are decoded ahead of time.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 24)
+public class EmojiPreloadTest {
+
+    @After
+    public void tearDown() {
+        EmojiPreloader.setPreloadCount(0);
+    }
+
+    @Test
+    public void testPreloadMostUsed() {
+        Application context = RuntimeEnvironment.application;
+        TextDrawableDrawer.init(context);
+        EmojiPreloader.setPreloadCount(2);
+        final int star = android.R.drawable.star_on;
+        final int off = android.R.drawable.star_off;
+        final int add = android.R.drawable.ic_input_add;
+        use(star, 3);
+        use(add, 2);
+        use(off, 1);
+
+        EmojiPreloader.preloadNow(context);
+        Assert.assertTrue(EmojiPreloader.isPreloaded(star));
+        Assert.assertTrue(EmojiPreloader.isPreloaded(add));
+        Assert.assertFalse(EmojiPreloader.isPreloaded(off));
+        Drawable d = TextDrawableDrawer.getDrawableDrawer().getSpecialDrawable(star, 20);
+        Assert.assertNotNull(d);
+        Assert.assertFalse(d.getBounds().isEmpty());
+
+        use(off, 5);
+        EmojiPreloader.preloadNow(context);
+        Assert.assertTrue(EmojiPreloader.isPreloaded(off));
+        Assert.assertTrue(EmojiPreloader.isPreloaded(star));
+        Assert.assertFalse(EmojiPreloader.isPreloaded(add));
+
+        EmojiPreloader.clear();
+        Assert.assertFalse(EmojiPreloader.isPreloaded(star));
+    }
+
+    private static void use(int res, int times) {
+        for (int i = 0; i < times; i ++) {
+            TextDrawableDrawer.getDrawableDrawer().getSpecialDrawable(res, 20);
+        }
+    }
+}
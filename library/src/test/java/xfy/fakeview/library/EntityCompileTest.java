@@ -0,0 +1,100 @@
+package xfy.fakeview.library;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import xfy.fakeview.library.text.block.DefaultDrawableBlock;
+import xfy.fakeview.library.text.block.DefaultDrawableBlockList;
+import xfy.fakeview.library.text.block.IDrawableBlock;
+import xfy.fakeview.library.text.compiler.EntityTextCompiler;
+
+/**
+ * Created by XiongFangyu on 2018/4/20.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 24)
+public class EntityCompileTest {
+
+    @Test
+    public void testEntities() {
+        EntityTextCompiler compiler = new EntityTextCompiler(null);
+        DefaultDrawableBlockList list = compiler.compile(
+                "see https://example.com/a_(b)?x=1. cc @bob_1 and #android# call +86 138-0013-8000, mail a@b.com");
+        List<String> entities = new ArrayList<>();
+        List<Integer> types = new ArrayList<>();
+        collect(list, entities, types);
+        Assert.assertEquals(4, entities.size());
+        Assert.assertEquals("https://example.com/a_(b)?x=1", entities.get(0));
+        Assert.assertEquals(EntityTextCompiler.TYPE_URL, (int) types.get(0));
+        Assert.assertEquals("@bob_1", entities.get(1));
+        Assert.assertEquals(EntityTextCompiler.TYPE_MENTION, (int) types.get(1));
+        Assert.assertEquals("#android#", entities.get(2));
+        Assert.assertEquals(EntityTextCompiler.TYPE_HASHTAG, (int) types.get(2));
+        Assert.assertEquals("+86 138-0013-8000", entities.get(3));
+        Assert.assertEquals(EntityTextCompiler.TYPE_PHONE, (int) types.get(3));
+        Assert.assertTrue(list.hasSpan());
+        list.notUse();
+    }
+
+    @Test
+    public void testNotEntities() {
+        EntityTextCompiler compiler = new EntityTextCompiler(null);
+        DefaultDrawableBlockList list = compiler.compile("www no, #123, 12345, shttp://x, @ alone, 1380013800012345678");
+        List<String> entities = new ArrayList<>();
+        collect(list, entities, new ArrayList<Integer>());
+        Assert.assertTrue(entities.toString(), entities.isEmpty());
+        list.notUse();
+    }
+
+    @Test
+    public void testPhoneLayouts() {
+        EntityTextCompiler compiler = new EntityTextCompiler(null);
+        DefaultDrawableBlockList list = compiler.compile(
+                "13800138000, 010-62345678, 400-820-8820, 555 1234, 2018-04-20, 2018 04 20, 20180420123, 12345678901, 9876543");
+        List<String> entities = new ArrayList<>();
+        collect(list, entities, new ArrayList<Integer>());
+        Assert.assertEquals(4, entities.size());
+        Assert.assertEquals("13800138000", entities.get(0));
+        Assert.assertEquals("010-62345678", entities.get(1));
+        Assert.assertEquals("400-820-8820", entities.get(2));
+        Assert.assertEquals("555 1234", entities.get(3));
+        list.notUse();
+    }
+
+    @Test
+    public void testTypesAndCache() {
+        EntityTextCompiler compiler = new EntityTextCompiler(null);
+        compiler.setEntityTypes(EntityTextCompiler.TYPE_MENTION);
+        String text = "@mike www.example.com #tag 中文@小明";
+        DefaultDrawableBlockList list = compiler.compile(text);
+        List<String> entities = new ArrayList<>();
+        collect(list, entities, new ArrayList<Integer>());
+        Assert.assertEquals(2, entities.size());
+        Assert.assertEquals("@mike", entities.get(0));
+        Assert.assertEquals("@小明", entities.get(1));
+        Assert.assertSame(list, compiler.compile(text));
+        list.notUse();
+        list.notUse();
+    }
+
+    private static void collect(DefaultDrawableBlockList list, List<String> entities, List<Integer> types) {
+        StringBuilder all = new StringBuilder();
+        for (int i = 0; i < list.size(); i ++) {
+            DefaultDrawableBlock block = list.get(i);
+            all.append(block.getText());
+            if (block.getType() == IDrawableBlock.SPAN) {
+                EntityTextCompiler.EntitySpan span = (EntityTextCompiler.EntitySpan) block.getSpan();
+                Assert.assertEquals(span.getEntity(), block.getText().toString());
+                entities.add(span.getEntity());
+                types.add(span.getType());
+            }
+        }
+        Assert.assertEquals(list.getEnd() - list.getStart(), all.length());
+    }
+}
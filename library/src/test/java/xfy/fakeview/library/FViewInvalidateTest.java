@@ -0,0 +1,156 @@
+package xfy.fakeview.library;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.support.annotation.NonNull;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import xfy.fakeview.library.fview.FView;
+import xfy.fakeview.library.fview.FViewRootImpl;
+import xfy.fakeview.library.fview.IFViewRoot;
+import xfy.fakeview.library.fview.normal.FFrameLayout;
+
+/**
+ * Created by XiongFangyu on 2018/4/20.
+ *
+ * Dirty rects climb the FView tree in place and accumulate in the root until the next draw.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 24)
+public class FViewInvalidateTest {
+
+    @Test
+    public void testDirtyRegion() {
+        Context context = RuntimeEnvironment.application;
+        FViewRootImpl root = new FViewRootImpl(context);
+        FFrameLayout outer = new FFrameLayout(context, root);
+        FFrameLayout inner = new FFrameLayout(context, root);
+        CountView child = new CountView(context, root);
+        outer.addView(inner);
+        inner.addView(child);
+        root.setTargetChild(outer);
+        outer.layout(0, 0, 200, 200);
+        inner.layout(10, 20, 110, 120);
+        child.layout(5, 5, 25, 25);
+
+        child.invalidate();
+        Assert.assertEquals(new Rect(15, 25, 35, 45), root.getDirtyRegion());
+
+        Rect dirty = new Rect(0, 0, 5, 5);
+        child.invalidateRect(dirty);
+        Assert.assertEquals(new Rect(0, 0, 5, 5), dirty);
+        Assert.assertEquals(new Rect(15, 25, 35, 45), root.getDirtyRegion());
+
+        //parts outside a parent are clipped
+        child.layout(90, 90, 150, 150);
+        child.invalidate();
+        Assert.assertEquals(new Rect(15, 25, 110, 120), root.getDirtyRegion());
+
+        root.onDetachedFromWindow();
+        Assert.assertTrue(root.getDirtyRegion().isEmpty());
+    }
+
+    @Test
+    public void testInvalidateWhileDrawing() {
+        Context context = RuntimeEnvironment.application;
+        DrawRoot root = new DrawRoot(context);
+        FFrameLayout group = new FFrameLayout(context, root);
+        AnimView child = new AnimView(context, root);
+        group.addView(child);
+        root.setTargetChild(group);
+        group.onAttachedToWindow();
+        group.layout(0, 0, 200, 200);
+        child.layout(0, 0, 40, 40);
+
+        child.invalidate();
+        Assert.assertEquals(new Rect(0, 0, 40, 40), root.getDirtyRegion());
+        //the next frame requested from onDraw must reach the root again
+        root.drawTarget(new Canvas());
+        Assert.assertEquals(1, child.draws);
+        Assert.assertEquals(new Rect(0, 0, 40, 40), root.getDirtyRegion());
+    }
+
+    @Test
+    public void testDrawOnlyDirtyChildren() {
+        Context context = RuntimeEnvironment.application;
+        FViewRootImpl root = new FViewRootImpl(context);
+        FFrameLayout group = new FFrameLayout(context, root);
+        CountView a = new CountView(context, root);
+        CountView b = new CountView(context, root);
+        group.addView(a);
+        group.addView(b);
+        root.setTargetChild(group);
+        group.onAttachedToWindow();
+        group.layout(0, 0, 200, 200);
+        a.layout(0, 0, 40, 40);
+        b.layout(100, 100, 150, 150);
+
+        group.draw(new ClipCanvas(new Rect(0, 0, 50, 50)));
+        Assert.assertEquals(1, a.draws);
+        Assert.assertEquals(0, b.draws);
+        group.draw(new ClipCanvas(new Rect(0, 0, 200, 200)));
+        Assert.assertEquals(2, a.draws);
+        Assert.assertEquals(1, b.draws);
+    }
+
+    private static class CountView extends FView {
+        int draws;
+
+        CountView(Context context, IFViewRoot viewRoot) {
+            super(context, viewRoot);
+        }
+
+        void invalidateRect(Rect dirty) {
+            invalidate(dirty);
+        }
+
+        @Override
+        protected void onDraw(Canvas canvas) {
+            draws ++;
+        }
+    }
+
+    private static class AnimView extends CountView {
+
+        AnimView(Context context, IFViewRoot viewRoot) {
+            super(context, viewRoot);
+        }
+
+        @Override
+        protected void onDraw(Canvas canvas) {
+            super.onDraw(canvas);
+            invalidate();
+        }
+    }
+
+    private static class DrawRoot extends FViewRootImpl {
+
+        DrawRoot(Context context) {
+            super(context);
+        }
+
+        void drawTarget(Canvas canvas) {
+            onDraw(canvas);
+        }
+    }
+
+    private static class ClipCanvas extends Canvas {
+        final Rect clip;
+
+        ClipCanvas(Rect clip) {
+            this.clip = clip;
+        }
+
+        @Override
+        public boolean quickReject(float left, float top, float right, float bottom, @NonNull EdgeType type) {
+            return !clip.intersects((int) left, (int) top, (int) right, (int) bottom);
+        }
+    }
+}
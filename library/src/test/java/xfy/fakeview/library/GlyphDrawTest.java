@@ -0,0 +1,65 @@
+package xfy.fakeview.library;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.support.annotation.NonNull;
+import android.text.TextPaint;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import xfy.fakeview.library.text.block.DefaultDrawableBlockList;
+import xfy.fakeview.library.text.compiler.DefaultTextCompiler;
+import xfy.fakeview.library.text.drawer.GlyphDrawer;
+import xfy.fakeview.library.text.param.ImmutableParams;
+import xfy.fakeview.library.text.param.VariableParams;
+
+/**
+ * Created by XiongFangyu on 2018/4/20.
+ *
+ * drawGlyphs needs API 31, lower levels always fall back to drawText.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 24)
+public class GlyphDrawTest {
+
+    @After
+    public void tearDown() {
+        GlyphDrawer.setEnabled(false);
+    }
+
+    @Test
+    public void testFallbackToDrawText() {
+        GlyphDrawer.setEnabled(true);
+        Assert.assertFalse(GlyphDrawer.isEnabled());
+
+        RecordCanvas canvas = new RecordCanvas();
+        TextPaint paint = new TextPaint();
+        GlyphDrawer.drawText(canvas, "hello", 1, 4, 0, 10, paint, new GlyphDrawer.GlyphCache(), 0);
+        Assert.assertEquals(1, canvas.texts);
+
+        DefaultDrawableBlockList list = new DefaultTextCompiler(null).compile("glyph text");
+        ImmutableParams params = new ImmutableParams();
+        params.paint = paint;
+        params.right = 1000;
+        params.bottom = 100;
+        params.needDrawLine = 1;
+        list.draw(canvas, new VariableParams(), params);
+        Assert.assertEquals(2, canvas.texts);
+        Assert.assertNull(list.get(0).getGlyphCache());
+        list.notUse();
+    }
+
+    private static class RecordCanvas extends Canvas {
+        int texts;
+
+        @Override
+        public void drawText(@NonNull CharSequence text, int start, int end, float x, float y, @NonNull Paint paint) {
+            texts ++;
+        }
+    }
+}
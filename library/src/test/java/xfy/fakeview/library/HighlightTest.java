@@ -0,0 +1,96 @@
+package xfy.fakeview.library;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.view.View;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import xfy.fakeview.library.text.FTextDrawable;
+import xfy.fakeview.library.text.NewTextView;
+
+/**
+ * Created by XiongFangyu on 2018/4/20.
+ *
+ * Highlight overlays drawn from the existing layout.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 24)
+public class HighlightTest {
+    private static final int HIGHLIGHT = 0xffffeb3b;
+
+    @Test
+    public void testHighlightOnlyInvalidates() {
+        NewTextView textView = newTextView("hello world\nsearch result");
+        FTextDrawable drawable = textView.getTextDrawable();
+        Counter counter = new Counter();
+        drawable.setLayoutRequestListener(counter);
+
+        RecordCanvas canvas = new RecordCanvas();
+        drawable.draw(canvas);
+        Assert.assertEquals(0, canvas.highlightRects);
+
+        //"world" and "search"
+        drawable.setHighlights(new int[] {6, 11, 12, 18}, HIGHLIGHT);
+        drawable.draw(canvas);
+        Assert.assertEquals(2, canvas.highlightRects);
+        Assert.assertEquals(0, counter.count);
+        Assert.assertEquals(2, drawable.getLineCount());
+
+        canvas.highlightRects = 0;
+        drawable.clearHighlights();
+        drawable.draw(canvas);
+        Assert.assertEquals(0, canvas.highlightRects);
+        Assert.assertEquals(0, counter.count);
+    }
+
+    @Test
+    public void testClearedBySetText() {
+        NewTextView textView = newTextView("hello world");
+        FTextDrawable drawable = textView.getTextDrawable();
+        drawable.setHighlights(new int[] {0, 5}, HIGHLIGHT);
+        Assert.assertNotNull(drawable.getHighlights());
+        textView.setText("another text");
+        Assert.assertNull(drawable.getHighlights());
+    }
+
+    private static NewTextView newTextView(String text) {
+        NewTextView textView = new NewTextView(RuntimeEnvironment.application);
+        textView.setText(text);
+        textView.measure(View.MeasureSpec.makeMeasureSpec(500, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(100, View.MeasureSpec.EXACTLY));
+        textView.layout(0, 0, 500, 100);
+        return textView;
+    }
+
+    private static class RecordCanvas extends Canvas {
+        int highlightRects;
+
+        RecordCanvas() {
+            super(Bitmap.createBitmap(500, 100, Bitmap.Config.ARGB_8888));
+        }
+
+        @Override
+        public void drawRect(float left, float top, float right, float bottom, Paint paint) {
+            if (paint.getColor() == HIGHLIGHT)
+                highlightRects ++;
+            super.drawRect(left, top, right, bottom, paint);
+        }
+    }
+
+    private static class Counter implements FTextDrawable.LayoutRequestListener {
+        int count;
+
+        @Override
+        public void needRequest(FTextDrawable drawable) {
+            count ++;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package xfy.fakeview.library;
+
+import android.graphics.Color;
+import android.text.Html;
+import android.text.Spanned;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import xfy.fakeview.library.text.block.DefaultDrawableBlock;
+import xfy.fakeview.library.text.block.DefaultDrawableBlockList;
+import xfy.fakeview.library.text.block.IDrawableBlock;
+import xfy.fakeview.library.text.block.IDrawableBlockList;
+import xfy.fakeview.library.text.compiler.ClickSpanTextCompiler;
+import xfy.fakeview.library.text.compiler.HtmlTextCompiler;
+import xfy.fakeview.library.text.compiler.ITextCompiler;
+import xfy.fakeview.library.text.compiler.SpannedTextCompiler;
+import xfy.fakeview.library.text.param.SpecialStyleParams;
+
+/**
+ * Created by XiongFangyu on 2018/4/18.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 24)
+public class HtmlCompileTest {
+    private static final String MESSAGE = "hello <b>bold <font color=\"#ff0000\">red</font></b> &amp; "
+            + "<a href=\"http://a.b/?x=1&amp;y=2\">link</a><br>next  line";
+
+    @Test
+    public void testCompileMarkup() {
+        DefaultDrawableBlockList list = new HtmlTextCompiler(null).compile(MESSAGE);
+        Assert.assertEquals(7, list.size());
+        assertText(list.get(0), "hello ");
+        Assert.assertTrue(assertText(list.get(1), "bold ").bold);
+        SpecialStyleParams red = assertText(list.get(2), "red");
+        Assert.assertTrue(red.bold);
+        Assert.assertEquals(Color.RED, red.foregroundColor);
+        Assert.assertNull(assertText(list.get(3), " & "));
+
+        DefaultDrawableBlock link = list.get(4);
+        Assert.assertEquals(IDrawableBlock.SPAN, link.getType());
+        Assert.assertEquals("link", link.getText().toString());
+        Assert.assertEquals("http://a.b/?x=1&y=2", ((HtmlTextCompiler.LinkSpan) link.getSpan()).getHref());
+        Assert.assertTrue(link.getChildren().get(0).getTextStyleParams().underline);
+
+        Assert.assertEquals(IDrawableBlock.NEXTLINE, list.get(5).getType());
+        assertText(list.get(6), "next line");
+    }
+
+    @Test
+    public void testPlainTextUntouched() {
+        DefaultDrawableBlockList list = new HtmlTextCompiler(null).compile("a  b\nc");
+        Assert.assertEquals(3, list.size());
+        Assert.assertEquals("a  b", list.get(0).getText().toString());
+    }
+
+    @Test
+    public void testSameTextAsFromHtml() {
+        ITextCompiler direct = new HtmlTextCompiler(null) {
+            @Override
+            protected int cacheSize() {
+                return 0;
+            }
+        };
+        ITextCompiler spanned = new ClickSpanTextCompiler(SpannedTextCompiler.getCompiler()) {
+            @Override
+            protected int cacheSize() {
+                return 0;
+            }
+        };
+        IDrawableBlockList first = direct.compile(MESSAGE);
+        IDrawableBlockList second = direct.compile(MESSAGE);
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals(flatText(first), flatText(second));
+        Assert.assertEquals(flatText(spanned.compile(Html.fromHtml(MESSAGE))), flatText(first));
+    }
+
+    @Test
+    public void benchmarkAgainstFromHtml() {
+        final int count = 2000;
+        ITextCompiler direct = new HtmlTextCompiler(null) {
+            @Override
+            protected int cacheSize() {
+                return 0;
+            }
+        };
+        ITextCompiler spanned = new ClickSpanTextCompiler(SpannedTextCompiler.getCompiler()) {
+            @Override
+            protected int cacheSize() {
+                return 0;
+            }
+        };
+        for (int i = 0; i < count; i ++) {
+            direct.compile(MESSAGE).notUse();
+            spanned.compile(Html.fromHtml(MESSAGE)).notUse();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i ++) {
+            direct.compile(MESSAGE).notUse();
+        }
+        final long directCost = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < count; i ++) {
+            spanned.compile(Html.fromHtml(MESSAGE)).notUse();
+        }
+        final long fromHtmlCost = System.nanoTime() - start;
+
+        //直接解析不生成中间的Spanned及其中的span，创建的对象比fromHtml + compiler少
+        Spanned html = Html.fromHtml(MESSAGE);
+        final int htmlSpans = html.getSpans(0, html.length(), Object.class).length;
+        Assert.assertTrue(htmlSpans > 0);
+        IDrawableBlockList directList = direct.compile(MESSAGE);
+        IDrawableBlockList spannedList = spanned.compile(html);
+        Assert.assertTrue(countBlocks(directList) < countBlocks(spannedList) + htmlSpans);
+        directList.notUse();
+        spannedList.notUse();
+        Assert.assertTrue("HtmlTextCompiler: " + directCost / count + "ns, fromHtml + compiler: " + fromHtmlCost / count + "ns",
+                directCost < fromHtmlCost);
+    }
+
+    private static int countBlocks(IDrawableBlockList<?> list) {
+        int count = list.size();
+        for (int i = 0, l = list.size(); i < l; i ++) {
+            DefaultDrawableBlock block = (DefaultDrawableBlock) list.get(i);
+            if (block.getType() == IDrawableBlock.SPAN)
+                count += countBlocks(block.getChildren());
+        }
+        return count;
+    }
+
+    private static String flatText(IDrawableBlockList<?> list) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0, l = list.size(); i < l; i ++) {
+            DefaultDrawableBlock block = (DefaultDrawableBlock) list.get(i);
+            if (block.getType() == IDrawableBlock.NEXTLINE) {
+                sb.append('\n');
+            } else if (block.getType() == IDrawableBlock.SPAN) {
+                sb.append(flatText(block.getChildren()));
+            } else {
+                sb.append(block.getText());
+            }
+        }
+        return sb.toString();
+    }
+
+    private static SpecialStyleParams assertText(DefaultDrawableBlock block, String text) {
+        Assert.assertEquals(IDrawableBlock.TEXT, block.getType());
+        Assert.assertEquals(text, block.getText().toString());
+        return block.getTextStyleParams();
+    }
+}
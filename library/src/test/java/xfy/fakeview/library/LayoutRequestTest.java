@@ -0,0 +1,99 @@
+package xfy.fakeview.library;
+
+import android.graphics.Color;
+import android.graphics.drawable.ColorDrawable;
+import android.text.Spannable;
+import android.text.SpannableStringBuilder;
+import android.text.style.ImageSpan;
+import android.view.View;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import xfy.fakeview.library.text.FTextDrawable;
+import xfy.fakeview.library.text.NewTextView;
+import xfy.fakeview.library.text.compiler.SpannedTextCompiler;
+
+/**
+ * Created by XiongFangyu on 2018/4/16.
+ *
+ * Count layout requests while binding text again and again, like in RecyclerView.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 24)
+public class LayoutRequestTest {
+    private static final int STORM = 200;
+
+    @Test
+    public void testFixedSizeRebindStorm() {
+        NewTextView textView = new NewTextView(RuntimeEnvironment.application);
+        textView.setText("first bind");
+        textView.measure(View.MeasureSpec.makeMeasureSpec(500, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(100, View.MeasureSpec.EXACTLY));
+        textView.layout(0, 0, 500, 100);
+
+        Counter counter = new Counter();
+        textView.getTextDrawable().setLayoutRequestListener(counter);
+        for (int i = 0; i < STORM; i ++) {
+            textView.setText("message " + i + (i % 3 == 0 ? "\nwith another line" : ""));
+        }
+        Assert.assertEquals(0, counter.count);
+    }
+
+    @Test
+    public void testWrapContentRequestOnlyWhenSizeChanged() {
+        NewTextView textView = new NewTextView(RuntimeEnvironment.application);
+        textView.getTextDrawable().setTextCompiler(SpannedTextCompiler.getCompiler());
+        textView.getTextDrawable().setDrawableSize(20);
+        textView.setText(images(1));
+        textView.measure(View.MeasureSpec.makeMeasureSpec(500, View.MeasureSpec.AT_MOST),
+                View.MeasureSpec.makeMeasureSpec(100, View.MeasureSpec.AT_MOST));
+        textView.layout(0, 0, textView.getMeasuredWidth(), textView.getMeasuredHeight());
+        Assert.assertEquals(20, textView.getMeasuredWidth());
+
+        Counter counter = new Counter();
+        textView.getTextDrawable().setLayoutRequestListener(counter);
+        //宽高不变，不需要重新布局
+        textView.setText(images(1));
+        Assert.assertEquals(0, counter.count);
+        //变宽后需要重新布局
+        textView.setText(images(2));
+        Assert.assertEquals(1, counter.count);
+    }
+
+    /**
+     * count个图片，每个宽度为drawableSize
+     */
+    private static CharSequence images(int count) {
+        SpannableStringBuilder builder = new SpannableStringBuilder();
+        for (int i = 0; i < count; i ++) {
+            builder.append("x");
+            builder.setSpan(new ImageSpan(new ColorDrawable(Color.BLUE)), i, i + 1, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+        }
+        return builder;
+    }
+
+    @Test
+    public void testNotMeasuredRequestLayout() {
+        NewTextView textView = new NewTextView(RuntimeEnvironment.application);
+        Counter counter = new Counter();
+        textView.getTextDrawable().setLayoutRequestListener(counter);
+        for (int i = 0; i < STORM; i ++) {
+            textView.setText("message " + i);
+        }
+        Assert.assertEquals(STORM, counter.count);
+    }
+
+    private static class Counter implements FTextDrawable.LayoutRequestListener {
+        int count;
+
+        @Override
+        public void needRequest(FTextDrawable drawable) {
+            count ++;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package xfy.fakeview.library;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.drawable.ColorDrawable;
+import android.support.annotation.NonNull;
+import android.text.Spannable;
+import android.text.SpannableStringBuilder;
+import android.text.style.ImageSpan;
+import android.view.Gravity;
+import android.view.MotionEvent;
+import android.view.View;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import xfy.fakeview.library.text.FTextDrawable;
+import xfy.fakeview.library.text.NewTextView;
+import xfy.fakeview.library.text.TextLayoutSnapshot;
+import xfy.fakeview.library.text.compiler.ClickSpanTextCompiler;
+import xfy.fakeview.library.text.compiler.DefaultTextCompiler;
+import xfy.fakeview.library.text.compiler.SpannedTextCompiler;
+import xfy.fakeview.library.text.param.TextStyle;
+import xfy.fakeview.library.text.utils.FClickableSpan;
+
+/**
+ * Created by XiongFangyu on 2018/4/20.
+ *
+ * Interned layout snapshots shared by many views.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 24)
+public class LayoutSnapshotTest {
+
+    @Before
+    public void setUp() {
+        TextLayoutSnapshot.clearCache();
+    }
+
+    @Test
+    public void testIntern() {
+        TextStyle style = TextStyle.getDefault();
+        TextLayoutSnapshot a = TextLayoutSnapshot.obtain("Reply", DefaultTextCompiler.getCompiler(), style, 300, 1, 0, 0, true);
+        TextLayoutSnapshot b = TextLayoutSnapshot.obtain("Reply", DefaultTextCompiler.getCompiler(), style, 300, 1, 0, 0, true);
+        TextLayoutSnapshot c = TextLayoutSnapshot.obtain("Reply", DefaultTextCompiler.getCompiler(), style, 200, 1, 0, 0, true);
+        Assert.assertSame(a, b);
+        Assert.assertNotSame(a, c);
+        Assert.assertEquals(1, a.getLineCount());
+    }
+
+    @Test
+    public void testNotAffectedBySharedCompileCache() {
+        TextStyle style = TextStyle.getDefault();
+        TextLayoutSnapshot snapshot = TextLayoutSnapshot.obtain("first\nsecond\nthird", DefaultTextCompiler.getCompiler(), style, 300, 2, 0, 0, true);
+        int width = snapshot.getWidth();
+        //measure the cached list of the same text with another width
+        NewTextView other = new NewTextView(RuntimeEnvironment.application);
+        other.setText("first\nsecond\nthird");
+        other.measure(View.MeasureSpec.makeMeasureSpec(3, View.MeasureSpec.AT_MOST),
+                View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+        Assert.assertEquals(width, snapshot.getWidth());
+        Assert.assertEquals(2, snapshot.getLineCount());
+    }
+
+    @Test
+    public void testViewsShareSnapshot() {
+        TextLayoutSnapshot snapshot = TextLayoutSnapshot.obtain("Today", DefaultTextCompiler.getCompiler(), TextStyle.getDefault(), 300, 1, 0, 0, true);
+        Canvas canvas = new Canvas(Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888));
+        for (int i = 0; i < 3; i ++) {
+            NewTextView view = new NewTextView(RuntimeEnvironment.application);
+            view.setLayoutSnapshot(snapshot);
+            view.measure(View.MeasureSpec.makeMeasureSpec(300, View.MeasureSpec.AT_MOST),
+                    View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+            Assert.assertEquals(snapshot.getWidth(), view.getMeasuredWidth());
+            Assert.assertEquals(snapshot.getHeight(), view.getMeasuredHeight());
+            view.layout(0, 0, view.getMeasuredWidth(), view.getMeasuredHeight());
+            view.draw(canvas);
+            Assert.assertSame(snapshot, view.getTextDrawable().getLayoutSnapshot());
+            Assert.assertEquals("Today", view.getTextDrawable().getText());
+
+            view.setText("Yesterday");
+            Assert.assertNull(view.getTextDrawable().getLayoutSnapshot());
+        }
+    }
+
+    @Test
+    public void testGravityAndPressedPerView() {
+        SpannableStringBuilder builder = new SpannableStringBuilder("x link");
+        builder.setSpan(new ImageSpan(new ColorDrawable(Color.BLUE)), 0, 1, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+        builder.setSpan(new FClickableSpan() {
+            @Override
+            public void onClick(View v) {}
+        }.withPressedColor(PRESSED_COLOR), 2, 6, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+        TextLayoutSnapshot snapshot = TextLayoutSnapshot.obtain(builder, new ClickSpanTextCompiler(SpannedTextCompiler.getCompiler()),
+                TextStyle.getDefault(), 300, 1, 20, 0, true);
+        FTextDrawable topLeft = new FTextDrawable();
+        topLeft.setLayoutSnapshot(snapshot);
+        topLeft.setBounds(0, 0, 300, 100);
+        FTextDrawable center = new FTextDrawable();
+        center.setLayoutSnapshot(snapshot);
+        center.setGravity(Gravity.CENTER);
+        center.setBounds(0, 0, 300, 100);
+
+        RecordCanvas c1 = new RecordCanvas();
+        topLeft.draw(c1);
+        RecordCanvas c2 = new RecordCanvas();
+        center.draw(c2);
+        final int dx = (300 - snapshot.getWidth()) / 2;
+        final int dy = (100 - snapshot.getHeight()) / 2;
+        Assert.assertTrue(dx > 0 && dy > 0);
+        float[] image = c1.find(Color.BLUE);
+        Assert.assertNotNull(image);
+        Assert.assertArrayEquals(new float[] {image[0] + dx, image[1] + dy, Color.BLUE}, c2.find(Color.BLUE), 0);
+
+        //按下居中的span，只有这个drawable绘制按下状态
+        View view = new View(RuntimeEnvironment.application);
+        Assert.assertTrue(center.onTouchEvent(view, MotionEvent.obtain(0, 0, MotionEvent.ACTION_DOWN, dx + 20, dy + 10, 0)));
+        c1 = new RecordCanvas();
+        topLeft.draw(c1);
+        c2 = new RecordCanvas();
+        center.draw(c2);
+        Assert.assertNull(c1.find(PRESSED_COLOR));
+        float[] pressed = c2.find(PRESSED_COLOR);
+        Assert.assertNotNull(pressed);
+        Assert.assertEquals(dx + 20, pressed[0], 0);
+
+        //另一个drawable按下原位置不会命中
+        topLeft.onTouchEvent(view, MotionEvent.obtain(0, 0, MotionEvent.ACTION_DOWN, dx + 20, dy + 10, 0));
+        c1 = new RecordCanvas();
+        topLeft.draw(c1);
+        Assert.assertNull(c1.find(PRESSED_COLOR));
+
+        center.onTouchEvent(view, MotionEvent.obtain(0, 0, MotionEvent.ACTION_CANCEL, dx + 20, dy + 10, 0));
+        c2 = new RecordCanvas();
+        center.draw(c2);
+        Assert.assertNull(c2.find(PRESSED_COLOR));
+    }
+
+    private static final int PRESSED_COLOR = 0x80000000;
+
+    /**
+     * 记录drawRect在画布上的位置，只记录平移
+     */
+    private static class RecordCanvas extends Canvas {
+        final List<float[]> rects = new ArrayList<>();
+        final List<float[]> stack = new ArrayList<>();
+        float tx, ty;
+
+        RecordCanvas() {
+            super(Bitmap.createBitmap(300, 100, Bitmap.Config.ARGB_8888));
+        }
+
+        @Override
+        public int save() {
+            super.save();
+            stack.add(new float[] {tx, ty});
+            return stack.size();
+        }
+
+        @Override
+        public void restore() {
+            super.restore();
+            pop();
+        }
+
+        @Override
+        public void restoreToCount(int saveCount) {
+            while (stack.size() >= saveCount) {
+                super.restore();
+                pop();
+            }
+        }
+
+        private void pop() {
+            float[] t = stack.remove(stack.size() - 1);
+            tx = t[0];
+            ty = t[1];
+        }
+
+        @Override
+        public void translate(float dx, float dy) {
+            super.translate(dx, dy);
+            tx += dx;
+            ty += dy;
+        }
+
+        @Override
+        public void drawRect(@NonNull Rect r, @NonNull Paint paint) {
+            super.drawRect(r, paint);
+            rects.add(new float[] {r.left + tx, r.top + ty, paint.getColor()});
+        }
+
+        float[] find(int color) {
+            for (float[] r : rects) {
+                if ((int) r[2] == color)
+                    return r;
+            }
+            return null;
+        }
+    }
+}
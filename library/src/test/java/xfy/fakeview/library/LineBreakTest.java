@@ -0,0 +1,106 @@
+package xfy.fakeview.library;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import xfy.fakeview.library.text.block.DefaultDrawableBlock;
+import xfy.fakeview.library.text.utils.LineBreakUtils;
+import xfy.fakeview.library.text.utils.MeasureTextUtils;
+
+/**
+ * Created by XiongFangyu on 2018/4/20.
+ *
+ * Word-aware line breaking with fixed-width characters.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 24)
+public class LineBreakTest {
+    private static final int W = 10;
+
+    @Test
+    public void testComputeBreaks() {
+        long[] breaks = LineBreakUtils.computeBreaks("ab cd");
+        Assert.assertNotNull(breaks);
+        Assert.assertFalse(LineBreakUtils.canBreakBefore(breaks, 1));
+        Assert.assertTrue(LineBreakUtils.canBreakBefore(breaks, 2));
+        Assert.assertTrue(LineBreakUtils.canBreakBefore(breaks, 3));
+        Assert.assertFalse(LineBreakUtils.canBreakBefore(breaks, 4));
+        //pure CJK can break anywhere
+        Assert.assertNull(LineBreakUtils.computeBreaks("中文换行"));
+        long[] mixed = LineBreakUtils.computeBreaks("ab中cd");
+        Assert.assertTrue(LineBreakUtils.canBreakBefore(mixed, 2));
+        Assert.assertTrue(LineBreakUtils.canBreakBefore(mixed, 3));
+        Assert.assertFalse(LineBreakUtils.canBreakBefore(mixed, 4));
+        //long text uses more than one word
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i ++)
+            sb.append(i % 10 == 9 ? ' ' : 'a');
+        long[] longBreaks = LineBreakUtils.computeBreaks(sb);
+        Assert.assertTrue(LineBreakUtils.canBreakBefore(longBreaks, 70));
+        Assert.assertFalse(LineBreakUtils.canBreakBefore(longBreaks, 71));
+        Assert.assertEquals(90, LineBreakUtils.lastBreak(longBreaks, 0, 95));
+    }
+
+    @Test
+    public void testWrapWholeWord() {
+        long flag = measure("hello world", 0, 80);
+        Assert.assertEquals(2, MeasureTextUtils.getLines(flag));
+        Assert.assertEquals(50, MeasureTextUtils.getCurrentLeft(flag));
+        Assert.assertEquals(60, MeasureTextUtils.getMaxWidth(flag));
+    }
+
+    @Test
+    public void testCharBreakWithoutBreaks() {
+        long flag = MeasureTextUtils.measureText(start(0), 0, 80, widths(11), "hello world", null);
+        Assert.assertEquals(2, MeasureTextUtils.getLines(flag));
+        Assert.assertEquals(30, MeasureTextUtils.getCurrentLeft(flag));
+    }
+
+    @Test
+    public void testLongWordFallback() {
+        long flag = measure("abcdefghijkl", 0, 50);
+        Assert.assertEquals(3, MeasureTextUtils.getLines(flag));
+        Assert.assertEquals(20, MeasureTextUtils.getCurrentLeft(flag));
+    }
+
+    @Test
+    public void testMoveWordFromMiddleOfLine() {
+        long flag = measure("abcd", 30, 50);
+        Assert.assertEquals(2, MeasureTextUtils.getLines(flag));
+        Assert.assertEquals(40, MeasureTextUtils.getCurrentLeft(flag));
+    }
+
+    @Test
+    public void testHangingSpace() {
+        long flag = measure("abcde fgh", 0, 50);
+        Assert.assertEquals(2, MeasureTextUtils.getLines(flag));
+        Assert.assertEquals(30, MeasureTextUtils.getCurrentLeft(flag));
+        Assert.assertEquals(50, MeasureTextUtils.getMaxWidth(flag));
+    }
+
+    @Test
+    public void testBlockKeepsBreaks() {
+        DefaultDrawableBlock block = DefaultDrawableBlock.createTextBlock("hello world", null);
+        Assert.assertNotNull(block.getLineBreaks());
+        Assert.assertTrue(LineBreakUtils.canBreakBefore(block.getLineBreaks(), 6));
+    }
+
+    private static long measure(String text, int currentLeft, int right) {
+        return MeasureTextUtils.measureText(start(currentLeft), 0, right, widths(text.length()), text,
+                LineBreakUtils.computeBreaks(text));
+    }
+
+    private static long start(int currentLeft) {
+        return MeasureTextUtils.setLines(MeasureTextUtils.setCurrentLeft(0, currentLeft), 1);
+    }
+
+    private static float[] widths(int len) {
+        float[] widths = new float[len];
+        for (int i = 0; i < len; i ++)
+            widths[i] = W;
+        return widths;
+    }
+}
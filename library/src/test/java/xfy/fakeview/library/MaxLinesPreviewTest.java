@@ -0,0 +1,176 @@
+package xfy.fakeview.library;
+
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.ShapeDrawable;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+
+import xfy.fakeview.library.text.FTextDrawable;
+import xfy.fakeview.library.text.block.DefaultDrawableBlock;
+import xfy.fakeview.library.text.block.DefaultDrawableBlockList;
+import xfy.fakeview.library.text.compiler.DefaultTextCompiler;
+import xfy.fakeview.library.text.param.SpecialStyleParams;
+import xfy.fakeview.library.text.utils.MeasureTextUtils;
+
+/**
+ * Created by XiongFangyu on 2018/4/20.
+ *
+ * With maxLines set, measuring stops after maxLines + 1 lines and long text is compiled by prefix.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 24)
+public class MaxLinesPreviewTest {
+
+    @Test
+    public void testMeasureStopsAtBudget() {
+        float[] widths = new float[100];
+        Arrays.fill(widths, 10);
+        long flag = MeasureTextUtils.setLines(0, 1);
+        long all = MeasureTextUtils.measureText(flag, 0, 100, widths, 0);
+        Assert.assertEquals(10, MeasureTextUtils.getLines(all));
+        long part = MeasureTextUtils.measureText(flag, 0, 100, widths, 0, 3);
+        Assert.assertEquals(MeasureTextUtils.STATE_SUCCESS, MeasureTextUtils.getState(part));
+        Assert.assertEquals(3, MeasureTextUtils.getLines(part));
+    }
+
+    @Test
+    public void testPrefixCompile() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 3000; i ++) {
+            sb.append("line\n");
+        }
+        final String text = sb.toString();
+        RangeCompiler compiler = new RangeCompiler();
+        FTextDrawable drawable = newDrawable(compiler, 3, text);
+        Assert.assertTrue(compiler.lastEnd < text.length());
+        Assert.assertEquals(1, compiler.count);
+        Assert.assertTrue(drawable.getLineCount() > 3);
+        final int height = drawable.getIntrinsicHeight();
+
+        FTextDrawable full = newDrawable(new RangeCompiler(), Integer.MAX_VALUE, text);
+        final int allLines = full.getLineCount();
+        Assert.assertTrue(allLines > 3000);
+        Assert.assertTrue(drawable.getLineCount() < allLines);
+        full.setMaxLines(3);
+        Assert.assertEquals(height, full.getIntrinsicHeight());
+
+        //content width needs the whole text
+        drawable.getMaxContentWidth();
+        Assert.assertEquals(2, compiler.count);
+        Assert.assertEquals(text.length(), compiler.lastEnd);
+        Assert.assertEquals(height, drawable.getIntrinsicHeight());
+
+        drawable.setMaxLines(0);
+        Assert.assertEquals(allLines, drawable.getLineCount());
+    }
+
+    @Test
+    public void testPrefixNotCached() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 3000; i ++) {
+            sb.append("line\n");
+        }
+        final String text = sb.toString();
+        RangeCompiler compiler = new RangeCompiler();
+        DefaultDrawableBlockList prefix = compiler.compile(text, 0, 100);
+        Assert.assertEquals(100, prefix.getEnd());
+        Assert.assertFalse(compiler.isCached(text));
+
+        DefaultDrawableBlockList full = compiler.compile(text);
+        Assert.assertNotSame(prefix, full);
+        Assert.assertEquals(text.length(), full.getEnd());
+        Assert.assertTrue(compiler.isCached(text));
+        Assert.assertSame(full, compiler.compile(text));
+        //a prefix request does not hit the full result
+        Assert.assertNotSame(full, compiler.compile(text, 0, 100));
+    }
+
+    @Test
+    public void testFallbackToFullCompile() {
+        //blocks 1px wide: the prefix estimated from the text size (10px per char) fits in 2 lines
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i ++) {
+            sb.append('x');
+        }
+        final String text = sb.toString();
+        NarrowCompiler compiler = new NarrowCompiler();
+        FTextDrawable drawable = new FTextDrawable();
+        drawable.setTextCompiler(compiler);
+        drawable.setTextSize(40);
+        drawable.setDrawableSize(20);
+        drawable.setMaxLines(3);
+        drawable.setMaxWidth(200);
+        drawable.setMaxHeight(100000);
+        drawable.setAutoMeasure(true);
+        drawable.setText(text);
+        Assert.assertEquals(2, compiler.count);
+        Assert.assertTrue(compiler.firstEnd < text.length());
+        Assert.assertEquals(text.length(), compiler.lastEnd);
+        //200 blocks per line, measured up to maxLines + 1
+        Assert.assertEquals(4, drawable.getLineCount());
+        Assert.assertEquals(60, drawable.getIntrinsicHeight());
+    }
+
+    private static FTextDrawable newDrawable(RangeCompiler compiler, int maxLines, String text) {
+        FTextDrawable drawable = new FTextDrawable();
+        drawable.setTextCompiler(compiler);
+        drawable.setDrawableSize(20);
+        drawable.setMaxLines(maxLines);
+        drawable.setMaxWidth(200);
+        drawable.setMaxHeight(100000);
+        drawable.setAutoMeasure(true);
+        drawable.setText(text);
+        return drawable;
+    }
+
+    private static class RangeCompiler extends DefaultTextCompiler {
+        int count;
+        int lastEnd;
+
+        RangeCompiler() {
+            super(null);
+        }
+
+        @Override
+        public DefaultDrawableBlockList compile(@NonNull CharSequence text, int start, int end) {
+            count ++;
+            lastEnd = Math.min(end, text.length());
+            return super.compile(text, start, end);
+        }
+    }
+
+    private static class NarrowCompiler extends RangeCompiler {
+        int firstEnd = -1;
+        final Drawable narrow;
+
+        NarrowCompiler() {
+            ShapeDrawable d = new ShapeDrawable();
+            d.setIntrinsicWidth(1);
+            d.setIntrinsicHeight(20);
+            narrow = d;
+        }
+
+        @Override
+        public DefaultDrawableBlockList compile(@NonNull CharSequence text, int start, int end) {
+            if (firstEnd < 0)
+                firstEnd = Math.min(end, text.length());
+            return super.compile(text, start, end);
+        }
+
+        @Override
+        public void compileInternal(@NonNull DefaultDrawableBlockList list, @NonNull CharSequence text, int start, int end,
+                                    @Nullable SpecialStyleParams specialStyleParams) {
+            for (int i = start; i < end; i ++) {
+                list.add(DefaultDrawableBlock.createSpecialDrawableBlock(text.subSequence(i, i + 1), narrow));
+            }
+        }
+    }
+}
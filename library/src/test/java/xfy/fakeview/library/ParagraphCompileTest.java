@@ -0,0 +1,246 @@
+package xfy.fakeview.library;
+
+import android.graphics.Color;
+import android.graphics.drawable.ColorDrawable;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.TextPaint;
+import android.view.MotionEvent;
+import android.view.View;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import xfy.fakeview.library.text.FTextDrawable;
+import xfy.fakeview.library.text.block.DefaultDrawableBlock;
+import xfy.fakeview.library.text.block.DefaultDrawableBlockList;
+import xfy.fakeview.library.text.block.IDrawableBlock;
+import xfy.fakeview.library.text.compiler.DrawableTextCompiler;
+import xfy.fakeview.library.text.compiler.EntityTextCompiler;
+import xfy.fakeview.library.text.compiler.ITextCompiler;
+import xfy.fakeview.library.text.compiler.ParagraphTextCompiler;
+import xfy.fakeview.library.text.drawer.TextDrawer;
+import xfy.fakeview.library.text.param.ImmutableParams;
+import xfy.fakeview.library.text.param.SpecialStyleParams;
+import xfy.fakeview.library.text.utils.Chip;
+import xfy.fakeview.library.text.utils.LineUtils;
+import xfy.fakeview.library.text.utils.MeasureTextUtils;
+
+/**
+ * Created by XiongFangyu on 2018/4/12.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 24)
+public class ParagraphCompileTest {
+    private static final Chip VIP = new Chip("VIP", Color.RED, Color.WHITE, 4, 10, 0.5f);
+
+    @Test
+    public void testEditMiddleParagraph() {
+        ParagraphTextCompiler compiler = new ParagraphTextCompiler(new TextOnlyCompiler());
+        String old = "first\nsecond\nthird";
+        DefaultDrawableBlockList list = compiler.compile(old);
+        Assert.assertEquals(5, list.size());
+        DefaultDrawableBlock first = list.get(0);
+        DefaultDrawableBlock third = list.get(4);
+
+        String now = "first\nsec-ond\nthird";
+        Assert.assertTrue(compiler.compileChanged(list, old, now));
+        assertParagraphs(list, "first", "sec-ond", "third");
+        Assert.assertSame(first, list.get(0));
+        Assert.assertSame(third, list.get(4));
+    }
+
+    @Test
+    public void testInsertAndDeleteNewLine() {
+        ParagraphTextCompiler compiler = new ParagraphTextCompiler(new TextOnlyCompiler());
+        String old = "ab\ncd";
+        DefaultDrawableBlockList list = compiler.compile(old);
+        DefaultDrawableBlock last = list.get(2);
+
+        String now = "a\nb\ncd";
+        Assert.assertTrue(compiler.compileChanged(list, old, now));
+        assertParagraphs(list, "a", "b", "cd");
+        Assert.assertSame(last, list.get(4));
+
+        old = now;
+        now = "a\nbcd";
+        Assert.assertTrue(compiler.compileChanged(list, old, now));
+        assertParagraphs(list, "a", "bcd");
+
+        old = now;
+        now = "a\nbcd\n";
+        Assert.assertTrue(compiler.compileChanged(list, old, now));
+        assertParagraphs(list, "a", "bcd", "");
+    }
+
+    @Test
+    public void testRemeasureChangedParagraph() {
+        ParagraphTextCompiler compiler = new ParagraphTextCompiler(new TextOnlyCompiler());
+        String old = "first\nsecond\nthird";
+        DefaultDrawableBlockList list = compiler.compile(old);
+        ImmutableParams params = new ImmutableParams();
+        RecordPaint paint = new RecordPaint();
+        params.paint = paint;
+        params.right = 30;
+        long flag = measure(params, list);
+        //每行3个字符
+        Assert.assertEquals(6, MeasureTextUtils.getLines(flag));
+        DefaultDrawableBlockList third = list.get(4).getChildren();
+        int[] thirdLines = Arrays.copyOf(third.getLinesHeight(), 2);
+
+        paint.measured.clear();
+        String now = "first\nsec-ond\nthird";
+        Assert.assertTrue(compiler.compileChanged(list, old, now));
+        flag = measure(params, list);
+        Assert.assertEquals(Arrays.asList("sec-ond"), paint.measured);
+        Assert.assertEquals(7, MeasureTextUtils.getLines(flag));
+        //之后段落的行信息后移一行
+        Assert.assertSame(third, list.get(4).getChildren());
+        int[] lines = list.getLinesHeight();
+        Assert.assertEquals(thirdLines[0], lines[5]);
+        Assert.assertEquals(thirdLines[1], lines[6]);
+    }
+
+    @Test
+    public void testReplaceUpdatesCounts() {
+        ParagraphTextCompiler compiler = new ParagraphTextCompiler(new TextOnlyCompiler());
+        String old = "a\nb";
+        DefaultDrawableBlockList list = compiler.compile(old);
+        Assert.assertFalse(list.hasDrawable());
+
+        String now = "a\nimg";
+        Assert.assertTrue(compiler.compileChanged(list, old, now));
+        Assert.assertTrue(list.hasDrawable());
+
+        old = now;
+        now = "a\nb";
+        Assert.assertTrue(compiler.compileChanged(list, old, now));
+        Assert.assertFalse(list.hasDrawable());
+        Assert.assertFalse(list.hasSpan());
+        Assert.assertTrue(list.canSaveToCache());
+    }
+
+    @Test
+    public void testEditKeepsClickSpans() {
+        DrawableTextCompiler inner = new DrawableTextCompiler(null);
+        inner.setChipAdapter(new DrawableTextCompiler.ChipAdapter() {
+            @Override
+            public Chip parseChip(@NonNull CharSequence text) {
+                return "[vip]".contentEquals(text) ? VIP : null;
+            }
+        });
+        EntityTextCompiler compiler = new EntityTextCompiler(inner);
+        final List<String> clicked = new ArrayList<>();
+        compiler.setOnEntityClickListener(new EntityTextCompiler.OnEntityClickListener() {
+            @Override
+            public void onEntityClick(View v, int type, String entity) {
+                clicked.add(entity);
+            }
+        });
+        FTextDrawable drawable = new FTextDrawable();
+        drawable.setSelfMeasure(true);
+        drawable.setTextCompiler(compiler);
+        drawable.setDrawableSize(20);
+        drawable.setBounds(0, 0, 300, 200);
+        drawable.setEditingText("[vip]\n@bob hi\n@carl");
+        drawable.setEditingText("[vip]\n@bob hi\n@carl!");
+        drawable.getIntrinsicHeight();
+        Assert.assertEquals(3, drawable.getLineCount());
+        View view = new View(RuntimeEnvironment.application);
+        Assert.assertEquals("@bob", tap(drawable, view, 30, clicked));
+        Assert.assertEquals("@carl", tap(drawable, view, 50, clicked));
+
+        drawable.setEditingText("[vip]\n@alice hi\n@carl!");
+        drawable.getIntrinsicHeight();
+        Assert.assertEquals("@alice", tap(drawable, view, 30, clicked));
+
+        //插入段落后@carl下移一行
+        drawable.setEditingText("[vip]\nnew\n@alice hi\n@carl!");
+        drawable.getIntrinsicHeight();
+        Assert.assertEquals(4, drawable.getLineCount());
+        Assert.assertNull(tap(drawable, view, 30, clicked));
+        Assert.assertEquals("@alice", tap(drawable, view, 50, clicked));
+        Assert.assertEquals("@carl", tap(drawable, view, 70, clicked));
+    }
+
+    private static String tap(FTextDrawable drawable, View view, int y, List<String> clicked) {
+        clicked.clear();
+        drawable.onTouchEvent(view, MotionEvent.obtain(0, 0, MotionEvent.ACTION_DOWN, 0, y, 0));
+        drawable.onTouchEvent(view, MotionEvent.obtain(0, 0, MotionEvent.ACTION_UP, 0, y, 0));
+        Assert.assertTrue(clicked.size() <= 1);
+        return clicked.isEmpty() ? null : clicked.get(0);
+    }
+
+    private static long measure(ImmutableParams params, DefaultDrawableBlockList list) {
+        return TextDrawer.measureText(params, list, LineUtils.combime(20, 16), 0, 0, 0, params.right, true, false);
+    }
+
+    private static void assertParagraphs(DefaultDrawableBlockList list, String... paragraphs) {
+        Assert.assertEquals(paragraphs.length * 2 - 1, list.size());
+        for (int i = 0; i < paragraphs.length; i ++) {
+            DefaultDrawableBlock block = list.get(i * 2);
+            Assert.assertEquals(IDrawableBlock.PARAGRAPH, block.getType());
+            Assert.assertEquals(paragraphs[i], block.getText().toString());
+            if (i > 0)
+                Assert.assertEquals(IDrawableBlock.NEXTLINE, list.get(i * 2 - 1).getType());
+        }
+    }
+
+    private static class TextOnlyCompiler implements ITextCompiler<DefaultDrawableBlockList> {
+        @Override
+        public void setInnerCompiler(@Nullable ITextCompiler<DefaultDrawableBlockList> compiler) {}
+
+        @Override
+        public DefaultDrawableBlockList compile(@NonNull CharSequence charSequence) {
+            return compile(charSequence, 0, charSequence.length());
+        }
+
+        @Override
+        public DefaultDrawableBlockList compile(@NonNull CharSequence text, int start, int end) {
+            DefaultDrawableBlockList list = DefaultDrawableBlockList.obtain(true, start, end);
+            compileInternal(list, text, start, end, null);
+            return list;
+        }
+
+        @Override
+        public void compileInternal(@NonNull DefaultDrawableBlockList list, @NonNull CharSequence text, int start, int end, @Nullable SpecialStyleParams specialStyleParams) {
+            final CharSequence t = text.subSequence(start, end);
+            if ("img".contentEquals(t))
+                list.add(DefaultDrawableBlock.createSpecialDrawableBlock(t, new ColorDrawable(Color.RED)));
+            else
+                list.add(DefaultDrawableBlock.createTextBlock(t, specialStyleParams));
+        }
+    }
+
+    /**
+     * 每个字符10px，记录计算过的文字
+     */
+    private static class RecordPaint extends TextPaint {
+        final List<String> measured = new ArrayList<>();
+
+        @Override
+        public int getTextWidths(CharSequence text, int start, int end, float[] widths) {
+            measured.add(text.subSequence(start, end).toString());
+            Arrays.fill(widths, 0, end - start, 10);
+            return end - start;
+        }
+
+        @Override
+        public int getTextWidths(String text, int start, int end, float[] widths) {
+            return getTextWidths((CharSequence) text, start, end, widths);
+        }
+
+        @Override
+        public int getTextWidths(String text, float[] widths) {
+            return getTextWidths(text, 0, text.length(), widths);
+        }
+    }
+}
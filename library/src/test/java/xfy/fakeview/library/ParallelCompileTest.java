@@ -0,0 +1,109 @@
+package xfy.fakeview.library;
+
+import android.graphics.Color;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.style.ForegroundColorSpan;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import xfy.fakeview.library.text.block.DefaultDrawableBlock;
+import xfy.fakeview.library.text.block.DefaultDrawableBlockList;
+import xfy.fakeview.library.text.compiler.DefaultTextCompiler;
+import xfy.fakeview.library.text.compiler.DrawableTextCompiler;
+import xfy.fakeview.library.text.compiler.ParallelTextCompiler;
+import xfy.fakeview.library.text.compiler.SpannedTextCompiler;
+
+/**
+ * Created by XiongFangyu on 2018/4/20.
+ *
+ * Parallel compile must produce the same blocks as a sequential compile.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 24)
+public class ParallelCompileTest {
+
+    @Test
+    public void testSameAsSequential() {
+        StringBuilder sb = new StringBuilder();
+        int i = 0;
+        while (sb.length() < ParallelTextCompiler.MIN_PART_LENGTH * 8) {
+            sb.append("line ").append(i ++).append(" [x] word\n");
+            if (i % 7 == 0)
+                sb.append("start [a\nb] end\n\n");
+        }
+        String text = sb.toString();
+        DefaultDrawableBlockList expected = newDrawableCompiler().compile(text);
+        DrawableTextCompiler compiler = newDrawableCompiler();
+        DefaultDrawableBlockList actual = new ParallelTextCompiler(compiler, 4).compile(text);
+        assertSameBlocks(expected, actual);
+        Assert.assertEquals(expected.hasDrawable(), actual.hasDrawable());
+        Assert.assertEquals(text.length(), actual.getEnd());
+        Assert.assertTrue(actual.isRoot());
+        Assert.assertTrue(compiler.isCached(text));
+        expected.notUse();
+        actual.notUse();
+    }
+
+    @Test
+    public void testSpansAcrossLines() {
+        SpannableStringBuilder builder = new SpannableStringBuilder();
+        while (builder.length() < ParallelTextCompiler.MIN_PART_LENGTH * 8) {
+            final int start = builder.length();
+            builder.append("red\nred\nred\n");
+            builder.setSpan(new ForegroundColorSpan(Color.RED), start, builder.length() - 2, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+            builder.append("plain text\n");
+        }
+        DefaultDrawableBlockList expected = new DefaultTextCompiler(SpannedTextCompiler.getCompiler()).compile(builder);
+        DefaultDrawableBlockList actual = new ParallelTextCompiler(new DefaultTextCompiler(SpannedTextCompiler.getCompiler()), 4).compile(builder);
+        assertSameBlocks(expected, actual);
+        expected.notUse();
+        actual.notUse();
+    }
+
+    private static DrawableTextCompiler newDrawableCompiler() {
+        DrawableTextCompiler compiler = new DrawableTextCompiler(null);
+        compiler.setResourceAdapter(new DrawableTextCompiler.ResourceAdapter() {
+            @Override
+            public void beforeCompile() {
+            }
+
+            @Override
+            public int parseRes(@NonNull CharSequence text) {
+                if ("[x]".contentEquals(text))
+                    return 1;
+                if ("[a\nb]".contentEquals(text))
+                    return 2;
+                return 0;
+            }
+
+            @Override
+            public Drawable parseDrawable(@NonNull CharSequence text) {
+                return null;
+            }
+        });
+        return compiler;
+    }
+
+    private static void assertSameBlocks(DefaultDrawableBlockList expected, DefaultDrawableBlockList actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0, l = expected.size(); i < l; i ++) {
+            DefaultDrawableBlock e = expected.get(i);
+            DefaultDrawableBlock a = actual.get(i);
+            Assert.assertEquals(e.getType(), a.getType());
+            Assert.assertEquals(e.getText().toString(), a.getText().toString());
+            Assert.assertEquals(e.getDrawableRes(), a.getDrawableRes());
+            Assert.assertEquals(e.getTextStyleParams() == null, a.getTextStyleParams() == null);
+            if (e.getTextStyleParams() != null)
+                Assert.assertEquals(e.getTextStyleParams().foregroundColor, a.getTextStyleParams().foregroundColor);
+            if (e.getChildren() != null)
+                assertSameBlocks(e.getChildren(), a.getChildren());
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package xfy.fakeview.library;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+import android.text.Spannable;
+import android.text.SpannableStringBuilder;
+import android.text.style.ImageSpan;
+import android.view.MotionEvent;
+import android.view.View;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import xfy.fakeview.library.fview.FViewRootImpl;
+import xfy.fakeview.library.fview.normal.FTextView;
+import xfy.fakeview.library.fview.utils.FMeasureSpec;
+import xfy.fakeview.library.text.FTextDrawable;
+import xfy.fakeview.library.text.NewTextView;
+import xfy.fakeview.library.text.compiler.SpannedTextCompiler;
+import xfy.fakeview.library.text.param.ClickSpanBlockInfo;
+import xfy.fakeview.library.text.param.DrawableRects;
+import xfy.fakeview.library.text.param.ImmutableParams;
+import xfy.fakeview.library.text.utils.FClickableSpan;
+import xfy.fakeview.library.text.utils.LineUtils;
+import xfy.fakeview.library.text.utils.MeasureTextUtils;
+
+/**
+ * Created by XiongFangyu on 2018/4/20.
+ *
+ * Drawable changes inside text only invalidate the drawable's area.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 24)
+public class PartialInvalidateTest {
+
+    @Test
+    public void testDrawableInvalidatesItsRect() {
+        ColorDrawable image = new ColorDrawable(Color.BLUE);
+        SpannableStringBuilder builder = new SpannableStringBuilder("first line\nsecond x line");
+        builder.setSpan(new ImageSpan(image), 18, 19, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+
+        NewTextView textView = new NewTextView(RuntimeEnvironment.application);
+        textView.getTextDrawable().setTextCompiler(SpannedTextCompiler.getCompiler());
+        textView.getTextDrawable().setDrawableSize(20);
+        textView.setText(builder);
+        textView.measure(View.MeasureSpec.makeMeasureSpec(500, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(200, View.MeasureSpec.EXACTLY));
+        textView.layout(0, 0, 500, 200);
+        FTextDrawable drawable = textView.getTextDrawable();
+        drawable.draw(new Canvas(Bitmap.createBitmap(500, 200, Bitmap.Config.ARGB_8888)));
+
+        RecordCallback callback = new RecordCallback();
+        drawable.setCallback(callback);
+        drawable.invalidateDrawable(image);
+        Assert.assertEquals(1, callback.count);
+        Assert.assertFalse(callback.dirty.isEmpty());
+        Assert.assertTrue(callback.dirty.width() < drawable.getBounds().width());
+        Assert.assertTrue(drawable.getBounds().contains(callback.dirty));
+
+        //not invalidating any more
+        Assert.assertEquals(drawable.getBounds(), drawable.getDirtyBounds());
+
+        //unknown drawables invalidate everything
+        drawable.invalidateDrawable(new ColorDrawable(Color.RED));
+        Assert.assertEquals(2, callback.count);
+        Assert.assertEquals(drawable.getBounds(), callback.dirty);
+    }
+
+    @Test
+    public void testDrawableRectsUnion() {
+        DrawableRects rects = new DrawableRects();
+        Object a = new Object();
+        Object b = new Object();
+        for (int i = 0; i < 10; i ++) {
+            rects.add(i % 2 == 0 ? a : b, i * 10, 0, i * 10 + 5, 5);
+        }
+        Rect out = new Rect();
+        Assert.assertTrue(rects.getBounds(a, out));
+        Assert.assertEquals(new Rect(0, 0, 85, 5), out);
+        rects.clear();
+        Assert.assertFalse(rects.getBounds(b, out));
+    }
+
+    @Test
+    public void testSpanLineRectsUseLineHeights() {
+        ImmutableParams params = new ImmutableParams();
+        params.left = 0;
+        params.top = 5;
+        params.right = 100;
+        params.lineSpace = 2;
+        params.lineInfos = new int[] {LineUtils.combime(30, 20), LineUtils.combime(10, 8), LineUtils.combime(20, 15)};
+        long flag = MeasureTextUtils.setLines(MeasureTextUtils.setCurrentLeft(0, 40), 2);
+        flag = MeasureTextUtils.setMaxHeight(flag, 20);
+        ClickSpanBlockInfo info = new ClickSpanBlockInfo(null, 60, 0, 1, flag);
+
+        Rect rect = new Rect();
+        Assert.assertTrue(info.getLineRect(params, 0, rect));
+        Assert.assertEquals(new Rect(60, 37, 100, 47), rect);
+        Assert.assertTrue(info.getLineRect(params, 1, rect));
+        Assert.assertEquals(new Rect(0, 49, 40, 69), rect);
+        Assert.assertFalse(info.getLineRect(params, 2, rect));
+        Assert.assertTrue(info.getBounds(params, rect));
+        Assert.assertEquals(new Rect(0, 37, 100, 69), rect);
+    }
+
+    @Test
+    public void testReleaseOutsideClearsPressed() {
+        FViewRootImpl root = new FViewRootImpl(RuntimeEnvironment.application);
+        FTextView textView = new FTextView(RuntimeEnvironment.application, root);
+        textView.setUseTextDrawable(true);
+        FTextDrawable drawable = textView.getTextDrawable();
+        drawable.setDrawableSize(20);
+        SpannableStringBuilder builder = new SpannableStringBuilder("x link");
+        builder.setSpan(new ImageSpan(new ColorDrawable(Color.BLUE)), 0, 1, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+        builder.setSpan(new FClickableSpan() {
+            @Override
+            public void onClick(View v) {}
+        }.withPressedColor(0x80000000), 2, 6, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+        textView.setText(builder);
+        textView.measure(FMeasureSpec.makeMeasureSpec(300, FMeasureSpec.EXACTLY),
+                FMeasureSpec.makeMeasureSpec(100, FMeasureSpec.EXACTLY));
+        textView.layout(0, 0, 300, 100);
+        RecordCallback callback = new RecordCallback();
+        drawable.setCallback(callback);
+
+        //the span starts after the 20px image
+        textView.dispatchTouchEvent(MotionEvent.obtain(0, 0, MotionEvent.ACTION_DOWN, 20, 10, 0));
+        Assert.assertEquals(1, callback.count);
+        textView.dispatchTouchEvent(MotionEvent.obtain(0, 0, MotionEvent.ACTION_UP, 500, 500, 0));
+        Assert.assertEquals(2, callback.count);
+        //nothing pressed any more
+        textView.dispatchTouchEvent(MotionEvent.obtain(0, 0, MotionEvent.ACTION_CANCEL, 500, 500, 0));
+        Assert.assertEquals(2, callback.count);
+
+        textView.dispatchTouchEvent(MotionEvent.obtain(0, 0, MotionEvent.ACTION_DOWN, 20, 10, 0));
+        Assert.assertEquals(3, callback.count);
+        textView.dispatchTouchEvent(MotionEvent.obtain(0, 0, MotionEvent.ACTION_CANCEL, 20, 10, 0));
+        Assert.assertEquals(4, callback.count);
+    }
+
+    private static class RecordCallback implements Drawable.Callback {
+        final Rect dirty = new Rect();
+        int count;
+
+        @Override
+        public void invalidateDrawable(@NonNull Drawable who) {
+            count ++;
+            dirty.set(who.getDirtyBounds());
+        }
+
+        @Override
+        public void scheduleDrawable(@NonNull Drawable who, @NonNull Runnable what, long when) {
+        }
+
+        @Override
+        public void unscheduleDrawable(@NonNull Drawable who, @NonNull Runnable what) {
+        }
+    }
+}
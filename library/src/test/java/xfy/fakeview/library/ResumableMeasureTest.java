@@ -0,0 +1,238 @@
+package xfy.fakeview.library;
+
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+import android.text.TextPaint;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+
+import xfy.fakeview.library.text.FTextDrawable;
+import xfy.fakeview.library.text.block.DefaultDrawableBlock;
+import xfy.fakeview.library.text.block.DefaultDrawableBlockList;
+import xfy.fakeview.library.text.block.MeasureProgress;
+import xfy.fakeview.library.text.compiler.DefaultTextCompiler;
+import xfy.fakeview.library.text.drawer.TextDrawer;
+import xfy.fakeview.library.text.param.ImmutableParams;
+import xfy.fakeview.library.text.utils.LineUtils;
+import xfy.fakeview.library.text.utils.MeasureTextUtils;
+
+/**
+ * Created by XiongFangyu on 2018/4/20.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 24)
+public class ResumableMeasureTest {
+    private static final int LINES = 50;
+
+    @Test
+    public void testResumeUntilAllLinesMeasured() {
+        String text = createText();
+        FTextDrawable full = createDrawable(text, null, 0);
+        Assert.assertFalse(full.isMeasurePending());
+        Assert.assertEquals(LINES, full.getLineCount());
+
+        PendingCallback callback = new PendingCallback();
+        //每计算一个block就超时
+        FTextDrawable drawable = createDrawable(text, callback, 1);
+        Assert.assertTrue(drawable.isMeasurePending());
+        Assert.assertNotNull(callback.pending);
+        Assert.assertTrue(drawable.getLineCount() < LINES);
+
+        int frames = 0;
+        int lastLines = drawable.getLineCount();
+        while (callback.pending != null) {
+            Runnable r = callback.pending;
+            callback.pending = null;
+            r.run();
+            Assert.assertTrue(drawable.getLineCount() >= lastLines);
+            lastLines = drawable.getLineCount();
+            frames ++;
+            Assert.assertTrue(frames < LINES * 2);
+        }
+        Assert.assertFalse(drawable.isMeasurePending());
+        Assert.assertEquals(LINES, drawable.getLineCount());
+        Assert.assertEquals(full.getIntrinsicHeight(), drawable.getIntrinsicHeight());
+        Assert.assertEquals(full.getIntrinsicWidth(), drawable.getIntrinsicWidth());
+    }
+
+    @Test
+    public void testTextChangedCancelPending() {
+        PendingCallback callback = new PendingCallback();
+        FTextDrawable drawable = createDrawable(createText(), callback, 1);
+        Assert.assertTrue(drawable.isMeasurePending());
+        drawable.setMeasureBudget(0);
+        drawable.setText("short");
+        Assert.assertFalse(drawable.isMeasurePending());
+        Assert.assertNull(callback.pending);
+    }
+
+    @Test
+    public void testResumeInsideBlocks() {
+        //one long text block, then a paragraph holding another long text block
+        long full = measureAll(createLongBlocks(), null);
+        Assert.assertEquals(MeasureTextUtils.STATE_SUCCESS, MeasureTextUtils.getState(full));
+        Assert.assertTrue(MeasureTextUtils.getLines(full) > 200);
+
+        DefaultDrawableBlockList list = createLongBlocks();
+        MeasureProgress progress = new MeasureProgress();
+        int calls = 0;
+        int lastLines = 0;
+        long flag;
+        do {
+            flag = measure(list, progress, 1);
+            calls ++;
+            Assert.assertTrue(MeasureTextUtils.getLines(flag) >= lastLines);
+            lastLines = MeasureTextUtils.getLines(flag);
+            Assert.assertTrue(calls < 1000);
+        } while (MeasureTextUtils.getState(flag) == MeasureTextUtils.STATE_TIMEOUT);
+        //every call stops inside a block, not only between root blocks
+        Assert.assertTrue(calls > list.size());
+        Assert.assertFalse(progress.isPending());
+        Assert.assertEquals(full, flag);
+        Assert.assertEquals(MeasureTextUtils.getLines(full), list.getLineHeightSize());
+    }
+
+    @Test
+    public void testProgressKeptPerDrawable() {
+        long full = measureAll(createLongBlocks(), null);
+        DefaultDrawableBlockList list = createLongBlocks();
+        MeasureProgress a = new MeasureProgress();
+        MeasureProgress b = new MeasureProgress();
+        long fa = measure(list, a, 1);
+        long fb = measure(list, b, 1);
+        int calls = 0;
+        while (MeasureTextUtils.getState(fa) == MeasureTextUtils.STATE_TIMEOUT
+                || MeasureTextUtils.getState(fb) == MeasureTextUtils.STATE_TIMEOUT) {
+            if (MeasureTextUtils.getState(fa) == MeasureTextUtils.STATE_TIMEOUT)
+                fa = measure(list, a, 1);
+            if (MeasureTextUtils.getState(fb) == MeasureTextUtils.STATE_TIMEOUT)
+                fb = measure(list, b, 1);
+            Assert.assertTrue(++ calls < 1000);
+        }
+        Assert.assertEquals(full, fa);
+        Assert.assertEquals(full, fb);
+
+        //a measure with other params makes saved progress stale
+        DefaultDrawableBlockList other = createLongBlocks();
+        MeasureProgress c = new MeasureProgress();
+        Assert.assertEquals(MeasureTextUtils.STATE_TIMEOUT, MeasureTextUtils.getState(measure(other, c, 1)));
+        measureAll(other, 300);
+        Assert.assertTrue(c.isPending());
+        long fc;
+        do {
+            fc = measure(other, c, 1);
+            Assert.assertTrue(++ calls < 2000);
+        } while (MeasureTextUtils.getState(fc) == MeasureTextUtils.STATE_TIMEOUT);
+        Assert.assertEquals(full, fc);
+    }
+
+    private static DefaultDrawableBlockList createLongBlocks() {
+        DefaultDrawableBlockList list = DefaultDrawableBlockList.obtain(true, 0, 0);
+        list.add(DefaultDrawableBlock.createTextBlock(repeat("word ", 400), null));
+        list.add(DefaultDrawableBlock.createNextLineBlock());
+        DefaultDrawableBlockList children = DefaultDrawableBlockList.obtain(false, 0, 0);
+        children.add(DefaultDrawableBlock.createTextBlock(repeat("para ", 400), null));
+        children.add(DefaultDrawableBlock.createTextBlock("tail", null));
+        children.use();
+        list.add(DefaultDrawableBlock.createParagraphBlock("", children));
+        list.add(DefaultDrawableBlock.createNextLineBlock());
+        list.add(DefaultDrawableBlock.createTextBlock("end", null));
+        return list;
+    }
+
+    private static long measureAll(DefaultDrawableBlockList list, Integer right) {
+        return TextDrawer.measureText(newParams(), list, LineUtils.combime(20, 16), 0,
+                0, 0, right != null ? right : 200, true, true);
+    }
+
+    private static long measure(DefaultDrawableBlockList list, MeasureProgress progress, long deadline) {
+        return TextDrawer.measureText(newParams(), list, LineUtils.combime(20, 16), 0,
+                0, 0, 200, true, !progress.isPending(), deadline, progress);
+    }
+
+    private static ImmutableParams newParams() {
+        ImmutableParams params = new ImmutableParams();
+        params.paint = new FixedWidthPaint();
+        params.paint.setTextSize(40);
+        params.right = 200;
+        return params;
+    }
+
+    private static String repeat(String s, int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i ++) {
+            sb.append(s);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * every char is 10px wide
+     */
+    private static class FixedWidthPaint extends TextPaint {
+
+        @Override
+        public int getTextWidths(CharSequence text, int start, int end, float[] widths) {
+            Arrays.fill(widths, 0, end - start, 10);
+            return end - start;
+        }
+
+        @Override
+        public int getTextWidths(String text, int start, int end, float[] widths) {
+            Arrays.fill(widths, 0, end - start, 10);
+            return end - start;
+        }
+
+        @Override
+        public int getTextWidths(String text, float[] widths) {
+            return getTextWidths(text, 0, text.length(), widths);
+        }
+    }
+
+    private static String createText() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < LINES; i ++) {
+            if (i > 0)
+                sb.append('\n');
+            sb.append("line ").append(i);
+        }
+        return sb.toString();
+    }
+
+    private static FTextDrawable createDrawable(String text, Drawable.Callback callback, long budget) {
+        FTextDrawable drawable = new FTextDrawable();
+        drawable.setCallback(callback);
+        drawable.setMeasureBudget(budget);
+        drawable.setTextCompiler(DefaultTextCompiler.getCompiler());
+        drawable.setForceMeasureBlockList(true);
+        drawable.setMaxWidth(1000);
+        drawable.setMaxHeight(100000);
+        drawable.setBounds(0, 0, 1000, 100000);
+        drawable.setText(text);
+        return drawable;
+    }
+
+    private static class PendingCallback implements Drawable.Callback {
+        Runnable pending;
+
+        @Override
+        public void invalidateDrawable(@NonNull Drawable who) {}
+
+        @Override
+        public void scheduleDrawable(@NonNull Drawable who, @NonNull Runnable what, long when) {
+            pending = what;
+        }
+
+        @Override
+        public void unscheduleDrawable(@NonNull Drawable who, @NonNull Runnable what) {
+            if (pending == what)
+                pending = null;
+        }
+    }
+}
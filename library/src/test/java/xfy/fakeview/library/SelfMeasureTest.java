@@ -0,0 +1,87 @@
+package xfy.fakeview.library;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import xfy.fakeview.library.text.FTextDrawable;
+import xfy.fakeview.library.text.block.DefaultDrawableBlockList;
+import xfy.fakeview.library.text.compiler.DefaultTextCompiler;
+import xfy.fakeview.library.text.param.SpecialStyleParams;
+
+/**
+ * Created by XiongFangyu on 2018/4/20.
+ *
+ * A self measuring drawable lays itself out when asked for its size, without a host view.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 24)
+public class SelfMeasureTest {
+
+    @Test
+    public void testLazyMeasure() {
+        CountCompiler compiler = new CountCompiler();
+        final int[] requests = new int[1];
+        FTextDrawable drawable = newDrawable(compiler, new FTextDrawable.LayoutRequestListener() {
+            @Override
+            public void needRequest(FTextDrawable drawable) {
+                requests[0] ++;
+            }
+        });
+        drawable.setText("badge\n12");
+        Assert.assertEquals(0, drawable.getLineCount());
+        drawable.getIntrinsicHeight();
+        Assert.assertEquals(2, drawable.getLineCount());
+
+        drawable.setText("badge\n12\n3");
+        Assert.assertEquals(2, drawable.getLineCount());
+        drawable.setBounds(0, 0, 100, 100);
+        drawable.draw(new Canvas(Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888)));
+        Assert.assertEquals(3, drawable.getLineCount());
+
+        drawable.setMaxLines(1);
+        drawable.setIncludePad(false);
+        drawable.getIntrinsicWidth();
+        //measured up to maxLines + 1
+        Assert.assertEquals(2, drawable.getLineCount());
+        Assert.assertEquals(0, requests[0]);
+
+        //same text hits the compiler cache
+        FTextDrawable other = newDrawable(compiler, null);
+        other.setText("badge\n12\n3");
+        Assert.assertEquals(2, compiler.count);
+        other.getIntrinsicWidth();
+        Assert.assertEquals(3, other.getLineCount());
+    }
+
+    private static FTextDrawable newDrawable(CountCompiler compiler, FTextDrawable.LayoutRequestListener listener) {
+        FTextDrawable drawable = new FTextDrawable();
+        drawable.setSelfMeasure(true);
+        drawable.setTextCompiler(compiler);
+        drawable.setDrawableSize(20);
+        drawable.setLayoutRequestListener(listener);
+        return drawable;
+    }
+
+    private static class CountCompiler extends DefaultTextCompiler {
+        int count;
+
+        CountCompiler() {
+            super(null);
+        }
+
+        @Override
+        public void compileInternal(@NonNull DefaultDrawableBlockList list, @NonNull CharSequence text, int start, int end,
+                                    @Nullable SpecialStyleParams specialStyleParams) {
+            count ++;
+            super.compileInternal(list, text, start, end, specialStyleParams);
+        }
+    }
+}
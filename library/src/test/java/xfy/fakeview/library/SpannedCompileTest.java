@@ -0,0 +1,85 @@
+package xfy.fakeview.library;
+
+import android.graphics.Color;
+import android.graphics.Typeface;
+import android.graphics.drawable.ColorDrawable;
+import android.text.Spannable;
+import android.text.SpannableStringBuilder;
+import android.text.style.ForegroundColorSpan;
+import android.text.style.ImageSpan;
+import android.text.style.StyleSpan;
+import android.text.style.UnderlineSpan;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import xfy.fakeview.library.text.block.DefaultDrawableBlock;
+import xfy.fakeview.library.text.block.DefaultDrawableBlockList;
+import xfy.fakeview.library.text.block.IDrawableBlock;
+import xfy.fakeview.library.text.compiler.SpannedTextCompiler;
+import xfy.fakeview.library.text.param.SpecialStyleParams;
+
+/**
+ * Created by XiongFangyu on 2018/4/17.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 24)
+public class SpannedCompileTest {
+
+    @Test
+    public void testStyleAndImageSpans() {
+        SpannableStringBuilder builder = new SpannableStringBuilder("plain red bold-red x end");
+        builder.setSpan(new ForegroundColorSpan(Color.RED), 6, 18, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+        builder.setSpan(new StyleSpan(Typeface.BOLD), 10, 18, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+        builder.setSpan(new ImageSpan(new ColorDrawable(Color.BLUE)), 19, 20, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+        builder.setSpan(new UnderlineSpan(), 21, 24, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+
+        DefaultDrawableBlockList list = SpannedTextCompiler.getCompiler().compile(builder);
+        Assert.assertEquals(7, list.size());
+
+        assertText(list.get(0), "plain ", null);
+        SpecialStyleParams red = assertText(list.get(1), "red ", true);
+        Assert.assertEquals(Color.RED, red.foregroundColor);
+        Assert.assertFalse(red.bold);
+        SpecialStyleParams boldRed = assertText(list.get(2), "bold-red", true);
+        Assert.assertEquals(Color.RED, boldRed.foregroundColor);
+        Assert.assertTrue(boldRed.bold);
+        assertText(list.get(3), " ", null);
+        Assert.assertEquals(IDrawableBlock.SPECIAL_DRAWABLE, list.get(4).getType());
+        Assert.assertEquals("x", list.get(4).getText().toString());
+        assertText(list.get(5), " ", null);
+        Assert.assertTrue(assertText(list.get(6), "end", false).underline);
+    }
+
+    @Test
+    public void testStyleAcrossNewLine() {
+        SpannableStringBuilder builder = new SpannableStringBuilder("a\nb");
+        builder.setSpan(new ForegroundColorSpan(Color.RED), 0, 3, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+        DefaultDrawableBlockList list = SpannedTextCompiler.getCompiler().compile(builder);
+        Assert.assertEquals(3, list.size());
+        Assert.assertEquals(IDrawableBlock.NEXTLINE, list.get(1).getType());
+        SpecialStyleParams params = list.get(0).getTextStyleParams();
+        Assert.assertSame(params, list.get(2).getTextStyleParams());
+
+        list.get(0).recycle();
+        Assert.assertTrue(params.hasFColor);
+        list.get(2).recycle();
+        Assert.assertFalse(params.hasFColor);
+    }
+
+    private static SpecialStyleParams assertText(DefaultDrawableBlock block, String text, Boolean hasFColor) {
+        Assert.assertEquals(IDrawableBlock.TEXT, block.getType());
+        Assert.assertEquals(text, block.getText().toString());
+        SpecialStyleParams params = block.getTextStyleParams();
+        if (hasFColor == null) {
+            Assert.assertNull(params);
+        } else {
+            Assert.assertNotNull(params);
+            Assert.assertEquals(hasFColor, params.hasFColor);
+        }
+        return params;
+    }
+}
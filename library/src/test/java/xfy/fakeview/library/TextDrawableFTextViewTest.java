@@ -0,0 +1,79 @@
+package xfy.fakeview.library;
+
+import android.text.SpannableString;
+import android.text.Spanned;
+import android.text.style.ForegroundColorSpan;
+import android.text.style.URLSpan;
+import android.view.View;
+import android.widget.TextView;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import xfy.fakeview.library.fview.FViewRootImpl;
+import xfy.fakeview.library.fview.normal.FTextView;
+import xfy.fakeview.library.fview.utils.FMeasureSpec;
+import xfy.fakeview.library.text.utils.FClickableSpan;
+import xfy.fakeview.library.translator.data.TextDataTranslator;
+
+/**
+ * Created by XiongFangyu on 2018/4/20.
+ *
+ * FTextView rendered by FTextDrawable, and the translator choosing it.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 24)
+public class TextDrawableFTextViewTest {
+
+    @Test
+    public void testSupportedSpans() {
+        Assert.assertTrue(TextDataTranslator.canUseTextDrawable("plain text"));
+        Assert.assertTrue(TextDataTranslator.canUseTextDrawable(span(new ForegroundColorSpan(0xffff0000))));
+        Assert.assertTrue(TextDataTranslator.canUseTextDrawable(span(new FClickableSpan() {
+            @Override
+            public void onClick(View v) {}
+        })));
+        Assert.assertFalse(TextDataTranslator.canUseTextDrawable(span(new URLSpan("http://example.com"))));
+    }
+
+    @Test
+    public void testTranslateChooseMode() {
+        FTextView fview = newTextView();
+        TextView src = new TextView(RuntimeEnvironment.application);
+        src.setText("plain text");
+        new TextDataTranslator().translateData(fview, src);
+        Assert.assertTrue(fview.isUseTextDrawable());
+        Assert.assertEquals("plain text", fview.getTextDrawable().getText().toString());
+
+        src.setText(span(new URLSpan("http://example.com")));
+        new TextDataTranslator().translateData(fview, src);
+        Assert.assertFalse(fview.isUseTextDrawable());
+        Assert.assertNull(fview.getTextDrawable());
+    }
+
+    @Test
+    public void testMeasureByTextDrawable() {
+        FTextView fview = newTextView();
+        fview.setUseTextDrawable(true);
+        fview.setText("first line\nsecond line");
+        fview.measure(FMeasureSpec.makeMeasureSpec(300, FMeasureSpec.AT_MOST),
+                FMeasureSpec.makeMeasureSpec(0, FMeasureSpec.UNSPECIFIED));
+        Assert.assertNull(fview.getLayout());
+        Assert.assertEquals(2, fview.getTextDrawable().getLineCount());
+        Assert.assertTrue(fview.getMeasuredWidth() <= 300);
+    }
+
+    private static FTextView newTextView() {
+        return new FTextView(RuntimeEnvironment.application, new FViewRootImpl(RuntimeEnvironment.application));
+    }
+
+    private static SpannableString span(Object span) {
+        SpannableString s = new SpannableString("some spanned text");
+        s.setSpan(span, 0, 4, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        return s;
+    }
+}
@@ -0,0 +1,111 @@
+package xfy.fakeview.library;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.text.Layout;
+import android.text.SpannableString;
+import android.text.Spanned;
+import android.text.TextUtils;
+import android.text.style.ForegroundColorSpan;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import xfy.fakeview.library.fview.FViewRootImpl;
+import xfy.fakeview.library.fview.normal.FTextView;
+import xfy.fakeview.library.fview.normal.TextLayoutCache;
+import xfy.fakeview.library.fview.utils.FMeasureSpec;
+
+/**
+ * Created by XiongFangyu on 2018/4/20.
+ *
+ * FTextViews with the same text and paint share one StaticLayout.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 24)
+public class TextLayoutCacheTest {
+
+    @Before
+    public void setUp() {
+        TextLayoutCache.clear();
+    }
+
+    @Test
+    public void testSameTextShareLayout() {
+        FTextView a = measure(newTextView("username"), 300);
+        FTextView b = measure(newTextView("username"), 300);
+        Assert.assertNotNull(a.getLayout());
+        Assert.assertSame(a.getLayout(), b.getLayout());
+        Assert.assertEquals(1, TextLayoutCache.size());
+    }
+
+    @Test
+    public void testDifferentConfigNotShared() {
+        FTextView a = measure(newTextView("username"), 300);
+        FTextView b = newTextView("username");
+        b.setTextSize(30);
+        measure(b, 300);
+        FTextView c = newTextView("username");
+        c.setEllipsize(TextUtils.TruncateAt.END);
+        measure(c, 300);
+        FTextView d = measure(newTextView("username"), 200);
+        Assert.assertNotSame(a.getLayout(), b.getLayout());
+        Assert.assertNotSame(a.getLayout(), c.getLayout());
+        Assert.assertNotSame(a.getLayout(), d.getLayout());
+        Assert.assertEquals(200, d.getLayout().getWidth());
+    }
+
+    @Test
+    public void testCachedLayoutNotAffectedByViewPaint() {
+        FTextView a = measure(newTextView("username"), 300);
+        Layout layout = a.getLayout();
+        float size = layout.getPaint().getTextSize();
+        a.setTextSize(50);
+        Assert.assertEquals(size, layout.getPaint().getTextSize(), 0);
+    }
+
+    @Test
+    public void testDrawRestoresSharedPaintColor() {
+        FTextView a = measure(newTextView("username"), 300);
+        FTextView b = measure(newTextView("username"), 300);
+        a.setTextColor(Color.RED);
+        b.setTextColor(Color.BLUE);
+        a.onAttachedToWindow();
+        b.onAttachedToWindow();
+        a.layout(0, 0, 300, a.getMeasuredHeight());
+        b.layout(0, 0, 300, b.getMeasuredHeight());
+        Layout layout = a.getLayout();
+        Assert.assertSame(layout, b.getLayout());
+        final int color = layout.getPaint().getColor();
+
+        a.draw(new Canvas());
+        Assert.assertEquals(color, layout.getPaint().getColor());
+        b.draw(new Canvas());
+        Assert.assertEquals(color, layout.getPaint().getColor());
+    }
+
+    @Test
+    public void testSpannableUseStaticLayout() {
+        SpannableString text = new SpannableString("colored name");
+        text.setSpan(new ForegroundColorSpan(0xffff0000), 0, 7, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        FTextView a = measure(newTextView(text), 300);
+        Assert.assertTrue(a.getLayout() instanceof android.text.StaticLayout);
+    }
+
+    private static FTextView newTextView(CharSequence text) {
+        FTextView textView = new FTextView(RuntimeEnvironment.application, new FViewRootImpl(RuntimeEnvironment.application));
+        textView.setText(text);
+        return textView;
+    }
+
+    private static FTextView measure(FTextView textView, int width) {
+        textView.measure(FMeasureSpec.makeMeasureSpec(width, FMeasureSpec.EXACTLY),
+                FMeasureSpec.makeMeasureSpec(0, FMeasureSpec.UNSPECIFIED));
+        return textView;
+    }
+}
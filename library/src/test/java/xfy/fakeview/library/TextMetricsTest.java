@@ -0,0 +1,87 @@
+package xfy.fakeview.library;
+
+import android.support.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import xfy.fakeview.library.text.compiler.DefaultTextCompiler;
+import xfy.fakeview.library.text.metrics.Histogram;
+import xfy.fakeview.library.text.metrics.TextMetrics;
+
+/**
+ * Created by XiongFangyu on 2018/4/20.
+ *
+ * Histogram percentiles and compile metrics.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 24)
+public class TextMetricsTest {
+
+    @Before
+    public void setUp() {
+        TextMetrics.reset();
+        TextMetrics.setEnabled(true);
+    }
+
+    @After
+    public void tearDown() {
+        TextMetrics.setEnabled(false);
+        TextMetrics.setReporter(null);
+        TextMetrics.reset();
+    }
+
+    @Test
+    public void testHistogramPercentile() {
+        Histogram histogram = new Histogram("test");
+        for (int i = 1; i <= 1000; i ++) {
+            histogram.record(i * 1000L);
+        }
+        Histogram.Snapshot s = histogram.snapshot(true);
+        Assert.assertEquals(1000, s.count);
+        Assert.assertEquals(1000000, s.max);
+        assertNear(500000, s.getPercentile(50));
+        assertNear(990000, s.getPercentile(99));
+        Assert.assertEquals(1000000, s.getPercentile(100));
+        Assert.assertEquals(0, histogram.getCount());
+    }
+
+    @Test
+    public void testCompileMetrics() {
+        DefaultTextCompiler compiler = new DefaultTextCompiler(null);
+        compiler.compile("hello\nworld");
+        compiler.compile("hello\nworld");
+        final TextMetrics.Snapshot[] reported = new TextMetrics.Snapshot[1];
+        TextMetrics.setReporter(new TextMetrics.Reporter() {
+            @Override
+            public void report(@NonNull TextMetrics.Snapshot snapshot) {
+                reported[0] = snapshot;
+            }
+        });
+        TextMetrics.report(true);
+        TextMetrics.Snapshot s = reported[0];
+        Assert.assertNotNull(s);
+        Assert.assertEquals(1, s.compileCacheHit);
+        Assert.assertEquals(1, s.compileCacheMiss);
+        Assert.assertEquals(1, s.compile.count);
+        Assert.assertEquals(3, s.blocks.max);
+        Assert.assertEquals(0, TextMetrics.snapshot(false).compile.count);
+    }
+
+    @Test
+    public void testDisabled() {
+        TextMetrics.setEnabled(false);
+        new DefaultTextCompiler(null).compile("hello");
+        Assert.assertEquals(0, TextMetrics.snapshot(false).compileCacheMiss);
+        Assert.assertEquals(0, TextMetrics.COMPILE.getCount());
+    }
+
+    private static void assertNear(long expect, long actual) {
+        Assert.assertTrue("expect " + expect + " actual " + actual, Math.abs(expect - actual) <= expect / 4);
+    }
+}
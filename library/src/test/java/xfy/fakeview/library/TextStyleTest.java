@@ -0,0 +1,95 @@
+package xfy.fakeview.library;
+
+import android.graphics.Color;
+import android.graphics.ColorFilter;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffColorFilter;
+import android.graphics.Typeface;
+import android.text.TextPaint;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import xfy.fakeview.library.text.param.TextStyle;
+
+/**
+ * Created by XiongFangyu on 2018/4/20.
+ *
+ * Styles with the same params are interned; with* methods copy on write.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 24)
+public class TextStyleTest {
+
+    @Test
+    public void testIntern() {
+        TextStyle a = TextStyle.obtain(30, Color.RED, Typeface.BOLD, true, "...");
+        TextStyle b = TextStyle.obtain(30, Color.RED, Typeface.BOLD, true, "...");
+        Assert.assertSame(a, b);
+        Assert.assertSame(a.getPaint(), b.getPaint());
+        Assert.assertTrue(a.isShared());
+        Assert.assertNotSame(a, TextStyle.obtain(30, Color.RED, Typeface.BOLD, false, "..."));
+        //textSize <= 0 uses the default size
+        Assert.assertSame(TextStyle.getDefault().withTextColor(Color.RED),
+                TextStyle.obtain(0, Color.RED, Typeface.NORMAL, false, null));
+    }
+
+    @Test
+    public void testCopyOnWrite() {
+        TextStyle style = TextStyle.obtain(30, Color.BLACK, Typeface.NORMAL, false, null);
+        Assert.assertSame(style, style.withTextSize(30));
+        Assert.assertSame(style, style.withTextColor(Color.BLACK));
+        Assert.assertSame(style, style.withUnderline(false));
+
+        TextStyle bigger = style.withTextSize(40);
+        Assert.assertNotSame(style, bigger);
+        Assert.assertEquals(30, style.textSize, 0);
+        Assert.assertEquals(30, style.getPaint().getTextSize(), 0);
+        Assert.assertEquals(40, bigger.getPaint().getTextSize(), 0);
+        Assert.assertSame(bigger, TextStyle.obtain(40, Color.BLACK, Typeface.NORMAL, false, null));
+
+        TextStyle half = style.withAlpha(0x80);
+        Assert.assertEquals(0x80000000, half.textColor);
+        Assert.assertEquals(Color.BLACK, style.getPaint().getColor());
+        Assert.assertEquals(0x80000000, half.getPaint().getColor());
+        Assert.assertTrue(style.withUnderline(true).underline);
+        Assert.assertFalse(style.underline);
+    }
+
+    @Test
+    public void testColorFilter() {
+        TextStyle style = TextStyle.obtain(30, Color.BLACK, Typeface.NORMAL, false, null);
+        ColorFilter filter = new PorterDuffColorFilter(Color.RED, PorterDuff.Mode.SRC_IN);
+        TextStyle a = style.withColorFilter(filter);
+        TextStyle b = style.withColorFilter(filter);
+        Assert.assertFalse(a.isShared());
+        Assert.assertNotSame(a, b);
+        Assert.assertNotSame(a.getPaint(), b.getPaint());
+        Assert.assertEquals(a, b);
+        Assert.assertEquals(a.hashCode(), b.hashCode());
+        Assert.assertNotEquals(style, a);
+        Assert.assertNotEquals(a, style.withColorFilter(new PorterDuffColorFilter(Color.RED, PorterDuff.Mode.SRC_IN)));
+        //removing the filter goes back to the shared style
+        Assert.assertSame(style, a.withColorFilter(null));
+    }
+
+    @Test
+    public void testNewPaint() {
+        TextStyle style = TextStyle.obtain(30, Color.BLUE, Typeface.BOLD, true, null);
+        TextPaint paint = style.newPaint();
+        Assert.assertNotSame(style.getPaint(), paint);
+        Assert.assertEquals(30, paint.getTextSize(), 0);
+        Assert.assertEquals(Color.BLUE, paint.getColor());
+        Assert.assertEquals(style.getPaint().isFakeBoldText(), paint.isFakeBoldText());
+        //not affected by temporary changes of the shared paint
+        style.getPaint().setTextSize(10);
+        try {
+            Assert.assertEquals(30, style.newPaint().getTextSize(), 0);
+        } finally {
+            style.getPaint().setTextSize(30);
+        }
+    }
+}